@@ -3,9 +3,13 @@ package de.energiequant.limamf.compat.config.connector;
 import static de.energiequant.limamf.compat.utils.DOMUtils.findChildElementsNamed;
 import static de.energiequant.limamf.compat.utils.DOMUtils.onlyElements;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -39,6 +43,10 @@ public class ConnectorConfiguration {
 
     /**
      * Loads the given MobiFlight Connector configuration file ({@code .mcc} file type).
+     * <p>
+     * The whole file is parsed to a DOM before being decoded; see {@link #streamXML(Path)} for a streaming alternative
+     * better suited to large files.
+     * </p>
      *
      * @param path file to load
      * @return parsed configuration
@@ -73,6 +81,49 @@ public class ConnectorConfiguration {
         return fromXML(rootNodes.item(0));
     }
 
+    /**
+     * Loads the given MobiFlight Connector configuration file ({@code .mcc} file type) in a single streaming pass.
+     * <p>
+     * Results in the same configuration as {@link #fromXML(File)} but only holds a single configuration item in memory
+     * at a time while parsing, so it is much faster and lighter on memory for large files. Unlike {@link #fromXML(File)},
+     * files containing a DTD are rejected.
+     * </p>
+     *
+     * @param path file to load
+     * @return parsed configuration
+     */
+    public static ConnectorConfiguration streamXML(File path) {
+        return streamXML(path.toPath());
+    }
+
+    /**
+     * Loads the given MobiFlight Connector configuration file ({@code .mcc} file type) in a single streaming pass.
+     *
+     * @param path file to load
+     * @return parsed configuration
+     * @see #streamXML(File)
+     */
+    public static ConnectorConfiguration streamXML(Path path) {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
+            return new ConnectorConfigurationStreamReader().read(is, path.toString());
+        } catch (IOException ex) {
+            LOGGER.warn("failed to read {}", path, ex);
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Reads a MobiFlight Connector configuration ({@code .mcc} file format) from the given stream in a single
+     * streaming pass. The stream is not closed.
+     *
+     * @param is stream to read from
+     * @return parsed configuration
+     * @see #streamXML(File)
+     */
+    public static ConnectorConfiguration streamXML(InputStream is) {
+        return new ConnectorConfigurationStreamReader().read(is, "stream");
+    }
+
     private static ConnectorConfiguration fromXML(Node rootNode) {
         ConnectorConfiguration out = new ConnectorConfiguration();
 
@@ -90,7 +141,7 @@ public class ConnectorConfiguration {
         return out;
     }
 
-    private void addItem(ConfigItem item) {
+    void addItem(ConfigItem item) {
         configItemsByDirection.computeIfAbsent(item.getDirection(), x -> new ArrayList<>())
                               .add(item);
     }
@@ -143,7 +194,7 @@ public class ConnectorConfiguration {
         }
     }
 
-    private static class MissingDependency extends RuntimeException {
+    static class MissingDependency extends RuntimeException {
         MissingDependency(String msg, Throwable cause) {
             super(msg, cause);
         }
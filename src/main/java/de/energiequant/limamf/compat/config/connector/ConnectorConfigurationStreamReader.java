@@ -0,0 +1,200 @@
+package de.energiequant.limamf.compat.config.connector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Reads {@link ConnectorConfiguration}s from {@code .mcc} files in a single streaming (StAX) pass.
+ * <p>
+ * Instead of building a DOM for the whole file, only a small detached DOM fragment is built for each {@code <config>}
+ * item at a time which is then decoded by the same code as used for {@link ConnectorConfiguration#fromXML(java.io.File)},
+ * so both result in the same objects. All other elements are skipped without being retained, keeping memory usage
+ * independent of the number of items.
+ * </p>
+ * <p>
+ * DTDs and external entities are not supported at all; files containing a DTD are rejected.
+ * </p>
+ */
+class ConnectorConfigurationStreamReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectorConfigurationStreamReader.class);
+
+    private static final String ROOT_ELEMENT_NAME = "MobiflightConnector";
+    private static final String ITEM_ELEMENT_NAME = "config";
+
+    private final XMLInputFactory inputFactory;
+    private final Document fragmentOwner;
+
+    ConnectorConfigurationStreamReader() {
+        inputFactory = XMLInputFactory.newInstance();
+        try {
+            inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            inputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+            inputFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            inputFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        } catch (IllegalArgumentException ex) {
+            LOGGER.warn("incompatible StAX parser configuration", ex);
+            throw new ConnectorConfiguration.MissingDependency("incompatible StAX parser configuration", ex);
+        }
+
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            fragmentOwner = factory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException ex) {
+            LOGGER.warn("incompatible XML parser configuration", ex);
+            throw new ConnectorConfiguration.MissingDependency("incompatible XML parser configuration", ex);
+        }
+    }
+
+    /**
+     * Reads a configuration from the given stream. The stream is not closed.
+     *
+     * @param is          stream to read from
+     * @param description description of the source for error messages
+     * @return parsed configuration
+     * @throws IllegalArgumentException if the stream does not contain a valid configuration
+     * @throws UncheckedIOException     if reading fails
+     */
+    ConnectorConfiguration read(InputStream is, String description) {
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(is);
+            return read(reader);
+        } catch (XMLStreamException ex) {
+            Throwable nested = ex.getNestedException();
+            if (nested instanceof IOException) {
+                LOGGER.warn("failed to read {}", description, ex);
+                throw new UncheckedIOException((IOException) nested);
+            }
+
+            LOGGER.warn("failed to parse {}", description, ex);
+            throw new IllegalArgumentException("failed to parse " + description, ex);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ex) {
+                    LOGGER.warn("failed to close XML reader for {}", description, ex);
+                }
+            }
+        }
+    }
+
+    private ConnectorConfiguration read(XMLStreamReader reader) throws XMLStreamException {
+        ConnectorConfiguration out = new ConnectorConfiguration();
+
+        int numRootNodes = 0;
+        int depth = 0;
+        int rootDepth = -1;
+        ConfigItem.Direction direction = null;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.DTD) {
+                throw new IllegalArgumentException("DTDs are not supported");
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+
+                String name = getQualifiedName(reader);
+                if (ROOT_ELEMENT_NAME.equals(name)) {
+                    numRootNodes++;
+                    if (numRootNodes == 1) {
+                        rootDepth = depth;
+                    }
+                } else if ((rootDepth > 0) && (depth == rootDepth + 1)) {
+                    direction = ConfigItem.Direction.fromXmlParentElementName(name).orElse(null);
+                } else if ((direction != null) && (depth == rootDepth + 2) && ITEM_ELEMENT_NAME.equals(name)) {
+                    out.addItem(ConfigItem.fromXML(direction, readElement(reader)));
+
+                    // fragment has been read including its end element
+                    depth--;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == rootDepth) {
+                    rootDepth = -1;
+                } else if ((rootDepth > 0) && (depth == rootDepth + 1)) {
+                    direction = null;
+                }
+
+                depth--;
+            }
+        }
+
+        if (numRootNodes != 1) {
+            throw new IllegalArgumentException("exactly one root node is required, found " + numRootNodes);
+        }
+
+        return out;
+    }
+
+    /**
+     * Reads the element the given reader is currently positioned at (including all descendants) to a detached DOM
+     * fragment. The reader is left positioned at the corresponding end element.
+     *
+     * @param reader reader positioned at a start element
+     * @return detached DOM fragment
+     * @throws XMLStreamException if reading fails
+     */
+    private Node readElement(XMLStreamReader reader) throws XMLStreamException {
+        Deque<Element> stack = new ArrayDeque<>();
+
+        Element root = createElement(reader);
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                Element child = createElement(reader);
+                stack.peek().appendChild(child);
+                stack.push(child);
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                stack.pop();
+            } else if ((event == XMLStreamConstants.CHARACTERS) || (event == XMLStreamConstants.CDATA) || (event == XMLStreamConstants.SPACE)) {
+                stack.peek().appendChild(fragmentOwner.createTextNode(reader.getText()));
+            }
+        }
+
+        return root;
+    }
+
+    private Element createElement(XMLStreamReader reader) {
+        Element element = fragmentOwner.createElement(getQualifiedName(reader));
+
+        int numAttributes = reader.getAttributeCount();
+        for (int i = 0; i < numAttributes; i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String localName = reader.getAttributeLocalName(i);
+            String name = ((prefix == null) || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+            element.setAttribute(name, reader.getAttributeValue(i));
+        }
+
+        return element;
+    }
+
+    private static String getQualifiedName(XMLStreamReader reader) {
+        // matches DOM node names as parsed without namespace awareness
+        String prefix = reader.getPrefix();
+        String localName = reader.getLocalName();
+        return ((prefix == null) || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+    }
+}
@@ -23,7 +23,8 @@ public class Display implements ModuleBindable {
     private final String serial;
 
     private static final Map<String, Function<Node, Display>> DECODERS_BY_TYPE = Maps.createHashMap(
-        Maps.entry("Output", OutputDisplay::new)
+        Maps.entry("Output", OutputDisplay::new),
+        Maps.entry("Display Module", LedModuleDisplay::new)
     );
 
     /**
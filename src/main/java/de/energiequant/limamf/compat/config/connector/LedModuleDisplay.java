@@ -0,0 +1,190 @@
+package de.energiequant.limamf.compat.config.connector;
+
+import static de.energiequant.limamf.compat.utils.DOMUtils.findChildElementsNamed;
+import static de.energiequant.limamf.compat.utils.DOMUtils.getAttribute;
+
+import org.w3c.dom.Node;
+
+import de.energiequant.limamf.compat.config.devices.LedSegmentConfiguration;
+import de.energiequant.limamf.compat.protocol.SetModuleMessage;
+import de.energiequant.limamf.compat.utils.Numbers;
+
+/**
+ * Information needed to control an LED 7-segment display described on module-side by {@link LedSegmentConfiguration}
+ * via a {@link SetModuleMessage}.
+ * <p>
+ * Selected digits and decimal points are read from {@code displayLedDigit}/{@code displayLedDecimalPoint} elements
+ * (each holding a {@code position} attribute) as written by MobiFlight directly below the display element. The same
+ * elements grouped in {@code displayLedDigits}/{@code displayLedDecimalPoints} containers (named {@code digit} and
+ * {@code point}) are accepted as well.
+ * </p>
+ * <p>
+ * The {@code ledReverseDigits} option is made available through {@link #isReversingDigits()} but is not applied by
+ * this library: digit and decimal point masks are reported exactly as configured.
+ * </p>
+ */
+public class LedModuleDisplay extends Display {
+    private final String moduleName;
+    private final int connector;
+    private final int moduleSize;
+    private final boolean padding;
+    private final char paddingCharacter;
+    private final boolean reversingDigits;
+    private final int digitMask;
+    private final int decimalPointMask;
+
+    /**
+     * Parses the given settings DOM {@link Node} to {@link LedModuleDisplay}.
+     *
+     * @param displayNode XML node to parse
+     */
+    LedModuleDisplay(Node displayNode) {
+        super(displayNode);
+
+        this.moduleName = getAttribute(displayNode, "ledAddress")
+            .orElseThrow(() -> new IllegalArgumentException("LED module display must specify address"));
+
+        this.connector = getAttribute(displayNode, "ledConnector")
+            .map(Numbers::requireUint8)
+            .orElseThrow(() -> new IllegalArgumentException("LED module display must specify connector"));
+        if (connector < 1) {
+            throw new IllegalArgumentException("LED module connector is 1-based, got " + connector);
+        }
+
+        this.moduleSize = getAttribute(displayNode, "ledModuleSize")
+            .map(Numbers::requireUint8)
+            .orElseThrow(() -> new IllegalArgumentException("LED module display must specify module size"));
+        if (moduleSize > LedSegmentConfiguration.MAX_DIGITS_PER_SUB_MODULE) {
+            throw new IllegalArgumentException("LED module size exceeds " + LedSegmentConfiguration.MAX_DIGITS_PER_SUB_MODULE + " digits: " + moduleSize);
+        }
+
+        this.padding = getAttribute(displayNode, "ledPadding")
+            .map(Boolean::parseBoolean)
+            .orElse(false);
+
+        this.paddingCharacter = getAttribute(displayNode, "ledPaddingChar")
+            .filter(s -> !s.isEmpty())
+            .map(s -> s.charAt(0))
+            .orElse('0');
+
+        this.reversingDigits = getAttribute(displayNode, "ledReverseDigits")
+            .map(Boolean::parseBoolean)
+            .orElse(false);
+
+        this.digitMask = readPositionMask(displayNode, "displayLedDigit", "displayLedDigits", "digit");
+        this.decimalPointMask = readPositionMask(displayNode, "displayLedDecimalPoint", "displayLedDecimalPoints", "point");
+    }
+
+    private static int readPositionMask(Node displayNode, String elementName, String containerName, String containedElementName) {
+        int mask = 0;
+
+        for (Node positionNode : findChildElementsNamed(displayNode, elementName)) {
+            mask |= readPositionBit(positionNode, elementName);
+        }
+
+        for (Node containerNode : findChildElementsNamed(displayNode, containerName)) {
+            for (Node positionNode : findChildElementsNamed(containerNode, containedElementName)) {
+                mask |= readPositionBit(positionNode, elementName);
+            }
+        }
+
+        return mask;
+    }
+
+    private static int readPositionBit(Node positionNode, String elementName) {
+        int position = getAttribute(positionNode, "position")
+            .map(Numbers::requireUint8)
+            .orElseThrow(() -> new IllegalArgumentException("LED module " + elementName + " must specify position"));
+
+        if (position >= LedSegmentConfiguration.MAX_DIGITS_PER_SUB_MODULE) {
+            throw new IllegalArgumentException("LED module " + elementName + " position out of range: " + position);
+        }
+
+        return 1 << position;
+    }
+
+    /**
+     * Returns the module's device name ({@link LedSegmentConfiguration#getName()}).
+     *
+     * @return device name used by module to refer to the LED segment display
+     */
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    /**
+     * Returns the 1-based connector (sub-module) number as shown in MobiFlight configuration.
+     *
+     * @return 1-based connector number
+     * @see #getSubModuleIndex()
+     */
+    public int getConnector() {
+        return connector;
+    }
+
+    /**
+     * Returns the 0-based sub-module index as used by {@link SetModuleMessage}.
+     *
+     * @return 0-based sub-module index
+     */
+    public int getSubModuleIndex() {
+        return connector - 1;
+    }
+
+    /**
+     * Returns the number of digits available on the sub-module.
+     *
+     * @return number of digits
+     */
+    public int getModuleSize() {
+        return moduleSize;
+    }
+
+    /**
+     * Indicates whether values are supposed to be padded to fill all selected digits.
+     *
+     * @return {@code true} if values should be padded, {@code false} if not
+     */
+    public boolean isPadded() {
+        return padding;
+    }
+
+    /**
+     * Returns the character to pad values with if {@link #isPadded()}.
+     *
+     * @return padding character
+     */
+    public char getPaddingCharacter() {
+        return paddingCharacter;
+    }
+
+    /**
+     * Indicates whether MobiFlight is configured to reverse the order of digits on this display. This is not applied
+     * to any information provided by this class; callers need to mirror values and masks themselves if required.
+     *
+     * @return {@code true} if digits should be reversed, {@code false} if not
+     */
+    public boolean isReversingDigits() {
+        return reversingDigits;
+    }
+
+    /**
+     * Returns the digits selected for output as a bit mask (bit 0 representing digit position 0), compatible to
+     * {@link SetModuleMessage}.
+     *
+     * @return bit mask of selected digits
+     */
+    public int getDigitMask() {
+        return digitMask;
+    }
+
+    /**
+     * Returns the digits whose decimal point should be lit as a bit mask (bit 0 representing digit position 0),
+     * compatible to {@link SetModuleMessage}.
+     *
+     * @return bit mask of decimal points
+     */
+    public int getDecimalPointMask() {
+        return decimalPointMask;
+    }
+}
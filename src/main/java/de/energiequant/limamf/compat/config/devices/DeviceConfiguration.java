@@ -4,6 +4,11 @@ package de.energiequant.limamf.compat.config.devices;
  * Base class for all hardware components (devices in MobiFlight terms) described in an {@link InterfaceConfiguration}.
  */
 public abstract class DeviceConfiguration {
+    /**
+     * Delimiter between all parameters and the name of a device in protocol encoding used by MobiFlight firmware.
+     */
+    static final char PARAMETER_DELIMITER = FirmwareFormatScanner.PARAMETER_DELIMITER;
+
     private final DeviceType type;
     private final String name;
 
@@ -30,6 +35,62 @@ public abstract class DeviceConfiguration {
         return name;
     }
 
+    /**
+     * Returns the IDs of all pins directly occupied by this hardware component, in no particular order. Some pins may
+     * legitimately be shared with other components, such as select lines of multiplexers. Components attached to a bus
+     * (e.g. I2C) do not occupy any pins on their own.
+     *
+     * @return IDs of occupied pins; never null
+     */
+    public int[] getOccupiedPins() {
+        return new int[0];
+    }
+
+    /**
+     * Encodes this hardware component to the protocol encoding used by MobiFlight firmware, as it would be found as a
+     * single entry in an encoded {@link InterfaceConfiguration} (type ID, all parameters and name, but without entry
+     * terminator).
+     *
+     * @return protocol encoding used by MobiFlight firmware
+     * @see InterfaceConfiguration#toFirmwareFormat()
+     */
+    public String toFirmwareFormat() {
+        StringBuilder sb = new StringBuilder();
+        appendFirmwareFormat(sb);
+        return sb.toString();
+    }
+
+    void appendFirmwareFormat(StringBuilder sb) {
+        sb.append(type.getFirmwareEncoding());
+        sb.append(PARAMETER_DELIMITER);
+
+        encodeParametersTo(sb);
+
+        sb.append(name);
+    }
+
+    /**
+     * Appends all parameters in protocol encoding used by MobiFlight firmware, in the same order as parsed. Each
+     * parameter must be followed by {@link #PARAMETER_DELIMITER}; type ID and name are added by the caller.
+     *
+     * @param sb {@link StringBuilder} to append parameters to
+     */
+    protected abstract void encodeParametersTo(StringBuilder sb);
+
+    /**
+     * Appends the given numeric parameters in protocol encoding used by MobiFlight firmware, each followed by
+     * {@link #PARAMETER_DELIMITER}.
+     *
+     * @param sb         {@link StringBuilder} to append parameters to
+     * @param parameters parameters to append
+     */
+    static void encodeParameters(StringBuilder sb, int... parameters) {
+        for (int parameter : parameters) {
+            sb.append(parameter);
+            sb.append(PARAMETER_DELIMITER);
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(getClass().getSimpleName());
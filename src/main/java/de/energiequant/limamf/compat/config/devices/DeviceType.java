@@ -1,7 +1,6 @@
 package de.energiequant.limamf.compat.config.devices;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Optional;
 
 /**
@@ -33,18 +32,27 @@ public enum DeviceType {
     private final int firmwareEncoding;
     private final boolean deprecated;
 
-    private static final Map<Integer, DeviceType> BY_FIRMWARE_ENCODING = new HashMap<>();
+    private static final int MAX_FIRMWARE_ENCODING = 255;
+
+    // all possible encodings are resolved in advance so lookups neither need boxing nor allocate any Optional;
+    // generic arrays cannot be created directly, hence the raw array
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Optional<DeviceType>[] BY_FIRMWARE_ENCODING = new Optional[MAX_FIRMWARE_ENCODING + 1];
 
     static {
+        Arrays.fill(BY_FIRMWARE_ENCODING, Optional.empty());
+
         for (DeviceType deviceType : values()) {
-            DeviceType previous = BY_FIRMWARE_ENCODING.put(deviceType.firmwareEncoding, deviceType);
-            if (previous != null) {
+            Optional<DeviceType> previous = BY_FIRMWARE_ENCODING[deviceType.firmwareEncoding];
+            if (previous.isPresent()) {
                 throw new IllegalArgumentException(
                     "duplicate encoding " + deviceType.firmwareEncoding
-                        + " for " + previous
+                        + " for " + previous.get()
                         + " and " + deviceType
                 );
             }
+
+            BY_FIRMWARE_ENCODING[deviceType.firmwareEncoding] = Optional.of(deviceType);
         }
     }
 
@@ -53,7 +61,7 @@ public enum DeviceType {
     }
 
     DeviceType(int firmwareEncoding, boolean deprecated) {
-        if (firmwareEncoding < 0 || firmwareEncoding > 255) {
+        if (firmwareEncoding < 0 || firmwareEncoding > MAX_FIRMWARE_ENCODING) {
             throw new IllegalArgumentException("firmware encoding is supposed to be an unsigned byte, got " + firmwareEncoding);
         }
 
@@ -86,6 +94,10 @@ public enum DeviceType {
      * @return corresponding {@link DeviceType} enum, if known
      */
     public static Optional<DeviceType> fromFirmwareEncoding(int encoding) {
-        return Optional.ofNullable(BY_FIRMWARE_ENCODING.get(encoding));
+        if (encoding < 0 || encoding > MAX_FIRMWARE_ENCODING) {
+            return Optional.empty();
+        }
+
+        return BY_FIRMWARE_ENCODING[encoding];
     }
 }
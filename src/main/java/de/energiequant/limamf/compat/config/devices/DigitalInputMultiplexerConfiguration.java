@@ -2,14 +2,24 @@ package de.energiequant.limamf.compat.config.devices;
 
 import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Hardware description of a digital input multiplexer.
  */
 public class DigitalInputMultiplexerConfiguration extends DeviceConfiguration {
-    private static final Pattern FIRMWARE_PATTERN = Pattern.compile("^(\\d+)\\.(\\d+)\\.(\\d+)\\.(\\d+)\\.(\\d+)\\.(\\d+)\\.(.*)$");
+    static final FirmwareFormatScanner.DeviceFormat<DigitalInputMultiplexerConfiguration> FIRMWARE_FORMAT = new FirmwareFormatScanner.DeviceFormat<>(
+        6, false,
+        (p, n, name) -> new DigitalInputMultiplexerConfiguration(
+            requireUint8(p[0]),
+            new int[]{
+                requireUint8(p[1]),
+                requireUint8(p[2]),
+                requireUint8(p[3]),
+                requireUint8(p[4]),
+            },
+            requireUint8(p[5]),
+            name
+        )
+    );
 
     private final int pinData;
     private final int[] pinsSel;
@@ -31,22 +41,19 @@ public class DigitalInputMultiplexerConfiguration extends DeviceConfiguration {
      * @return decoded hardware description
      */
     public static DigitalInputMultiplexerConfiguration parseFirmwareFormat(String s) {
-        Matcher matcher = FIRMWARE_PATTERN.matcher(s);
-        if (!matcher.matches()) {
-            throw new IllegalArgumentException("Invalid syntax: \"" + s + "\"");
-        }
+        return FIRMWARE_FORMAT.parse(s);
+    }
 
-        return new DigitalInputMultiplexerConfiguration(
-            requireUint8(matcher.group(1)),
-            new int[]{
-                requireUint8(matcher.group(2)),
-                requireUint8(matcher.group(3)),
-                requireUint8(matcher.group(4)),
-                requireUint8(matcher.group(5)),
-            },
-            requireUint8(matcher.group(6)),
-            matcher.group(7)
-        );
+    @Override
+    public int[] getOccupiedPins() {
+        return new int[]{pinData, pinsSel[0], pinsSel[1], pinsSel[2], pinsSel[3]};
+    }
+
+    @Override
+    protected void encodeParametersTo(StringBuilder sb) {
+        encodeParameters(sb, pinData);
+        encodeParameters(sb, pinsSel);
+        encodeParameters(sb, numRegisters);
     }
 
     @Override
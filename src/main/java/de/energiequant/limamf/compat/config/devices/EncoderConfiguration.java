@@ -2,14 +2,14 @@ package de.energiequant.limamf.compat.config.devices;
 
 import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Hardware description of a rotary encoder.
  */
 public class EncoderConfiguration extends DeviceConfiguration {
-    private static final Pattern FIRMWARE_PATTERN = Pattern.compile("^(\\d+)\\.(\\d+)\\.(\\d+)\\.(.*)$");
+    static final FirmwareFormatScanner.DeviceFormat<EncoderConfiguration> FIRMWARE_FORMAT = new FirmwareFormatScanner.DeviceFormat<>(
+        3, false,
+        (p, n, name) -> new EncoderConfiguration(requireUint8(p[0]), requireUint8(p[1]), requireUint8(p[2]), name)
+    );
 
     private final int pin1;
     private final int pin2;
@@ -31,17 +31,17 @@ public class EncoderConfiguration extends DeviceConfiguration {
      * @return decoded hardware description
      */
     public static EncoderConfiguration parseFirmwareFormat(String s) {
-        Matcher matcher = FIRMWARE_PATTERN.matcher(s);
-        if (!matcher.matches()) {
-            throw new IllegalArgumentException("Invalid syntax: \"" + s + "\"");
-        }
-
-        return new EncoderConfiguration(
-            requireUint8(matcher.group(1)),
-            requireUint8(matcher.group(2)),
-            requireUint8(matcher.group(3)),
-            matcher.group(4)
-        );
+        return FIRMWARE_FORMAT.parse(s);
+    }
+
+    @Override
+    public int[] getOccupiedPins() {
+        return new int[]{pin1, pin2};
+    }
+
+    @Override
+    protected void encodeParametersTo(StringBuilder sb) {
+        encodeParameters(sb, pin1, pin2, type);
     }
 
     @Override
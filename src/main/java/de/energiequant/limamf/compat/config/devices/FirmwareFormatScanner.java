@@ -0,0 +1,219 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import java.util.Arrays;
+
+import de.energiequant.limamf.compat.utils.Numbers;
+
+/**
+ * Scans configurations in protocol encoding used by MobiFlight firmware in a single pass, without splitting strings or
+ * matching regular expressions. Numeric parameters are parsed in place; only device names are copied out.
+ * <p>
+ * Instances hold mutable state and thus are not thread-safe.
+ * </p>
+ */
+final class FirmwareFormatScanner {
+    static final char PARAMETER_DELIMITER = '.';
+    static final char DEVICE_TERMINATOR = ':';
+
+    private final CharSequence s;
+    private final int end;
+    private int position;
+
+    private int[] parameters = new int[8];
+    private int numParameters;
+
+    FirmwareFormatScanner(CharSequence s) {
+        this(s, 0, s.length());
+    }
+
+    FirmwareFormatScanner(CharSequence s, int fromIncl, int toExcl) {
+        this.s = s;
+        this.end = toExcl;
+        this.position = fromIncl;
+    }
+
+    /**
+     * Describes the parameters of a device type and creates devices from them.
+     *
+     * @param <T> type of device
+     */
+    static class DeviceFormat<T extends DeviceConfiguration> {
+        private final int numRequiredParameters;
+        private final boolean variableParameters;
+        private final DeviceFactory<T> factory;
+
+        /**
+         * @param numRequiredParameters number of numeric parameters preceding the name
+         * @param variableParameters    {@code true} if any number of further numeric parameters may follow
+         * @param factory               creates the device from parsed parameters
+         */
+        DeviceFormat(int numRequiredParameters, boolean variableParameters, DeviceFactory<T> factory) {
+            this.numRequiredParameters = numRequiredParameters;
+            this.variableParameters = variableParameters;
+            this.factory = factory;
+        }
+
+        /**
+         * Parses a single device (without type ID) which must span the full given string.
+         *
+         * @param s protocol encoding used by MobiFlight firmware, without type ID
+         * @return decoded hardware description
+         */
+        T parse(String s) {
+            FirmwareFormatScanner scanner = new FirmwareFormatScanner(s);
+            T device = scanner.readDevice(this);
+            if (!scanner.isAtEnd()) {
+                throw new IllegalArgumentException("Invalid syntax: \"" + s + "\"");
+            }
+            return device;
+        }
+
+        /**
+         * Creates a device from already parsed parameters.
+         *
+         * @param parameters    parameters as previously encoded by the device; only read until the method returns
+         * @param numParameters number of parameters
+         * @param name          device name
+         * @return decoded hardware description
+         * @throws IllegalArgumentException if the number of parameters does not match the format
+         */
+        T create(int[] parameters, int numParameters, String name) {
+            if ((numParameters < numRequiredParameters) || (!variableParameters && (numParameters > numRequiredParameters))) {
+                throw new IllegalArgumentException("unexpected number of parameters, got " + numParameters + ", requires " + numRequiredParameters + (variableParameters ? " or more" : ""));
+            }
+
+            return factory.create(parameters, numParameters, name);
+        }
+    }
+
+    @FunctionalInterface
+    interface DeviceFactory<T extends DeviceConfiguration> {
+        /**
+         * Creates a device from parsed parameters.
+         *
+         * @param parameters    parsed parameters; only valid until the method returns
+         * @param numParameters number of parsed parameters
+         * @param name          device name
+         * @return decoded hardware description
+         */
+        T create(int[] parameters, int numParameters, String name);
+    }
+
+    boolean isAtEnd() {
+        return position >= end;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Skips a single device terminator at the current position, if present.
+     */
+    void skipTerminator() {
+        if ((position < end) && (s.charAt(position) == DEVICE_TERMINATOR)) {
+            position++;
+        }
+    }
+
+    /**
+     * Skips all device terminators at the current position.
+     *
+     * @return number of skipped terminators
+     */
+    int skipTerminators() {
+        int start = position;
+        while ((position < end) && (s.charAt(position) == DEVICE_TERMINATOR)) {
+            position++;
+        }
+        return position - start;
+    }
+
+    /**
+     * Reads a mandatory unsigned numeric parameter including its trailing {@link #PARAMETER_DELIMITER}.
+     *
+     * @return parameter value
+     * @throws IllegalArgumentException if there is no numeric parameter at the current position
+     */
+    int readParameter() {
+        int value = tryReadParameter();
+        if (value < 0) {
+            throw new IllegalArgumentException("expected numeric parameter at position " + position + ": \"" + s + "\"");
+        }
+        return value;
+    }
+
+    /**
+     * Reads an unsigned numeric parameter including its trailing {@link #PARAMETER_DELIMITER} if there is one at the
+     * current position; the position remains unchanged otherwise.
+     *
+     * @return parameter value; -1 if there is no numeric parameter at the current position
+     */
+    private int tryReadParameter() {
+        int delimiter = position;
+        while ((delimiter < end) && isDigit(s.charAt(delimiter))) {
+            delimiter++;
+        }
+
+        if ((delimiter == position) || (delimiter >= end) || (s.charAt(delimiter) != PARAMETER_DELIMITER)) {
+            return -1;
+        }
+
+        int value = Numbers.tryParseUnsignedInt(s, position, delimiter);
+        if (value < 0) {
+            throw new IllegalArgumentException("numeric parameter exceeds integer range at position " + position + ": \"" + s + "\"");
+        }
+
+        position = delimiter + 1;
+
+        return value;
+    }
+
+    private static boolean isDigit(char ch) {
+        return (ch >= '0') && (ch <= '9');
+    }
+
+    /**
+     * Reads the device name up to the next {@link #DEVICE_TERMINATOR} or end of input. The terminator is not consumed.
+     *
+     * @return device name
+     */
+    String readName() {
+        int start = position;
+        while ((position < end) && (s.charAt(position) != DEVICE_TERMINATOR)) {
+            position++;
+        }
+        return s.subSequence(start, position).toString();
+    }
+
+    /**
+     * Reads all parameters and the name of a device (without type ID) at the current position.
+     *
+     * @param format format of the device to read
+     * @param <T>    type of device
+     * @return decoded hardware description
+     */
+    <T extends DeviceConfiguration> T readDevice(DeviceFormat<T> format) {
+        numParameters = 0;
+
+        for (int i = 0; i < format.numRequiredParameters; i++) {
+            addParameter(readParameter());
+        }
+
+        if (format.variableParameters) {
+            int value;
+            while ((value = tryReadParameter()) >= 0) {
+                addParameter(value);
+            }
+        }
+
+        return format.factory.create(parameters, numParameters, readName());
+    }
+
+    private void addParameter(int value) {
+        if (numParameters == parameters.length) {
+            parameters = Arrays.copyOf(parameters, parameters.length * 2);
+        }
+        parameters[numParameters++] = value;
+    }
+}
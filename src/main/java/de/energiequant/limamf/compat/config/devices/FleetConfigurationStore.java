@@ -0,0 +1,620 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Compact columnar store holding the {@link InterfaceConfiguration}s of many modules at once.
+ * <p>
+ * Instead of one object per device, all devices of all modules are kept in primitive columns (struct of arrays): type
+ * IDs, references to names in a shared string pool, occupied pins as bytes and all firmware parameters in a
+ * variable-length encoding. Modules are stored as contiguous ranges of devices. This considerably reduces heap usage
+ * when tracking hundreds of modules, especially since identical cockpits tend to reuse the same device names, and
+ * allows fleet-wide queries such as "all outputs on pin 13" to run as tight scans without materializing any
+ * {@link DeviceConfiguration}s.
+ * </p>
+ * <p>
+ * Modules and devices are addressed by indices. Device indices are global across the store; devices of a single module
+ * are found between {@link #getModuleDeviceStart(int)} (inclusive) and {@link #getModuleDeviceEnd(int)} (exclusive),
+ * in order of configuration. All indices remain stable while modules are added but are invalidated when a module is
+ * replaced or removed. Objects are only created on explicit request, see {@link #getDevice(int)} and
+ * {@link #getConfiguration(int)}.
+ * </p>
+ * <p>
+ * Pooled names are reference-counted and released as soon as no device of any stored module refers to them anymore,
+ * so replacing or removing modules does not leave stale names behind. Released slots of the pool are reused.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class FleetConfigurationStore {
+    private static final int INITIAL_MODULE_CAPACITY = 16;
+    private static final int INITIAL_DEVICE_CAPACITY = 256;
+
+    // modules
+    private int numModules;
+    private String[] moduleKeys = new String[INITIAL_MODULE_CAPACITY];
+    private int[] moduleDeviceOffsets = new int[INITIAL_MODULE_CAPACITY + 1];
+    private final Map<String, Integer> moduleIndexByKey = new HashMap<>();
+
+    // devices
+    private int numDevices;
+    private byte[] typeIds = new byte[INITIAL_DEVICE_CAPACITY];
+    private int[] nameRefs = new int[INITIAL_DEVICE_CAPACITY];
+    private int[] pinOffsets = new int[INITIAL_DEVICE_CAPACITY + 1];
+    private byte[] pins = new byte[INITIAL_DEVICE_CAPACITY];
+    private int[] parameterOffsets = new int[INITIAL_DEVICE_CAPACITY + 1];
+    private byte[] parameters = new byte[INITIAL_DEVICE_CAPACITY * 2];
+
+    // string pool; released slots are kept on a free list for reuse
+    private String[] pooledStrings = new String[INITIAL_DEVICE_CAPACITY];
+    private int[] poolReferenceCounts = new int[INITIAL_DEVICE_CAPACITY];
+    private int poolSize;
+    private int numPooledStrings;
+    private int[] freePoolSlots = new int[INITIAL_DEVICE_CAPACITY];
+    private int numFreePoolSlots;
+    private final Map<String, Integer> poolIndexByString = new HashMap<>();
+
+    /**
+     * Stores the given configuration for the given module, replacing any configuration previously stored for the same
+     * key. Replacing a module invalidates all module and device indices.
+     *
+     * @param moduleKey     key identifying the module, e.g. its serial
+     * @param configuration configuration of the module
+     * @return index of the module
+     */
+    public synchronized int putModule(String moduleKey, InterfaceConfiguration configuration) {
+        if (moduleKey == null) {
+            throw new IllegalArgumentException("module key must be defined");
+        }
+
+        removeModule(moduleKey);
+
+        List<DeviceConfiguration> devices = configuration.getDevices();
+        StringBuilder sb = new StringBuilder();
+
+        int moduleIndex = numModules;
+        ensureModuleCapacity(numModules + 1);
+        ensureDeviceCapacity(numDevices + devices.size());
+
+        for (DeviceConfiguration device : devices) {
+            int deviceIndex = numDevices;
+
+            typeIds[deviceIndex] = (byte) device.getType().getFirmwareEncoding();
+            nameRefs[deviceIndex] = pool(device.getName());
+
+            int pinOffset = pinOffsets[deviceIndex];
+            int[] occupiedPins = device.getOccupiedPins();
+            pins = ensureCapacity(pins, pinOffset + occupiedPins.length);
+            for (int pin : occupiedPins) {
+                pins[pinOffset++] = (byte) pin;
+            }
+            pinOffsets[deviceIndex + 1] = pinOffset;
+
+            // parameters are taken from the firmware encoding so the device can be recreated by its own format
+            sb.setLength(0);
+            device.encodeParametersTo(sb);
+            FirmwareFormatScanner scanner = new FirmwareFormatScanner(sb);
+            int parameterOffset = parameterOffsets[deviceIndex];
+            while (!scanner.isAtEnd()) {
+                parameters = ensureCapacity(parameters, parameterOffset + 5);
+                parameterOffset = writeVarInt(parameters, parameterOffset, scanner.readParameter());
+            }
+            parameterOffsets[deviceIndex + 1] = parameterOffset;
+
+            numDevices++;
+        }
+
+        moduleKeys[moduleIndex] = moduleKey;
+        moduleDeviceOffsets[moduleIndex + 1] = numDevices;
+        moduleIndexByKey.put(moduleKey, moduleIndex);
+        numModules++;
+
+        return moduleIndex;
+    }
+
+    /**
+     * Removes the configuration stored for the given module. Removing a module invalidates all module and device
+     * indices.
+     *
+     * @param moduleKey key identifying the module
+     * @return {@code true} if the module has been removed, {@code false} if it was not stored
+     */
+    public synchronized boolean removeModule(String moduleKey) {
+        Integer boxedModuleIndex = moduleIndexByKey.remove(moduleKey);
+        if (boxedModuleIndex == null) {
+            return false;
+        }
+
+        int moduleIndex = boxedModuleIndex;
+        int deviceStart = moduleDeviceOffsets[moduleIndex];
+        int deviceEnd = moduleDeviceOffsets[moduleIndex + 1];
+        int numRemovedDevices = deviceEnd - deviceStart;
+
+        int pinStart = pinOffsets[deviceStart];
+        int numRemovedPins = pinOffsets[deviceEnd] - pinStart;
+        int parameterStart = parameterOffsets[deviceStart];
+        int numRemovedParameterBytes = parameterOffsets[deviceEnd] - parameterStart;
+
+        for (int i = deviceStart; i < deviceEnd; i++) {
+            release(nameRefs[i]);
+        }
+
+        // compact value columns
+        System.arraycopy(pins, pinStart + numRemovedPins, pins, pinStart, pinOffsets[numDevices] - pinStart - numRemovedPins);
+        System.arraycopy(parameters, parameterStart + numRemovedParameterBytes, parameters, parameterStart, parameterOffsets[numDevices] - parameterStart - numRemovedParameterBytes);
+
+        // compact device columns
+        int numTrailingDevices = numDevices - deviceEnd;
+        System.arraycopy(typeIds, deviceEnd, typeIds, deviceStart, numTrailingDevices);
+        System.arraycopy(nameRefs, deviceEnd, nameRefs, deviceStart, numTrailingDevices);
+        for (int i = deviceStart; i < numDevices - numRemovedDevices; i++) {
+            pinOffsets[i + 1] = pinOffsets[i + 1 + numRemovedDevices] - numRemovedPins;
+            parameterOffsets[i + 1] = parameterOffsets[i + 1 + numRemovedDevices] - numRemovedParameterBytes;
+        }
+        numDevices -= numRemovedDevices;
+
+        // compact module columns
+        for (int i = moduleIndex; i < numModules - 1; i++) {
+            moduleKeys[i] = moduleKeys[i + 1];
+            moduleDeviceOffsets[i + 1] = moduleDeviceOffsets[i + 2] - numRemovedDevices;
+            moduleIndexByKey.put(moduleKeys[i], i);
+        }
+        numModules--;
+        moduleKeys[numModules] = null;
+
+        return true;
+    }
+
+    /**
+     * Removes all modules and pooled names.
+     */
+    public synchronized void clear() {
+        Arrays.fill(moduleKeys, 0, numModules, null);
+        numModules = 0;
+        moduleIndexByKey.clear();
+
+        numDevices = 0;
+
+        Arrays.fill(pooledStrings, 0, poolSize, null);
+        Arrays.fill(poolReferenceCounts, 0, poolSize, 0);
+        poolSize = 0;
+        numPooledStrings = 0;
+        numFreePoolSlots = 0;
+        poolIndexByString.clear();
+    }
+
+    /**
+     * Returns the number of stored modules.
+     *
+     * @return number of modules
+     */
+    public synchronized int getNumModules() {
+        return numModules;
+    }
+
+    /**
+     * Returns the index of the module stored for the given key.
+     *
+     * @param moduleKey key identifying the module
+     * @return index of module; empty if not stored
+     */
+    public synchronized OptionalInt getModuleIndex(String moduleKey) {
+        Integer moduleIndex = moduleIndexByKey.get(moduleKey);
+        return (moduleIndex == null) ? OptionalInt.empty() : OptionalInt.of(moduleIndex);
+    }
+
+    /**
+     * Returns the key of the given module.
+     *
+     * @param moduleIndex index of module
+     * @return key identifying the module
+     */
+    public synchronized String getModuleKey(int moduleIndex) {
+        checkModuleIndex(moduleIndex);
+        return moduleKeys[moduleIndex];
+    }
+
+    /**
+     * Returns the index of the first device of the given module.
+     *
+     * @param moduleIndex index of module
+     * @return index of first device (inclusive)
+     */
+    public synchronized int getModuleDeviceStart(int moduleIndex) {
+        checkModuleIndex(moduleIndex);
+        return moduleDeviceOffsets[moduleIndex];
+    }
+
+    /**
+     * Returns the index following the last device of the given module.
+     *
+     * @param moduleIndex index of module
+     * @return index following the last device (exclusive)
+     */
+    public synchronized int getModuleDeviceEnd(int moduleIndex) {
+        checkModuleIndex(moduleIndex);
+        return moduleDeviceOffsets[moduleIndex + 1];
+    }
+
+    /**
+     * Returns the total number of devices of all modules.
+     *
+     * @return number of devices
+     */
+    public synchronized int getNumDevices() {
+        return numDevices;
+    }
+
+    /**
+     * Returns the index of the module the given device belongs to.
+     *
+     * @param deviceIndex index of device
+     * @return index of module
+     */
+    public synchronized int getModuleOfDevice(int deviceIndex) {
+        checkDeviceIndex(deviceIndex);
+
+        // find last module starting at or before the device; empty modules share their offset with the next one
+        int low = 0;
+        int high = numModules - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (moduleDeviceOffsets[middle] <= deviceIndex) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the type of the given device.
+     *
+     * @param deviceIndex index of device
+     * @return device type
+     */
+    public synchronized DeviceType getType(int deviceIndex) {
+        checkDeviceIndex(deviceIndex);
+        return DeviceType.fromFirmwareEncoding(typeIds[deviceIndex] & 0xFF)
+                         .orElseThrow(() -> new IllegalStateException("unknown type ID stored for device " + deviceIndex));
+    }
+
+    /**
+     * Returns the name of the given device. Names are pooled, so this does not allocate.
+     *
+     * @param deviceIndex index of device
+     * @return device name
+     */
+    public synchronized String getName(int deviceIndex) {
+        checkDeviceIndex(deviceIndex);
+        return pooledStrings[nameRefs[deviceIndex]];
+    }
+
+    /**
+     * Returns the number of pins occupied by the given device.
+     *
+     * @param deviceIndex index of device
+     * @return number of occupied pins
+     * @see DeviceConfiguration#getOccupiedPins()
+     */
+    public synchronized int getNumPins(int deviceIndex) {
+        checkDeviceIndex(deviceIndex);
+        return pinOffsets[deviceIndex + 1] - pinOffsets[deviceIndex];
+    }
+
+    /**
+     * Returns a pin occupied by the given device.
+     *
+     * @param deviceIndex index of device
+     * @param pinIndex    index of pin within the device, see {@link #getNumPins(int)}
+     * @return pin ID
+     * @see DeviceConfiguration#getOccupiedPins()
+     */
+    public synchronized int getPin(int deviceIndex, int pinIndex) {
+        checkDeviceIndex(deviceIndex);
+
+        int offset = pinOffsets[deviceIndex] + pinIndex;
+        if ((pinIndex < 0) || (offset >= pinOffsets[deviceIndex + 1])) {
+            throw new IndexOutOfBoundsException("pin index " + pinIndex + " out of range for device " + deviceIndex);
+        }
+
+        return pins[offset] & 0xFF;
+    }
+
+    /**
+     * Checks if the given device occupies the given pin.
+     *
+     * @param deviceIndex index of device
+     * @param pin         pin ID
+     * @return {@code true} if the pin is occupied by the device, {@code false} if not
+     */
+    public synchronized boolean occupiesPin(int deviceIndex, int pin) {
+        checkDeviceIndex(deviceIndex);
+        return occupiesPinUnchecked(deviceIndex, pin);
+    }
+
+    private boolean occupiesPinUnchecked(int deviceIndex, int pin) {
+        int end = pinOffsets[deviceIndex + 1];
+        for (int i = pinOffsets[deviceIndex]; i < end; i++) {
+            if ((pins[i] & 0xFF) == pin) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of firmware parameters of the given device.
+     *
+     * @param deviceIndex index of device
+     * @return number of parameters
+     */
+    public synchronized int getNumParameters(int deviceIndex) {
+        checkDeviceIndex(deviceIndex);
+
+        int count = 0;
+        int end = parameterOffsets[deviceIndex + 1];
+        for (int i = parameterOffsets[deviceIndex]; i < end; i++) {
+            if ((parameters[i] & 0x80) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a firmware parameter of the given device, in order of protocol encoding used by MobiFlight firmware.
+     *
+     * @param deviceIndex    index of device
+     * @param parameterIndex index of parameter, see {@link #getNumParameters(int)}
+     * @return parameter value
+     */
+    public synchronized int getParameter(int deviceIndex, int parameterIndex) {
+        checkDeviceIndex(deviceIndex);
+
+        int offset = parameterOffsets[deviceIndex];
+        int end = parameterOffsets[deviceIndex + 1];
+        int value = 0;
+        int shift = 0;
+        int current = 0;
+        while ((offset < end) && (parameterIndex >= 0)) {
+            byte b = parameters[offset++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+
+            if ((b & 0x80) == 0) {
+                if (current == parameterIndex) {
+                    return value;
+                }
+                current++;
+                value = 0;
+                shift = 0;
+            }
+        }
+
+        throw new IndexOutOfBoundsException("parameter index " + parameterIndex + " out of range for device " + deviceIndex);
+    }
+
+    /**
+     * Finds all devices matching the given type and pin, across all modules, in order of device indices.
+     *
+     * @param type device type to match; null to match any type
+     * @param pin  pin ID which needs to be occupied by the device; negative to match any pin
+     * @return indices of all matching devices
+     */
+    public synchronized int[] findDevices(DeviceType type, int pin) {
+        int typeId = (type == null) ? -1 : type.getFirmwareEncoding();
+
+        int[] out = new int[16];
+        int numFound = 0;
+        for (int i = 0; i < numDevices; i++) {
+            if ((typeId >= 0) && ((typeIds[i] & 0xFF) != typeId)) {
+                continue;
+            }
+
+            if ((pin >= 0) && !occupiesPinUnchecked(i, pin)) {
+                continue;
+            }
+
+            if (numFound == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            out[numFound++] = i;
+        }
+
+        return Arrays.copyOf(out, numFound);
+    }
+
+    /**
+     * Finds all devices with the given name, across all modules, in order of device indices.
+     *
+     * @param name device name
+     * @return indices of all matching devices
+     */
+    public synchronized int[] findDevicesNamed(String name) {
+        Integer nameRef = poolIndexByString.get(name);
+        if (nameRef == null) {
+            return new int[0];
+        }
+
+        int[] out = new int[16];
+        int numFound = 0;
+        for (int i = 0; i < numDevices; i++) {
+            if (nameRefs[i] != nameRef) {
+                continue;
+            }
+
+            if (numFound == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            out[numFound++] = i;
+        }
+
+        return Arrays.copyOf(out, numFound);
+    }
+
+    /**
+     * Materializes the given device.
+     *
+     * @param deviceIndex index of device
+     * @return hardware description of the device
+     */
+    public synchronized DeviceConfiguration getDevice(int deviceIndex) {
+        DeviceType type = getType(deviceIndex);
+
+        FirmwareFormatScanner.DeviceFormat<?> format = InterfaceConfiguration.getFormat(type);
+        if (format == null) {
+            throw new IllegalStateException("unsupported type " + type + " stored for device " + deviceIndex);
+        }
+
+        int numParameters = getNumParameters(deviceIndex);
+        int[] decoded = new int[numParameters];
+        int offset = parameterOffsets[deviceIndex];
+        for (int i = 0; i < numParameters; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = parameters[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            decoded[i] = value;
+        }
+
+        return format.create(decoded, numParameters, getName(deviceIndex));
+    }
+
+    /**
+     * Materializes the full configuration of the given module.
+     *
+     * @param moduleIndex index of module
+     * @return configuration of the module
+     */
+    public synchronized InterfaceConfiguration getConfiguration(int moduleIndex) {
+        int start = getModuleDeviceStart(moduleIndex);
+        int end = getModuleDeviceEnd(moduleIndex);
+
+        List<DeviceConfiguration> devices = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            devices.add(getDevice(i));
+        }
+
+        return new InterfaceConfiguration(devices);
+    }
+
+    /**
+     * Returns the number of distinct names held by the string pool, i.e. referenced by at least one stored device.
+     *
+     * @return number of pooled names
+     */
+    public synchronized int getNumPooledNames() {
+        return numPooledStrings;
+    }
+
+    private int pool(String s) {
+        Integer existing = poolIndexByString.get(s);
+        if (existing != null) {
+            poolReferenceCounts[existing]++;
+            return existing;
+        }
+
+        int index;
+        if (numFreePoolSlots > 0) {
+            index = freePoolSlots[--numFreePoolSlots];
+        } else {
+            if (poolSize == pooledStrings.length) {
+                pooledStrings = Arrays.copyOf(pooledStrings, pooledStrings.length * 2);
+                poolReferenceCounts = Arrays.copyOf(poolReferenceCounts, poolReferenceCounts.length * 2);
+            }
+            index = poolSize++;
+        }
+
+        pooledStrings[index] = s;
+        poolReferenceCounts[index] = 1;
+        poolIndexByString.put(s, index);
+        numPooledStrings++;
+
+        return index;
+    }
+
+    private void release(int index) {
+        if (--poolReferenceCounts[index] > 0) {
+            return;
+        }
+
+        poolIndexByString.remove(pooledStrings[index]);
+        pooledStrings[index] = null;
+        numPooledStrings--;
+
+        if (numFreePoolSlots == freePoolSlots.length) {
+            freePoolSlots = Arrays.copyOf(freePoolSlots, freePoolSlots.length * 2);
+        }
+        freePoolSlots[numFreePoolSlots++] = index;
+    }
+
+    private static int writeVarInt(byte[] out, int offset, int value) {
+        // unsigned LEB128: 7 bits per byte, high bit set on all but the last byte
+        while ((value & ~0x7F) != 0) {
+            out[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+
+    private void ensureModuleCapacity(int required) {
+        if (required > moduleKeys.length) {
+            int capacity = Math.max(required, moduleKeys.length * 2);
+            moduleKeys = Arrays.copyOf(moduleKeys, capacity);
+            moduleDeviceOffsets = Arrays.copyOf(moduleDeviceOffsets, capacity + 1);
+        }
+    }
+
+    private void ensureDeviceCapacity(int required) {
+        if (required > typeIds.length) {
+            int capacity = Math.max(required, typeIds.length * 2);
+            typeIds = Arrays.copyOf(typeIds, capacity);
+            nameRefs = Arrays.copyOf(nameRefs, capacity);
+            pinOffsets = Arrays.copyOf(pinOffsets, capacity + 1);
+            parameterOffsets = Arrays.copyOf(parameterOffsets, capacity + 1);
+        }
+    }
+
+    private static byte[] ensureCapacity(byte[] array, int required) {
+        if (required <= array.length) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(required, array.length * 2));
+    }
+
+    private void checkModuleIndex(int moduleIndex) {
+        if (moduleIndex < 0 || moduleIndex >= numModules) {
+            throw new IndexOutOfBoundsException("module index " + moduleIndex + " out of range, store has " + numModules + " modules");
+        }
+    }
+
+    private void checkDeviceIndex(int deviceIndex) {
+        if (deviceIndex < 0 || deviceIndex >= numDevices) {
+            throw new IndexOutOfBoundsException("device index " + deviceIndex + " out of range, store has " + numDevices + " devices");
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FleetConfigurationStore(modules=" + numModules
+            + ", devices=" + numDevices
+            + ", pins=" + pinOffsets[numDevices]
+            + ", parameterBytes=" + parameterOffsets[numDevices]
+            + ", pooledNames=" + numPooledStrings
+            + ")";
+    }
+}
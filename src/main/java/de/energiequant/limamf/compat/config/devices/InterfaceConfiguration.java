@@ -2,12 +2,18 @@ package de.energiequant.limamf.compat.config.devices;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import de.energiequant.limamf.compat.protocol.GetConfigMessage;
+import de.energiequant.limamf.compat.protocol.SetConfigMessage;
 import de.energiequant.limamf.compat.utils.Maps;
+import de.energiequant.limamf.compat.utils.Numbers;
 
 /**
  * Describes all hardware components ("devices") configured on a MobiFlight module.
@@ -22,17 +28,80 @@ import de.energiequant.limamf.compat.utils.Maps;
 public class InterfaceConfiguration {
     private final List<DeviceConfiguration> devices;
 
-    private static final char PARAMETER_DELIMITER = '.';
+    // indexes are built once on construction; handles are positions within devices
+    private final Map<DeviceConfiguration, Integer> handlesByDevice;
+    private final int[] indexWithinTypeByHandle;
+    private final Map<String, DeviceConfiguration> devicesByName;
+    private final Map<DeviceType, List<DeviceConfiguration>> devicesByType;
+    private final Map<Integer, List<DeviceConfiguration>> devicesByPin;
 
-    private static final Map<DeviceType, Function<String, DeviceConfiguration>> DECODERS_BY_DEVICE_TYPE = Maps.createEnumMap(
+    private static final Map<DeviceType, FirmwareFormatScanner.DeviceFormat<?>> FORMATS_BY_DEVICE_TYPE = Maps.createEnumMap(
         DeviceType.class,
-        Maps.entry(DeviceType.ENCODER, EncoderConfiguration::parseFirmwareFormat),
-        Maps.entry(DeviceType.DIGITAL_INPUT_MULTIPLEXER, DigitalInputMultiplexerConfiguration::parseFirmwareFormat),
-        Maps.entry(DeviceType.OUTPUT, OutputConfiguration::parseFirmwareFormat)
+        Maps.entry(DeviceType.ENCODER, EncoderConfiguration.FIRMWARE_FORMAT),
+        Maps.entry(DeviceType.DIGITAL_INPUT_MULTIPLEXER, DigitalInputMultiplexerConfiguration.FIRMWARE_FORMAT),
+        Maps.entry(DeviceType.OUTPUT, OutputConfiguration.FIRMWARE_FORMAT),
+        Maps.entry(DeviceType.OUTPUT_SHIFTER, OutputShifterConfiguration.FIRMWARE_FORMAT),
+        Maps.entry(DeviceType.LED_SEGMENT_MULTI, LedSegmentConfiguration.FIRMWARE_FORMAT),
+        Maps.entry(DeviceType.LCD_DISPLAY_I2C, LcdDisplayConfiguration.FIRMWARE_FORMAT),
+        Maps.entry(DeviceType.SERVO, ServoConfiguration.FIRMWARE_FORMAT),
+        Maps.entry(DeviceType.STEPPER, StepperConfiguration.FIRMWARE_FORMAT)
     );
 
-    private InterfaceConfiguration(List<DeviceConfiguration> devices) {
+    InterfaceConfiguration(List<DeviceConfiguration> devices) {
         this.devices = Collections.unmodifiableList(devices);
+
+        int numDevices = devices.size();
+        Map<DeviceConfiguration, Integer> handlesByDevice = new IdentityHashMap<>(numDevices);
+        Map<String, DeviceConfiguration> devicesByName = new HashMap<>();
+        EnumMap<DeviceType, List<DeviceConfiguration>> devicesByType = new EnumMap<>(DeviceType.class);
+        // only few pins are actually occupied, so only those are indexed
+        Map<Integer, List<DeviceConfiguration>> devicesByPin = new HashMap<>();
+        indexWithinTypeByHandle = new int[numDevices];
+
+        for (int handle = 0; handle < numDevices; handle++) {
+            DeviceConfiguration device = devices.get(handle);
+
+            handlesByDevice.put(device, handle);
+
+            // firmware addresses inputs by name, so the first device wins if names are ambiguous
+            devicesByName.putIfAbsent(device.getName(), device);
+
+            List<DeviceConfiguration> sameType = devicesByType.computeIfAbsent(device.getType(), x -> new ArrayList<>());
+            indexWithinTypeByHandle[handle] = sameType.size();
+            sameType.add(device);
+
+            for (int pin : device.getOccupiedPins()) {
+                List<DeviceConfiguration> samePin = devicesByPin.computeIfAbsent(pin, x -> new ArrayList<>(1));
+
+                // the same device may occupy a pin multiple times, e.g. steppers in 2-wire mode
+                if (samePin.isEmpty() || samePin.get(samePin.size() - 1) != device) {
+                    samePin.add(device);
+                }
+            }
+        }
+
+        for (Map.Entry<DeviceType, List<DeviceConfiguration>> entry : devicesByType.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        for (Map.Entry<Integer, List<DeviceConfiguration>> entry : devicesByPin.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        this.handlesByDevice = handlesByDevice;
+        this.devicesByName = devicesByName;
+        this.devicesByType = devicesByType;
+        this.devicesByPin = devicesByPin;
+    }
+
+    /**
+     * Returns the format used to decode devices of the given type.
+     *
+     * @param type device type
+     * @return format of the device type; null if unsupported
+     */
+    static FirmwareFormatScanner.DeviceFormat<?> getFormat(DeviceType type) {
+        return FORMATS_BY_DEVICE_TYPE.get(type);
     }
 
     /**
@@ -44,6 +113,113 @@ public class InterfaceConfiguration {
         return devices;
     }
 
+    /**
+     * Returns the number of described hardware components; valid handles range from 0 to the returned value
+     * (exclusive).
+     *
+     * @return number of hardware components
+     * @see #getHandle(DeviceConfiguration)
+     */
+    public int getNumDevices() {
+        return devices.size();
+    }
+
+    /**
+     * Returns the dense handle of the given device, which is its position in order of configuration. Handles can be
+     * used to refer to devices by plain array indices on hot paths.
+     *
+     * @param device device to look up; must be part of this configuration
+     * @return handle of the device
+     * @throws IllegalArgumentException if the device is not part of this configuration
+     * @see #getDevice(int)
+     */
+    public int getHandle(DeviceConfiguration device) {
+        Integer handle = handlesByDevice.get(device);
+        if (handle == null) {
+            throw new IllegalArgumentException("device is not part of this configuration: " + device);
+        }
+
+        return handle;
+    }
+
+    /**
+     * Returns the device referred to by the given handle.
+     *
+     * @param handle handle of the device
+     * @return device referred to by the handle
+     * @throws IndexOutOfBoundsException if the handle is invalid
+     * @see #getHandle(DeviceConfiguration)
+     */
+    public DeviceConfiguration getDevice(int handle) {
+        return devices.get(handle);
+    }
+
+    /**
+     * Looks up a device by its name, such as reported by input events. If multiple devices share the same name, the
+     * first one in order of configuration is returned.
+     *
+     * @param name name of the device
+     * @return device of given name; empty if not found
+     */
+    public Optional<DeviceConfiguration> getDeviceByName(String name) {
+        return Optional.ofNullable(devicesByName.get(name));
+    }
+
+    /**
+     * Returns all devices of the given type, in order of configuration. The position within the list is the index
+     * used by MobiFlight firmware to address the device.
+     *
+     * @param type device type
+     * @return all devices of the given type; empty if none
+     */
+    public List<DeviceConfiguration> getDevicesOfType(DeviceType type) {
+        return devicesByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * Returns all devices of the given type as the given specific class, in order of configuration. The position within
+     * the list is the index used by MobiFlight firmware to address the device.
+     *
+     * @param type  device type
+     * @param clazz class implementing the device type
+     * @param <T>   class implementing the device type
+     * @return all devices of the given type; empty if none
+     * @throws ClassCastException if devices of given type are not implemented by the given class
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends DeviceConfiguration> List<T> getDevicesOfType(DeviceType type, Class<T> clazz) {
+        List<DeviceConfiguration> out = getDevicesOfType(type);
+        for (DeviceConfiguration device : out) {
+            clazz.cast(device);
+        }
+
+        return (List<T>) out;
+    }
+
+    /**
+     * Returns all devices occupying the given pin, in order of configuration. Multiple devices may share a pin, such as
+     * select lines of multiplexers.
+     *
+     * @param pin pin ID
+     * @return all devices occupying the pin; empty if none
+     * @see DeviceConfiguration#getOccupiedPins()
+     */
+    public List<DeviceConfiguration> getDevicesByPin(int pin) {
+        return devicesByPin.getOrDefault(Numbers.requireUint8(pin), Collections.emptyList());
+    }
+
+    /**
+     * Returns the index of the given device among all devices of the same type, in order of configuration. MobiFlight
+     * firmware uses such indices to address devices like shift registers or displays.
+     *
+     * @param device device to look up; must be part of this configuration
+     * @return index among all devices of the same type
+     * @throws IllegalArgumentException if the device is not part of this configuration
+     */
+    public int getIndexWithinType(DeviceConfiguration device) {
+        return indexWithinTypeByHandle[getHandle(device)];
+    }
+
     /**
      * Parses the given string to an {@link InterfaceConfiguration} according to the given protocol encoding used by
      * MobiFlight firmware (e.g. received via {@link GetConfigMessage}).
@@ -53,56 +229,87 @@ public class InterfaceConfiguration {
      */
     public static InterfaceConfiguration parseFirmwareFormat(String s) {
         List<DeviceConfiguration> devices = new ArrayList<>();
+        scanFirmwareFormat(s, devices::add);
+        return new InterfaceConfiguration(devices);
+    }
 
-        String[] deviceStrings = s.split(":");
-        for (int i = 0; i < deviceStrings.length; i++) {
-            String deviceString = deviceStrings[i];
-            if (deviceString.isEmpty()) {
-                if (i == deviceStrings.length - 1) {
-                    // only the last device string may be empty due to termination of previous name
+    /**
+     * Scans the given protocol encoding used by MobiFlight firmware in a single pass and emits each device to the given
+     * callback as soon as it has been decoded. Numeric parameters are parsed in place, so apart from the devices and
+     * their names no intermediate objects are created.
+     * <p>
+     * Devices decoded before a syntax error is encountered have already been emitted when the exception is thrown.
+     * </p>
+     *
+     * @param s        protocol encoding used by MobiFlight firmware
+     * @param callback receives all decoded devices in order of configuration
+     * @see #parseFirmwareFormat(String)
+     */
+    public static void scanFirmwareFormat(CharSequence s, Consumer<? super DeviceConfiguration> callback) {
+        FirmwareFormatScanner scanner = new FirmwareFormatScanner(s);
+
+        int i = 0;
+        while (!scanner.isAtEnd()) {
+            int entryStart = scanner.getPosition();
+
+            if (scanner.skipTerminators() > 0) {
+                if (scanner.isAtEnd()) {
+                    // only trailing device strings may be empty due to termination of previous name
                     break;
                 } else {
                     throw new IllegalArgumentException("empty device string found in unexpected place");
                 }
             }
 
-            int parameterDelimiter = deviceString.indexOf(PARAMETER_DELIMITER);
-            if (parameterDelimiter < 0) {
-                throw new IllegalArgumentException("missing parameter delimiter on entry #" + i + ": \"" + deviceString + "\"");
-            }
-            if (parameterDelimiter == 0) {
-                throw new IllegalArgumentException("blank type ID on entry #" + i + ": \"" + deviceString + "\"");
-            }
-
             int typeEncoded;
             try {
-                typeEncoded = Integer.parseUnsignedInt(deviceString.substring(0, parameterDelimiter));
-            } catch (NumberFormatException ex) {
-                throw new IllegalArgumentException("bad type ID on entry #" + i + ": \"" + deviceString + "\"", ex);
+                typeEncoded = scanner.readParameter();
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("bad type ID on entry #" + i + " at position " + entryStart, ex);
             }
 
             DeviceType type = DeviceType.fromFirmwareEncoding(typeEncoded).orElse(null);
             if (type == null) {
-                throw new IllegalArgumentException("unknown type ID " + typeEncoded + " on entry #" + i + ": \"" + deviceString + "\"");
+                throw new IllegalArgumentException("unknown type ID " + typeEncoded + " on entry #" + i + " at position " + entryStart);
             }
 
-            Function<String, DeviceConfiguration> decoder = DECODERS_BY_DEVICE_TYPE.get(type);
-            if (decoder == null) {
-                throw new IllegalArgumentException("unhandled type " + type + " on entry #" + i + ": \"" + deviceString + "\"");
+            FirmwareFormatScanner.DeviceFormat<?> format = getFormat(type);
+            if (format == null) {
+                throw new IllegalArgumentException("unhandled type " + type + " on entry #" + i + " at position " + entryStart);
             }
 
-            String remainder = deviceString.substring(parameterDelimiter + 1);
             DeviceConfiguration device;
             try {
-                device = decoder.apply(remainder);
+                device = scanner.readDevice(format);
             } catch (Exception ex) {
-                throw new IllegalArgumentException("decoding " + type + " failed for entry #" + i + ": \"" + deviceString + "\"", ex);
+                throw new IllegalArgumentException("decoding " + type + " failed for entry #" + i + " at position " + entryStart, ex);
             }
 
-            devices.add(device);
+            // names end on a terminator, except maybe for the last device
+            scanner.skipTerminator();
+
+            callback.accept(device);
+            i++;
         }
+    }
 
-        return new InterfaceConfiguration(devices);
+    /**
+     * Encodes this configuration to the protocol encoding used by MobiFlight firmware, as it would be returned by the
+     * module in response to a {@link GetConfigMessage}. Parsing the result with {@link #parseFirmwareFormat(String)}
+     * yields an equivalent configuration.
+     *
+     * @return protocol encoding used by MobiFlight firmware
+     * @see SetConfigMessage#split(String)
+     */
+    public String toFirmwareFormat() {
+        StringBuilder sb = new StringBuilder();
+
+        for (DeviceConfiguration device : devices) {
+            device.appendFirmwareFormat(sb);
+            sb.append(FirmwareFormatScanner.DEVICE_TERMINATOR);
+        }
+
+        return sb.toString();
     }
 
     @Override
@@ -0,0 +1,208 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.energiequant.limamf.compat.protocol.ConfigurationInfoMessage;
+
+/**
+ * Bounded cache of decoded {@link InterfaceConfiguration}s, keyed by their raw protocol encoding.
+ * <p>
+ * The same few raw configurations tend to be received over and over (identical modules, reconnects, polling for
+ * changes). Decoding them through the cache returns a shared instance for identical raw configurations, so they are
+ * only decoded once and identical modules share a single object graph. As {@link InterfaceConfiguration}s and their
+ * devices are immutable, sharing them is safe.
+ * </p>
+ * <p>
+ * The cache is bounded by both the number of entries and the total length of all cached raw configurations (as a
+ * proxy for the memory held by decoded configurations). When either limit is exceeded, least recently used entries are
+ * evicted. Configurations which could not be decoded are not cached.
+ * </p>
+ * <p>
+ * All methods are thread-safe. Decoding is performed outside of locks, so concurrent misses for the same raw
+ * configuration may decode redundantly but still result in a single shared instance.
+ * </p>
+ *
+ * @see ConfigurationInfoMessage#getConfiguration()
+ */
+public class InterfaceConfigurationCache {
+    /**
+     * Default maximum number of cached configurations, see {@link #setMaximumEntries(int)}.
+     */
+    public static final int DEFAULT_MAXIMUM_ENTRIES = 64;
+
+    /**
+     * Default maximum total length of all cached raw configurations, see {@link #setMaximumTotalLength(long)}.
+     */
+    public static final long DEFAULT_MAXIMUM_TOTAL_LENGTH = 256 * 1024;
+
+    private static final InterfaceConfigurationCache DEFAULT_INSTANCE = new InterfaceConfigurationCache();
+
+    private final LinkedHashMap<String, InterfaceConfiguration> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int maximumEntries = DEFAULT_MAXIMUM_ENTRIES;
+    private long maximumTotalLength = DEFAULT_MAXIMUM_TOTAL_LENGTH;
+    private long totalLength = 0;
+
+    private long numHits = 0;
+    private long numMisses = 0;
+    private long numEvictions = 0;
+
+    /**
+     * Returns the cache shared by default, e.g. by {@link ConfigurationInfoMessage#getConfiguration()}.
+     *
+     * @return default cache
+     */
+    public static InterfaceConfigurationCache getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Sets the maximum number of cached configurations. Excess entries are evicted immediately. Defaults to
+     * {@value #DEFAULT_MAXIMUM_ENTRIES}; 0 disables caching.
+     *
+     * @param maximumEntries maximum number of cached configurations; must not be negative
+     * @return same instance for method-chaining
+     */
+    public synchronized InterfaceConfigurationCache setMaximumEntries(int maximumEntries) {
+        if (maximumEntries < 0) {
+            throw new IllegalArgumentException("maximum number of entries must not be negative, got " + maximumEntries);
+        }
+
+        this.maximumEntries = maximumEntries;
+        evictExcess();
+
+        return this;
+    }
+
+    /**
+     * Sets the maximum total length of all cached raw configurations. Excess entries are evicted immediately.
+     * Configurations longer than this limit are never cached. Defaults to {@value #DEFAULT_MAXIMUM_TOTAL_LENGTH}.
+     *
+     * @param maximumTotalLength maximum total number of characters; must not be negative
+     * @return same instance for method-chaining
+     */
+    public synchronized InterfaceConfigurationCache setMaximumTotalLength(long maximumTotalLength) {
+        if (maximumTotalLength < 0) {
+            throw new IllegalArgumentException("maximum total length must not be negative, got " + maximumTotalLength);
+        }
+
+        this.maximumTotalLength = maximumTotalLength;
+        evictExcess();
+
+        return this;
+    }
+
+    /**
+     * Decodes the given raw configuration or returns the shared instance if it has been decoded before, see
+     * {@link LazyInterfaceConfiguration#toInterfaceConfiguration()}.
+     *
+     * @param raw protocol encoding used by MobiFlight firmware
+     * @return decoded hardware configuration, shared with all other callers decoding the same raw configuration
+     * @throws IllegalArgumentException if the configuration is malformed or contains devices of unknown or unsupported
+     *                                  types
+     */
+    public InterfaceConfiguration get(String raw) {
+        synchronized (this) {
+            InterfaceConfiguration cached = entries.get(raw);
+            if (cached != null) {
+                numHits++;
+                return cached;
+            }
+
+            numMisses++;
+        }
+
+        InterfaceConfiguration decoded = LazyInterfaceConfiguration.index(raw).toInterfaceConfiguration();
+
+        synchronized (this) {
+            if (raw.length() > maximumTotalLength) {
+                return decoded;
+            }
+
+            InterfaceConfiguration previous = entries.putIfAbsent(raw, decoded);
+            if (previous != null) {
+                return previous;
+            }
+
+            totalLength += raw.length();
+            evictExcess();
+        }
+
+        return decoded;
+    }
+
+    private void evictExcess() {
+        Iterator<Map.Entry<String, InterfaceConfiguration>> it = entries.entrySet().iterator();
+        while (it.hasNext() && (entries.size() > maximumEntries || totalLength > maximumTotalLength)) {
+            Map.Entry<String, InterfaceConfiguration> eldest = it.next();
+            totalLength -= eldest.getKey().length();
+            it.remove();
+            numEvictions++;
+        }
+    }
+
+    /**
+     * Returns the number of currently cached configurations.
+     *
+     * @return number of cached configurations
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total length of all currently cached raw configurations.
+     *
+     * @return total number of characters
+     */
+    public synchronized long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Returns the number of lookups which have been served from the cache.
+     *
+     * @return number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return numHits;
+    }
+
+    /**
+     * Returns the number of lookups which required decoding.
+     *
+     * @return number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return numMisses;
+    }
+
+    /**
+     * Returns the number of entries which have been evicted to stay within limits.
+     *
+     * @return number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return numEvictions;
+    }
+
+    /**
+     * Removes all cached configurations. Counters are retained.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalLength = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "InterfaceConfigurationCache(size=" + entries.size()
+            + ", totalLength=" + totalLength
+            + ", hits=" + numHits
+            + ", misses=" + numMisses
+            + ", evictions=" + numEvictions
+            + ")";
+    }
+}
@@ -0,0 +1,341 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import de.energiequant.limamf.compat.protocol.ConfigurationInfoMessage;
+
+/**
+ * Lazily decoded view of a configuration in protocol encoding used by MobiFlight firmware.
+ * <p>
+ * Unlike {@link InterfaceConfiguration#parseFirmwareFormat(String)}, indexing only locates entry boundaries and type
+ * IDs in a single cheap pass. Individual {@link DeviceConfiguration}s are decoded when first accessed and cached
+ * afterwards, so callers only pay for what they actually use, e.g. just the raw string, a fingerprint or devices of a
+ * single type.
+ * </p>
+ * <p>
+ * Entries of unknown or unsupported types do not fail the configuration; they are kept as opaque raw entries which can
+ * still be inspected via {@link #getRawEntry(int)}. Malformed entries of supported types only fail when they are
+ * decoded. Converting {@link #toInterfaceConfiguration() to a full configuration} requires all entries to be
+ * supported.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ *
+ * @see ConfigurationInfoMessage#getLazyConfiguration()
+ */
+public class LazyInterfaceConfiguration {
+    private static final int UNKNOWN_TYPE_ID = -1;
+
+    // FNV-1a 64 bit
+    private static final long FINGERPRINT_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
+    private final String raw;
+    private final int numEntries;
+    private final int[] entryStarts;
+    private final int[] entryEnds;
+    private final int[] typeIds;
+
+    private final DeviceConfiguration[] decoded;
+    private long fingerprint;
+    private boolean fingerprintComputed = false;
+    private InterfaceConfiguration full;
+
+    private LazyInterfaceConfiguration(String raw, int numEntries, int[] entryStarts, int[] entryEnds, int[] typeIds) {
+        this.raw = raw;
+        this.numEntries = numEntries;
+        this.entryStarts = entryStarts;
+        this.entryEnds = entryEnds;
+        this.typeIds = typeIds;
+        this.decoded = new DeviceConfiguration[numEntries];
+    }
+
+    /**
+     * Indexes the given configuration without decoding any devices.
+     *
+     * @param raw protocol encoding used by MobiFlight firmware
+     * @return lazily decoded configuration
+     * @throws IllegalArgumentException if entry boundaries are malformed
+     */
+    public static LazyInterfaceConfiguration index(String raw) {
+        int length = raw.length();
+
+        int capacity = 16;
+        int[] entryStarts = new int[capacity];
+        int[] entryEnds = new int[capacity];
+        int[] typeIds = new int[capacity];
+        int numEntries = 0;
+
+        int entryStart = 0;
+        while (entryStart < length) {
+            int entryEnd = entryStart;
+            int typeId = 0;
+            boolean typeIdValid = false;
+
+            // type ID is only accepted if it is followed by a parameter delimiter
+            while ((entryEnd < length) && (raw.charAt(entryEnd) >= '0') && (raw.charAt(entryEnd) <= '9') && (typeId <= 255)) {
+                typeId = typeId * 10 + (raw.charAt(entryEnd) - '0');
+                entryEnd++;
+            }
+            if ((entryEnd > entryStart) && (entryEnd < length) && (raw.charAt(entryEnd) == FirmwareFormatScanner.PARAMETER_DELIMITER) && (typeId <= 255)) {
+                typeIdValid = true;
+            }
+
+            while ((entryEnd < length) && (raw.charAt(entryEnd) != FirmwareFormatScanner.DEVICE_TERMINATOR)) {
+                entryEnd++;
+            }
+
+            if (entryEnd == entryStart) {
+                // only trailing device strings may be empty due to termination of previous name
+                while ((entryEnd < length) && (raw.charAt(entryEnd) == FirmwareFormatScanner.DEVICE_TERMINATOR)) {
+                    entryEnd++;
+                }
+
+                if (entryEnd < length) {
+                    throw new IllegalArgumentException("empty device string found in unexpected place");
+                }
+
+                break;
+            }
+
+            if (numEntries == capacity) {
+                capacity *= 2;
+                entryStarts = Arrays.copyOf(entryStarts, capacity);
+                entryEnds = Arrays.copyOf(entryEnds, capacity);
+                typeIds = Arrays.copyOf(typeIds, capacity);
+            }
+
+            entryStarts[numEntries] = entryStart;
+            entryEnds[numEntries] = entryEnd;
+            typeIds[numEntries] = typeIdValid ? typeId : UNKNOWN_TYPE_ID;
+            numEntries++;
+
+            entryStart = entryEnd + 1;
+        }
+
+        return new LazyInterfaceConfiguration(raw, numEntries, entryStarts, entryEnds, typeIds);
+    }
+
+    /**
+     * Returns the raw configuration this view has been indexed from.
+     *
+     * @return raw configuration in protocol encoding used by MobiFlight firmware
+     */
+    public String getRawConfiguration() {
+        return raw;
+    }
+
+    /**
+     * Returns a 64-bit fingerprint (FNV-1a) of the raw configuration, suitable to detect whether a module's
+     * configuration changed without decoding or retaining it. Computed on first call.
+     *
+     * @return fingerprint of the raw configuration
+     */
+    public synchronized long getFingerprint() {
+        if (!fingerprintComputed) {
+            fingerprint = fingerprint(raw);
+            fingerprintComputed = true;
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Computes the same fingerprint as {@link #getFingerprint()} for the given raw configuration, without indexing it.
+     *
+     * @param raw raw configuration in protocol encoding used by MobiFlight firmware
+     * @return fingerprint of the raw configuration
+     */
+    public static long fingerprint(CharSequence raw) {
+        long hash = FINGERPRINT_OFFSET_BASIS;
+
+        int length = raw.length();
+        for (int i = 0; i < length; i++) {
+            char ch = raw.charAt(i);
+            hash = (hash ^ (ch & 0xFF)) * FINGERPRINT_PRIME;
+            hash = (hash ^ (ch >>> 8)) * FINGERPRINT_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns the number of entries, including opaque entries of unknown or unsupported types.
+     *
+     * @return number of entries
+     */
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+    /**
+     * Returns the raw type ID of the given entry.
+     *
+     * @param index index of entry
+     * @return type ID of entry; -1 if the entry does not start with a valid type ID
+     */
+    public int getTypeId(int index) {
+        checkIndex(index);
+        return typeIds[index];
+    }
+
+    /**
+     * Returns the type of the given entry, if known.
+     *
+     * @param index index of entry
+     * @return type of entry; empty if unknown
+     */
+    public Optional<DeviceType> getType(int index) {
+        int typeId = getTypeId(index);
+        if (typeId == UNKNOWN_TYPE_ID) {
+            return Optional.empty();
+        }
+
+        return DeviceType.fromFirmwareEncoding(typeId);
+    }
+
+    /**
+     * Checks if the given entry can be decoded to a {@link DeviceConfiguration}. Unsupported entries are kept as
+     * opaque raw entries.
+     *
+     * @param index index of entry
+     * @return {@code true} if the entry type is supported, {@code false} if the entry is opaque
+     */
+    public boolean isSupported(int index) {
+        return getType(index).map(InterfaceConfiguration::getFormat).isPresent();
+    }
+
+    /**
+     * Returns the raw encoding of the given entry, including its type ID but without terminator.
+     *
+     * @param index index of entry
+     * @return raw entry
+     */
+    public String getRawEntry(int index) {
+        checkIndex(index);
+        return raw.substring(entryStarts[index], entryEnds[index]);
+    }
+
+    /**
+     * Returns the device described by the given entry, decoding it on first access.
+     *
+     * @param index index of entry
+     * @return decoded device; empty if the entry is opaque
+     * @throws IllegalArgumentException if a supported entry is malformed
+     */
+    public Optional<DeviceConfiguration> getDevice(int index) {
+        checkIndex(index);
+
+        synchronized (this) {
+            DeviceConfiguration device = decoded[index];
+            if (device != null) {
+                return Optional.of(device);
+            }
+        }
+
+        DeviceType type = getType(index).orElse(null);
+        FirmwareFormatScanner.DeviceFormat<?> format = (type == null) ? null : InterfaceConfiguration.getFormat(type);
+        if (format == null) {
+            return Optional.empty();
+        }
+
+        FirmwareFormatScanner scanner = new FirmwareFormatScanner(raw, entryStarts[index], entryEnds[index]);
+        DeviceConfiguration device;
+        try {
+            scanner.readParameter(); // type ID
+            device = scanner.readDevice(format);
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("decoding " + type + " failed for entry #" + index + ": \"" + getRawEntry(index) + "\"", ex);
+        }
+
+        synchronized (this) {
+            // concurrent callers may decode redundantly but all need to see the same instance
+            if (decoded[index] == null) {
+                decoded[index] = device;
+            }
+            return Optional.of(decoded[index]);
+        }
+    }
+
+    /**
+     * Decodes all entries of the given type, in order of configuration. Entries of other types are not decoded.
+     *
+     * @param type device type
+     * @return all devices of the given type; empty if none or the type is unsupported
+     * @throws IllegalArgumentException if an entry of the given type is malformed
+     */
+    public List<DeviceConfiguration> getDevicesOfType(DeviceType type) {
+        List<DeviceConfiguration> out = new ArrayList<>();
+
+        int typeId = type.getFirmwareEncoding();
+        for (int i = 0; i < numEntries; i++) {
+            if (typeIds[i] == typeId) {
+                getDevice(i).ifPresent(out::add);
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Decodes all entries to a full {@link InterfaceConfiguration}, equivalent to
+     * {@link InterfaceConfiguration#parseFirmwareFormat(String)}. Since {@link InterfaceConfiguration} can only hold
+     * supported devices, opaque entries are not skipped but fail the conversion, so the result never silently lacks
+     * any devices (which would also get lost when encoding it {@link InterfaceConfiguration#toFirmwareFormat() back}).
+     * Use {@link #getDevice(int)} or {@link #getDevicesOfType(DeviceType)} to access supported devices of such
+     * configurations. The result is cached.
+     *
+     * @return configuration holding all devices
+     * @throws IllegalArgumentException if any entry is opaque or a supported entry is malformed
+     */
+    public InterfaceConfiguration toInterfaceConfiguration() {
+        synchronized (this) {
+            if (full != null) {
+                return full;
+            }
+        }
+
+        List<DeviceConfiguration> devices = new ArrayList<>(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+            int index = i;
+            devices.add(getDevice(i).orElseThrow(() -> new IllegalArgumentException(describeOpaqueEntry(index))));
+        }
+
+        InterfaceConfiguration configuration = new InterfaceConfiguration(devices);
+
+        synchronized (this) {
+            if (full == null) {
+                full = configuration;
+            }
+            return full;
+        }
+    }
+
+    private String describeOpaqueEntry(int index) {
+        if (typeIds[index] == UNKNOWN_TYPE_ID) {
+            return "bad type ID on entry #" + index + " at position " + entryStarts[index];
+        }
+
+        DeviceType type = getType(index).orElse(null);
+        if (type == null) {
+            return "unknown type ID " + typeIds[index] + " on entry #" + index + " at position " + entryStarts[index];
+        }
+
+        return "unhandled type " + type + " on entry #" + index + " at position " + entryStarts[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= numEntries) {
+            throw new IndexOutOfBoundsException("entry index " + index + " out of range, configuration has " + numEntries + " entries");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LazyInterfaceConfiguration(entries=" + numEntries + ", length=" + raw.length() + ")";
+    }
+}
@@ -0,0 +1,79 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+/**
+ * Hardware description of a character LCD connected via I2C.
+ */
+public class LcdDisplayConfiguration extends DeviceConfiguration {
+    static final FirmwareFormatScanner.DeviceFormat<LcdDisplayConfiguration> FIRMWARE_FORMAT = new FirmwareFormatScanner.DeviceFormat<>(
+        3, false,
+        (p, n, name) -> new LcdDisplayConfiguration(requireUint8(p[0]), requireUint8(p[1]), requireUint8(p[2]), name)
+    );
+
+    private final int i2cAddress;
+    private final int columns;
+    private final int lines;
+
+    private LcdDisplayConfiguration(int i2cAddress, int columns, int lines, String name) {
+        super(DeviceType.LCD_DISPLAY_I2C, name);
+
+        this.i2cAddress = i2cAddress;
+        this.columns = columns;
+        this.lines = lines;
+    }
+
+    /**
+     * Returns the I2C bus address of the display.
+     *
+     * @return I2C address
+     */
+    public int getI2CAddress() {
+        return i2cAddress;
+    }
+
+    /**
+     * Returns the number of characters per line.
+     *
+     * @return number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return number of lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Parses an {@link LcdDisplayConfiguration} from the given protocol encoding used by MobiFlight firmware.
+     *
+     * @param s protocol encoding used by MobiFlight firmware
+     * @return decoded hardware description
+     */
+    public static LcdDisplayConfiguration parseFirmwareFormat(String s) {
+        return FIRMWARE_FORMAT.parse(s);
+    }
+
+    @Override
+    protected void encodeParametersTo(StringBuilder sb) {
+        encodeParameters(sb, i2cAddress, columns, lines);
+    }
+
+    @Override
+    protected void describeTo(StringBuilder sb) {
+        sb.append(", i2cAddress=");
+        sb.append(i2cAddress);
+
+        sb.append(", columns=");
+        sb.append(columns);
+
+        sb.append(", lines=");
+        sb.append(lines);
+    }
+}
@@ -0,0 +1,142 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+/**
+ * Hardware description of a (chain of) LED 7-segment display modules. Each sub-module of a chain (e.g. a single
+ * MAX7219-driven module) provides up to {@value #MAX_DIGITS_PER_SUB_MODULE} digits.
+ */
+public class LedSegmentConfiguration extends DeviceConfiguration {
+    static final FirmwareFormatScanner.DeviceFormat<LedSegmentConfiguration> FIRMWARE_FORMAT = new FirmwareFormatScanner.DeviceFormat<>(
+        6, false,
+        (p, n, name) -> new LedSegmentConfiguration(
+            requireUint8(p[0]),
+            requireUint8(p[1]),
+            requireUint8(p[2]),
+            requireUint8(p[3]),
+            requireUint8(p[4]),
+            requireUint8(p[5]),
+            name
+        )
+    );
+
+    /**
+     * Maximum number of digits addressable on each sub-module.
+     */
+    public static final int MAX_DIGITS_PER_SUB_MODULE = 8;
+
+    private final int controllerType;
+    private final int pinData;
+    private final int pinCs;
+    private final int pinClk;
+    private final int brightness;
+    private final int numSubModules;
+
+    private LedSegmentConfiguration(int controllerType, int pinData, int pinCs, int pinClk, int brightness, int numSubModules, String name) {
+        super(DeviceType.LED_SEGMENT_MULTI, name);
+
+        this.controllerType = controllerType;
+        this.pinData = pinData;
+        this.pinCs = pinCs;
+        this.pinClk = pinClk;
+        this.brightness = brightness;
+        this.numSubModules = numSubModules;
+    }
+
+    /**
+     * Returns the raw ID of the display controller type as used by MobiFlight firmware (e.g. MAX7219 or TM1637
+     * variants).
+     *
+     * @return raw controller type ID
+     */
+    public int getControllerType() {
+        return controllerType;
+    }
+
+    /**
+     * Returns the ID of the pin used for serial data.
+     *
+     * @return data pin ID
+     */
+    public int getPinData() {
+        return pinData;
+    }
+
+    /**
+     * Returns the ID of the pin used for chip select (not used by all controller types).
+     *
+     * @return chip select pin ID
+     */
+    public int getPinCs() {
+        return pinCs;
+    }
+
+    /**
+     * Returns the ID of the pin used as clock signal.
+     *
+     * @return clock pin ID
+     */
+    public int getPinClk() {
+        return pinClk;
+    }
+
+    /**
+     * Returns the initial brightness configured on the module.
+     *
+     * @return initial brightness
+     */
+    public int getBrightness() {
+        return brightness;
+    }
+
+    /**
+     * Returns the number of chained sub-modules.
+     *
+     * @return number of sub-modules
+     */
+    public int getNumSubModules() {
+        return numSubModules;
+    }
+
+    /**
+     * Parses a {@link LedSegmentConfiguration} from the given protocol encoding used by MobiFlight firmware for
+     * {@link DeviceType#LED_SEGMENT_MULTI}.
+     *
+     * @param s protocol encoding used by MobiFlight firmware
+     * @return decoded hardware description
+     */
+    public static LedSegmentConfiguration parseFirmwareFormat(String s) {
+        return FIRMWARE_FORMAT.parse(s);
+    }
+
+    @Override
+    public int[] getOccupiedPins() {
+        return new int[]{pinData, pinCs, pinClk};
+    }
+
+    @Override
+    protected void encodeParametersTo(StringBuilder sb) {
+        encodeParameters(sb, controllerType, pinData, pinCs, pinClk, brightness, numSubModules);
+    }
+
+    @Override
+    protected void describeTo(StringBuilder sb) {
+        sb.append(", controllerType=");
+        sb.append(controllerType);
+
+        sb.append(", pinData=");
+        sb.append(pinData);
+
+        sb.append(", pinCs=");
+        sb.append(pinCs);
+
+        sb.append(", pinClk=");
+        sb.append(pinClk);
+
+        sb.append(", brightness=");
+        sb.append(brightness);
+
+        sb.append(", numSubModules=");
+        sb.append(numSubModules);
+    }
+}
@@ -2,14 +2,14 @@ package de.energiequant.limamf.compat.config.devices;
 
 import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Hardware description of a generic output channel.
  */
 public class OutputConfiguration extends DeviceConfiguration {
-    private static final Pattern FIRMWARE_PATTERN = Pattern.compile("^(\\d+)\\.(.*)$");
+    static final FirmwareFormatScanner.DeviceFormat<OutputConfiguration> FIRMWARE_FORMAT = new FirmwareFormatScanner.DeviceFormat<>(
+        1, false,
+        (p, n, name) -> new OutputConfiguration(requireUint8(p[0]), name)
+    );
 
     private final int pin;
 
@@ -36,15 +36,17 @@ public class OutputConfiguration extends DeviceConfiguration {
      * @return decoded hardware description
      */
     public static OutputConfiguration parseFirmwareFormat(String s) {
-        Matcher matcher = FIRMWARE_PATTERN.matcher(s);
-        if (!matcher.matches()) {
-            throw new IllegalArgumentException("Invalid syntax: \"" + s + "\"");
-        }
-
-        return new OutputConfiguration(
-            requireUint8(matcher.group(1)),
-            matcher.group(2)
-        );
+        return FIRMWARE_FORMAT.parse(s);
+    }
+
+    @Override
+    public int[] getOccupiedPins() {
+        return new int[]{pin};
+    }
+
+    @Override
+    protected void encodeParametersTo(StringBuilder sb) {
+        encodeParameters(sb, pin);
     }
 
     @Override
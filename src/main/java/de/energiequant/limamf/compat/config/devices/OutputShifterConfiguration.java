@@ -0,0 +1,119 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+/**
+ * Hardware description of an output shift register chain (e.g. daisy-chained 74HC595). Each register provides
+ * {@value #PINS_PER_REGISTER} output pins; pins are numbered consecutively across the whole chain, starting at 0.
+ */
+public class OutputShifterConfiguration extends DeviceConfiguration {
+    static final FirmwareFormatScanner.DeviceFormat<OutputShifterConfiguration> FIRMWARE_FORMAT = new FirmwareFormatScanner.DeviceFormat<>(
+        4, false,
+        (p, n, name) -> new OutputShifterConfiguration(
+            requireUint8(p[0]),
+            requireUint8(p[1]),
+            requireUint8(p[2]),
+            requireUint8(p[3]),
+            name
+        )
+    );
+
+    /**
+     * Number of output pins provided by each register.
+     */
+    public static final int PINS_PER_REGISTER = 8;
+
+    private final int pinLatch;
+    private final int pinClock;
+    private final int pinData;
+    private final int numRegisters;
+
+    private OutputShifterConfiguration(int pinLatch, int pinClock, int pinData, int numRegisters, String name) {
+        super(DeviceType.OUTPUT_SHIFTER, name);
+
+        this.pinLatch = pinLatch;
+        this.pinClock = pinClock;
+        this.pinData = pinData;
+        this.numRegisters = numRegisters;
+    }
+
+    /**
+     * Returns the ID of the pin used to latch register contents to outputs.
+     *
+     * @return latch pin ID
+     */
+    public int getPinLatch() {
+        return pinLatch;
+    }
+
+    /**
+     * Returns the ID of the pin used as clock signal.
+     *
+     * @return clock pin ID
+     */
+    public int getPinClock() {
+        return pinClock;
+    }
+
+    /**
+     * Returns the ID of the pin used for serial data.
+     *
+     * @return data pin ID
+     */
+    public int getPinData() {
+        return pinData;
+    }
+
+    /**
+     * Returns the number of daisy-chained registers.
+     *
+     * @return number of registers
+     */
+    public int getNumRegisters() {
+        return numRegisters;
+    }
+
+    /**
+     * Returns the total number of output pins provided by all registers.
+     *
+     * @return number of output pins
+     */
+    public int getNumOutputPins() {
+        return numRegisters * PINS_PER_REGISTER;
+    }
+
+    /**
+     * Parses an {@link OutputShifterConfiguration} from the given protocol encoding used by MobiFlight firmware.
+     *
+     * @param s protocol encoding used by MobiFlight firmware
+     * @return decoded hardware description
+     */
+    public static OutputShifterConfiguration parseFirmwareFormat(String s) {
+        return FIRMWARE_FORMAT.parse(s);
+    }
+
+    @Override
+    public int[] getOccupiedPins() {
+        return new int[]{pinLatch, pinClock, pinData};
+    }
+
+    @Override
+    protected void encodeParametersTo(StringBuilder sb) {
+        encodeParameters(sb, pinLatch, pinClock, pinData, numRegisters);
+    }
+
+    @Override
+    protected void describeTo(StringBuilder sb) {
+        sb.append(", pinLatch=");
+        sb.append(pinLatch);
+
+        sb.append(", pinClock=");
+        sb.append(pinClock);
+
+        sb.append(", pinData=");
+        sb.append(pinData);
+
+        sb.append(", numRegisters=");
+        sb.append(numRegisters);
+    }
+}
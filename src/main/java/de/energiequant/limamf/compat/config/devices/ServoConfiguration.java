@@ -0,0 +1,56 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+/**
+ * Hardware description of a servo motor.
+ */
+public class ServoConfiguration extends DeviceConfiguration {
+    static final FirmwareFormatScanner.DeviceFormat<ServoConfiguration> FIRMWARE_FORMAT = new FirmwareFormatScanner.DeviceFormat<>(
+        1, false,
+        (p, n, name) -> new ServoConfiguration(requireUint8(p[0]), name)
+    );
+
+    private final int pin;
+
+    private ServoConfiguration(int pin, String name) {
+        super(DeviceType.SERVO, name);
+
+        this.pin = pin;
+    }
+
+    /**
+     * Returns the ID of the pin the servo is controlled by.
+     *
+     * @return servo pin ID
+     */
+    public int getPin() {
+        return pin;
+    }
+
+    /**
+     * Parses a {@link ServoConfiguration} from the given protocol encoding used by MobiFlight firmware.
+     *
+     * @param s protocol encoding used by MobiFlight firmware
+     * @return decoded hardware description
+     */
+    public static ServoConfiguration parseFirmwareFormat(String s) {
+        return FIRMWARE_FORMAT.parse(s);
+    }
+
+    @Override
+    public int[] getOccupiedPins() {
+        return new int[]{pin};
+    }
+
+    @Override
+    protected void encodeParametersTo(StringBuilder sb) {
+        encodeParameters(sb, pin);
+    }
+
+    @Override
+    protected void describeTo(StringBuilder sb) {
+        sb.append(", pin=");
+        sb.append(pin);
+    }
+}
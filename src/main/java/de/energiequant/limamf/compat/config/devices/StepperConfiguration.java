@@ -0,0 +1,100 @@
+package de.energiequant.limamf.compat.config.devices;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.Arrays;
+
+/**
+ * Hardware description of a stepper motor.
+ */
+public class StepperConfiguration extends DeviceConfiguration {
+    // number of trailing parameters depends on firmware version
+    static final FirmwareFormatScanner.DeviceFormat<StepperConfiguration> FIRMWARE_FORMAT = new FirmwareFormatScanner.DeviceFormat<>(
+        5, true,
+        (p, n, name) -> new StepperConfiguration(
+            new int[]{
+                requireUint8(p[0]),
+                requireUint8(p[1]),
+                requireUint8(p[2]),
+                requireUint8(p[3]),
+            },
+            requireUint8(p[4]),
+            Arrays.copyOfRange(p, 5, n),
+            name
+        )
+    );
+
+    private final int[] pins;
+    private final int pinButton;
+    private final int[] additionalParameters;
+
+    private StepperConfiguration(int[] pins, int pinButton, int[] additionalParameters, String name) {
+        super(DeviceType.STEPPER, name);
+
+        this.pins = pins;
+        this.pinButton = pinButton;
+        this.additionalParameters = additionalParameters;
+    }
+
+    /**
+     * Returns the IDs of the 4 pins used to drive the stepper. Depending on driver mode, not all pins may be used.
+     *
+     * @return stepper pin IDs
+     */
+    public int[] getPins() {
+        return Arrays.copyOf(pins, pins.length);
+    }
+
+    /**
+     * Returns the ID of the pin used by the zero position (homing) button.
+     *
+     * @return homing button pin ID
+     */
+    public int getPinButton() {
+        return pinButton;
+    }
+
+    /**
+     * Returns all further numeric parameters, such as driver mode, backlash and output deactivation. The number and
+     * meaning of parameters depends on the firmware version.
+     *
+     * @return further parameters in order of encoding
+     */
+    public int[] getAdditionalParameters() {
+        return Arrays.copyOf(additionalParameters, additionalParameters.length);
+    }
+
+    /**
+     * Parses a {@link StepperConfiguration} from the given protocol encoding used by MobiFlight firmware.
+     *
+     * @param s protocol encoding used by MobiFlight firmware
+     * @return decoded hardware description
+     */
+    public static StepperConfiguration parseFirmwareFormat(String s) {
+        return FIRMWARE_FORMAT.parse(s);
+    }
+
+    @Override
+    public int[] getOccupiedPins() {
+        return new int[]{pins[0], pins[1], pins[2], pins[3], pinButton};
+    }
+
+    @Override
+    protected void encodeParametersTo(StringBuilder sb) {
+        encodeParameters(sb, pins);
+        encodeParameters(sb, pinButton);
+        encodeParameters(sb, additionalParameters);
+    }
+
+    @Override
+    protected void describeTo(StringBuilder sb) {
+        sb.append(", pins=");
+        sb.append(Arrays.toString(pins));
+
+        sb.append(", pinButton=");
+        sb.append(pinButton);
+
+        sb.append(", additionalParameters=");
+        sb.append(Arrays.toString(additionalParameters));
+    }
+}
@@ -0,0 +1,176 @@
+package de.energiequant.limamf.compat.output;
+
+import java.time.Duration;
+
+/**
+ * Limits outbound traffic to what a serial link can actually transmit, modelled as a token bucket of wire time.
+ * <p>
+ * Each byte is assumed to occupy {@value #BITS_PER_BYTE} bits on the wire (8N1 framing: start bit, 8 data bits, stop
+ * bit), so a link running at 115200 baud transmits 11520 bytes per second. Unused wire time accumulates up to the
+ * configured burst duration, allowing short bursts while keeping the long-term rate at the link's capacity.
+ * </p>
+ * <p>
+ * All methods are thread-safe. Methods taking the current time expect values of {@link System#nanoTime()}.
+ * </p>
+ */
+public class BandwidthBudget {
+    /**
+     * Number of bits each byte occupies on the wire.
+     */
+    public static final int BITS_PER_BYTE = 10;
+
+    /**
+     * Default duration of wire time which can accumulate for bursts, see {@link #BandwidthBudget(int)}.
+     */
+    public static final Duration DEFAULT_BURST = Duration.ofMillis(20);
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final int baudRate;
+    private final long nanosPerByte;
+    private final long burstNanos;
+
+    private long creditNanos;
+    private long lastRefillNanos;
+
+    /**
+     * Creates a new budget for the given baud rate, allowing bursts of {@link #DEFAULT_BURST}.
+     *
+     * @param baudRate baud rate of the serial link
+     */
+    public BandwidthBudget(int baudRate) {
+        this(baudRate, DEFAULT_BURST);
+    }
+
+    /**
+     * Creates a new budget for the given baud rate.
+     *
+     * @param baudRate baud rate of the serial link; must be positive
+     * @param burst    maximum wire time to accumulate while idle; must be positive
+     */
+    public BandwidthBudget(int baudRate, Duration burst) {
+        if (baudRate < 1) {
+            throw new IllegalArgumentException("baud rate must be positive, got " + baudRate);
+        }
+        if (burst.isNegative() || burst.isZero()) {
+            throw new IllegalArgumentException("burst must be positive, got " + burst);
+        }
+
+        this.baudRate = baudRate;
+        this.nanosPerByte = ceilDiv(BITS_PER_BYTE * NANOS_PER_SECOND, baudRate);
+        this.burstNanos = burst.toNanos();
+
+        this.creditNanos = burstNanos;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates a new budget limiting traffic to the given number of bytes per second, allowing bursts of
+     * {@link #DEFAULT_BURST}.
+     *
+     * @param bytesPerSecond maximum long-term number of bytes per second; must be positive
+     * @return budget for the given byte rate
+     */
+    public static BandwidthBudget forByteRate(int bytesPerSecond) {
+        if (bytesPerSecond < 1 || bytesPerSecond > Integer.MAX_VALUE / BITS_PER_BYTE) {
+            throw new IllegalArgumentException("byte rate out of range: " + bytesPerSecond);
+        }
+
+        return new BandwidthBudget(bytesPerSecond * BITS_PER_BYTE);
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * Returns the baud rate this budget has been configured for.
+     *
+     * @return baud rate
+     */
+    public int getBaudRate() {
+        return baudRate;
+    }
+
+    /**
+     * Returns the number of bytes which can be transmitted per second in the long term.
+     *
+     * @return bytes per second
+     */
+    public int getBytesPerSecond() {
+        return baudRate / BITS_PER_BYTE;
+    }
+
+    /**
+     * Estimates the time required to transmit the given number of bytes.
+     *
+     * @param numBytes number of bytes
+     * @return estimated wire time
+     */
+    public Duration getWireTime(int numBytes) {
+        return Duration.ofNanos(numBytes * nanosPerByte);
+    }
+
+    /**
+     * Returns the number of bytes which could be transmitted right now without exceeding the budget.
+     *
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     * @return number of bytes available
+     */
+    public synchronized int getAvailableBytes(long nowNanos) {
+        refill(nowNanos);
+
+        if (creditNanos <= 0) {
+            return 0;
+        }
+
+        return (int) (creditNanos / nanosPerByte);
+    }
+
+    /**
+     * Consumes the wire time for the given number of bytes if available.
+     * <p>
+     * Transmissions larger than the burst size are granted once the full burst has accumulated, and put the budget
+     * into debt accordingly, so they cannot get stuck.
+     * </p>
+     *
+     * @param numBytes number of bytes to be transmitted
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     * @return {@code true} if consumed and the bytes may be transmitted, {@code false} if the budget is exhausted
+     */
+    public synchronized boolean tryConsume(int numBytes, long nowNanos) {
+        refill(nowNanos);
+
+        long required = numBytes * nanosPerByte;
+        if (creditNanos < Math.min(required, burstNanos)) {
+            return false;
+        }
+
+        creditNanos -= required;
+
+        return true;
+    }
+
+    /**
+     * Resets the budget to a full burst, for example after a link has been re-established.
+     */
+    public synchronized void reset() {
+        creditNanos = burstNanos;
+        lastRefillNanos = System.nanoTime();
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed <= 0) {
+            return;
+        }
+
+        lastRefillNanos = nowNanos;
+        creditNanos = Math.min(burstNanos, creditNanos + elapsed);
+    }
+
+    @Override
+    public String toString() {
+        return "BandwidthBudget(baudRate=" + baudRate + ", burst=" + Duration.ofNanos(burstNanos) + ")";
+    }
+}
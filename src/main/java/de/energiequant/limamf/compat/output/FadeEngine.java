@@ -0,0 +1,427 @@
+package de.energiequant.limamf.compat.output;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.compat.config.connector.OutputDisplay;
+import de.energiequant.limamf.compat.config.devices.OutputConfiguration;
+import de.energiequant.limamf.compat.protocol.SetPinMessage;
+import de.energiequant.limamf.compat.utils.Numbers;
+
+/**
+ * Runs linear brightness transitions ("fades") of output pins on many modules from a single scheduler thread.
+ * <p>
+ * On every tick, each fading pin computes its current value; a {@link SetPinMessage} is only emitted if the value
+ * differs from what has last been emitted for the pin. The number of bytes emitted per module is limited by a
+ * {@link BandwidthBudget}. When more pins want to be updated than the budget permits, pins deviating most from their
+ * last emitted value are served first. Step resolution thus degrades gracefully as more fades run simultaneously,
+ * while the byte rate is never exceeded and every fade still ends on its exact final value.
+ * </p>
+ * <p>
+ * Usually, the budget {@link #setBandwidthBudget(Object, BandwidthBudget) configured} for a module is the one shared
+ * with the {@link OutboundQueue} or {@link OutputScheduler} actually transmitting to that module. Such a budget is only
+ * queried for its remaining allowance but never consumed by the engine, so bytes are only accounted for once, upon
+ * transmission. Fades thus only use what is left over by all other traffic to the module. Without a configured
+ * budget, each module is limited to {@link #DEFAULT_BYTES_PER_SECOND} by a budget private to the engine.
+ * </p>
+ * <p>
+ * Fades started from an {@link OutputDisplay} permitted to {@link OutputDisplay#usePWM() use PWM} respect its
+ * {@link OutputDisplay#getPinBrightness() brightness} as ceiling. Outputs not permitted to use PWM are neither ramped
+ * nor dimmed; they are switched to the digital on/off state once the fade completes, regardless of the configured
+ * brightness.
+ * </p>
+ * <p>
+ * Emitted messages are usually passed on to an {@link OutputScheduler} or {@link OutboundQueue}, which may further
+ * combine them with other updates of the same pin. All methods are thread-safe.
+ * </p>
+ *
+ * @param <K> type of module keys
+ */
+public class FadeEngine<K> implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FadeEngine.class);
+
+    /**
+     * Default interval between two steps, see {@link #FadeEngine(BiConsumer)}.
+     */
+    public static final Duration DEFAULT_TICK = Duration.ofMillis(20);
+
+    /**
+     * Default byte rate permitted per module if no {@link BandwidthBudget} has been configured: 10% of a link running at
+     * 115200 baud.
+     */
+    public static final int DEFAULT_BYTES_PER_SECOND = 1152;
+
+    private static final int NUM_PINS = 256;
+    private static final int MAX_VALUE = 255;
+    private static final int UNKNOWN = -1;
+
+    private final BiConsumer<? super K, ? super SetPinMessage> sink;
+    private final long tickNanos;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final Map<K, ModuleFades> modules = new HashMap<>();
+
+    private ScheduledFuture<?> scheduledStep;
+
+    /**
+     * Creates a new fade engine stepping every {@link #DEFAULT_TICK} on its own thread.
+     *
+     * @param sink receives all messages to be sent, together with the key of the module they are meant for
+     */
+    public FadeEngine(BiConsumer<? super K, ? super SetPinMessage> sink) {
+        this(sink, DEFAULT_TICK);
+    }
+
+    /**
+     * Creates a new fade engine stepping at the given interval on its own thread.
+     *
+     * @param sink receives all messages to be sent, together with the key of the module they are meant for
+     * @param tick interval between two steps; must be positive
+     */
+    public FadeEngine(BiConsumer<? super K, ? super SetPinMessage> sink, Duration tick) {
+        this(sink, tick, createExecutor(), true);
+    }
+
+    /**
+     * Creates a new fade engine stepping at the given interval on a shared executor. The executor is not shut down
+     * when the engine gets closed.
+     *
+     * @param sink     receives all messages to be sent, together with the key of the module they are meant for
+     * @param tick     interval between two steps; must be positive
+     * @param executor executor to schedule steps on
+     */
+    public FadeEngine(BiConsumer<? super K, ? super SetPinMessage> sink, Duration tick, ScheduledExecutorService executor) {
+        this(sink, tick, executor, false);
+    }
+
+    private FadeEngine(BiConsumer<? super K, ? super SetPinMessage> sink, Duration tick, ScheduledExecutorService executor, boolean ownsExecutor) {
+        if (tick.isNegative() || tick.isZero()) {
+            throw new IllegalArgumentException("tick must be positive, got " + tick);
+        }
+
+        this.sink = sink;
+        this.tickNanos = tick.toNanos();
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, FadeEngine.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts stepping at the configured fixed rate.
+     *
+     * @return same instance for method-chaining
+     */
+    public synchronized FadeEngine<K> start() {
+        if (scheduledStep == null) {
+            scheduledStep = executor.scheduleAtFixedRate(this::stepSafely, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        }
+
+        return this;
+    }
+
+    /**
+     * Stops stepping. Running fades are paused in terms of output but continue in time, so they jump to their current
+     * value once started again.
+     */
+    public synchronized void stop() {
+        if (scheduledStep != null) {
+            scheduledStep.cancel(false);
+            scheduledStep = null;
+        }
+    }
+
+    /**
+     * Sets the {@link BandwidthBudget} limiting how many bytes may be emitted for the given module. The budget is
+     * expected to be consumed upon transmission, e.g. by being shared with the {@link OutboundQueue} sending to the
+     * module; the engine only queries its remaining allowance.
+     *
+     * @param module key of module to configure
+     * @param budget budget to respect; null to revert to a private budget of {@link #DEFAULT_BYTES_PER_SECOND}
+     * @return same instance for method-chaining
+     */
+    public synchronized FadeEngine<K> setBandwidthBudget(K module, BandwidthBudget budget) {
+        getModuleFades(module).budget = budget;
+        return this;
+    }
+
+    /**
+     * Fades the given output to the specified fraction of the brightness configured on host-side.
+     *
+     * @param module   key of module holding the output
+     * @param output   output to fade
+     * @param display  host-side output configuration, limiting brightness and use of PWM
+     * @param fraction target fraction of configured brightness (0.0 to 1.0); rounded to digital on/off without PWM
+     * @param duration duration of fade
+     */
+    public void fade(K module, OutputConfiguration output, OutputDisplay display, double fraction, Duration duration) {
+        int target;
+        if (display.usePWM()) {
+            int ceiling = display.getPinBrightness();
+            target = Numbers.limit(Math.round(fraction * ceiling), 0, ceiling);
+        } else {
+            // only digital on/off is permitted; any other value would result in a PWM signal
+            target = (fraction >= 0.5) ? MAX_VALUE : 0;
+        }
+
+        startFade(module, output.getPin(), UNKNOWN, target, display.usePWM(), duration, System.nanoTime());
+    }
+
+    /**
+     * Fades the given pin from the value last emitted (or 0 if unknown) to the specified value using PWM.
+     *
+     * @param module   key of module holding the pin
+     * @param pin      pin ID
+     * @param value    target value (0..255)
+     * @param duration duration of fade
+     */
+    public void fade(K module, int pin, int value, Duration duration) {
+        startFade(module, pin, UNKNOWN, value, true, duration, System.nanoTime());
+    }
+
+    /**
+     * Fades the given pin between the specified values using PWM.
+     *
+     * @param module    key of module holding the pin
+     * @param pin       pin ID
+     * @param fromValue start value (0..255)
+     * @param toValue   target value (0..255)
+     * @param duration  duration of fade
+     */
+    public void fade(K module, int pin, int fromValue, int toValue, Duration duration) {
+        startFade(module, pin, Numbers.requireUint8(fromValue), toValue, true, duration, System.nanoTime());
+    }
+
+    private synchronized void startFade(K module, int pin, int fromValue, int toValue, boolean pwm, Duration duration, long nowNanos) {
+        Numbers.requireUint8(pin);
+        Numbers.requireUint8(toValue);
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("duration must not be negative, got " + duration);
+        }
+
+        ModuleFades moduleFades = getModuleFades(module);
+
+        int startValue = fromValue;
+        if (startValue == UNKNOWN) {
+            Fade previous = moduleFades.fades[pin];
+            startValue = (previous != null) ? previous.getValue(nowNanos) : Math.max(0, moduleFades.lastEmitted[pin]);
+        }
+
+        moduleFades.fades[pin] = new Fade(pin, startValue, toValue, pwm, nowNanos, duration.toNanos());
+    }
+
+    /**
+     * Cancels the fade of the given pin. The pin keeps the value last emitted.
+     *
+     * @param module key of module holding the pin
+     * @param pin    pin ID
+     */
+    public synchronized void cancel(K module, int pin) {
+        ModuleFades moduleFades = modules.get(module);
+        if (moduleFades != null) {
+            moduleFades.fades[Numbers.requireUint8(pin)] = null;
+        }
+    }
+
+    /**
+     * Indicates whether the given pin is currently fading, including fades which have completed in time but whose final
+     * value has not been emitted yet.
+     *
+     * @param module key of module holding the pin
+     * @param pin    pin ID
+     * @return {@code true} if fading, {@code false} if not
+     */
+    public synchronized boolean isFading(K module, int pin) {
+        ModuleFades moduleFades = modules.get(module);
+        return (moduleFades != null) && (moduleFades.fades[Numbers.requireUint8(pin)] != null);
+    }
+
+    /**
+     * Forgets everything about the given module, for example because it has been disconnected. All fades are cancelled
+     * and a configured {@link BandwidthBudget} is dropped.
+     *
+     * @param module key of module to forget
+     */
+    public synchronized void discard(K module) {
+        modules.remove(module);
+    }
+
+    /**
+     * Advances all fades to the current time and emits all updates permitted by the modules' budgets. This is called
+     * automatically at a fixed rate once {@link #start()}ed but may also be called manually.
+     */
+    public void step() {
+        step(System.nanoTime());
+    }
+
+    /**
+     * Advances all fades to the given time and emits all updates permitted by the modules' budgets.
+     *
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     */
+    public synchronized void step(long nowNanos) {
+        for (Map.Entry<K, ModuleFades> entry : modules.entrySet()) {
+            entry.getValue().step(entry.getKey(), nowNanos);
+        }
+    }
+
+    private void stepSafely() {
+        try {
+            step();
+        } catch (Exception ex) {
+            // a failing step must not terminate periodic execution
+            LOGGER.warn("fade step failed", ex);
+        }
+    }
+
+    /**
+     * Stops stepping and shuts down the executor if it was created by this engine. All fades are cancelled.
+     */
+    @Override
+    public synchronized void close() {
+        stop();
+
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+
+        modules.clear();
+    }
+
+    private ModuleFades getModuleFades(K module) {
+        return modules.computeIfAbsent(module, x -> new ModuleFades());
+    }
+
+    private class ModuleFades {
+        private final Fade[] fades = new Fade[NUM_PINS];
+        private final int[] lastEmitted = new int[NUM_PINS];
+        private final List<Fade> candidates = new ArrayList<>();
+        private final BandwidthBudget defaultBudget = BandwidthBudget.forByteRate(DEFAULT_BYTES_PER_SECOND);
+        private BandwidthBudget budget;
+
+        ModuleFades() {
+            Arrays.fill(lastEmitted, UNKNOWN);
+        }
+
+        void step(K module, long nowNanos) {
+            candidates.clear();
+            for (Fade fade : fades) {
+                if (fade == null) {
+                    continue;
+                }
+
+                fade.currentValue = fade.getValue(nowNanos);
+                fade.completed = fade.isCompleted(nowNanos);
+
+                if (fade.currentValue == lastEmitted[fade.pin]) {
+                    if (fade.completed) {
+                        fades[fade.pin] = null;
+                    }
+                    continue;
+                }
+
+                candidates.add(fade);
+            }
+
+            if (candidates.isEmpty()) {
+                return;
+            }
+
+            // largest deviations first; the budget then decides how many pins get updated during this step
+            candidates.sort((a, b) -> Integer.compare(deviation(b), deviation(a)));
+
+            // shared budgets are consumed upon transmission, so only their remaining allowance must not be exceeded
+            int allowance = (budget != null) ? budget.getAvailableBytes(nowNanos) : 0;
+
+            for (Fade fade : candidates) {
+                SetPinMessage msg = SetPinMessage.of(fade.pin, fade.currentValue);
+
+                int length = msg.getEncodedLength();
+                if (budget == null) {
+                    if (!defaultBudget.tryConsume(length, nowNanos)) {
+                        break;
+                    }
+                } else if (length > allowance) {
+                    break;
+                } else {
+                    allowance -= length;
+                }
+
+                lastEmitted[fade.pin] = fade.currentValue;
+                if (fade.completed) {
+                    fades[fade.pin] = null;
+                }
+
+                sink.accept(module, msg);
+            }
+        }
+
+        private int deviation(Fade fade) {
+            int last = lastEmitted[fade.pin];
+            if (last == UNKNOWN) {
+                return MAX_VALUE + 1;
+            }
+
+            return Math.abs(fade.currentValue - last);
+        }
+    }
+
+    private static class Fade {
+        private final int pin;
+        private final int fromValue;
+        private final int toValue;
+        private final boolean pwm;
+        private final long startNanos;
+        private final long durationNanos;
+
+        // updated on each step
+        private int currentValue;
+        private boolean completed;
+
+        Fade(int pin, int fromValue, int toValue, boolean pwm, long startNanos, long durationNanos) {
+            this.pin = pin;
+            this.fromValue = fromValue;
+            this.toValue = toValue;
+            this.pwm = pwm;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        boolean isCompleted(long nowNanos) {
+            return nowNanos - startNanos >= durationNanos;
+        }
+
+        int getValue(long nowNanos) {
+            if (isCompleted(nowNanos)) {
+                return toValue;
+            }
+
+            if (!pwm) {
+                // digital outputs are only switched at the end
+                return fromValue;
+            }
+
+            double progress = (double) (nowNanos - startNanos) / durationNanos;
+            return (int) Math.round(fromValue + (toValue - fromValue) * progress);
+        }
+    }
+}
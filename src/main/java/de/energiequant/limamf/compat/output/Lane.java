@@ -0,0 +1,34 @@
+package de.energiequant.limamf.compat.output;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.GetConfigMessage;
+
+/**
+ * Priority lanes of an {@link OutboundQueue}. Lanes are served in order of declaration, i.e. earlier lanes have higher
+ * priority.
+ */
+public enum Lane {
+    /**
+     * Handshakes, requests and any other messages which do not simply update the state of an output, for example
+     * {@link GetConfigMessage}. Messages are sent in order of submission and never combined.
+     */
+    CONTROL,
+
+    /**
+     * Bulk output updates. Messages of the same type fully
+     * {@link CommandMessage#isSupersedingSameTarget() superseding} each other for the same
+     * {@link CommandMessage#getOutputTargetId() target} collapse to the latest one while waiting to be sent.
+     */
+    OUTPUT;
+
+    /**
+     * Selects the default lane for the given message: {@link CommandMessage#isOutputUpdate() Output updates} are
+     * handled as {@link #OUTPUT}, all other messages as {@link #CONTROL}.
+     *
+     * @param msg message to select lane for
+     * @return default lane for the message
+     */
+    public static Lane of(CommandMessage msg) {
+        return msg.isOutputUpdate() ? OUTPUT : CONTROL;
+    }
+}
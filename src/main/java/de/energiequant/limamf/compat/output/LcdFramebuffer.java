@@ -0,0 +1,260 @@
+package de.energiequant.limamf.compat.output;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.LcdDisplayConfiguration;
+import de.energiequant.limamf.compat.protocol.SetLcdDisplayI2CMessage;
+
+/**
+ * Host-side character framebuffer of a single I2C LCD ({@link LcdDisplayConfiguration}).
+ * <p>
+ * Text can be written to the framebuffer at any rate. Lines are marked dirty only if their content actually changes.
+ * MobiFlight firmware is only able to rewrite the full screen, so a single {@link SetLcdDisplayI2CMessage} holding
+ * the whole screen is emitted on {@link #drainPending(Consumer)} if any line is dirty, but not more often than the
+ * configured {@link #setMinimumUpdateInterval(Duration) minimum update interval}. Changes made in between are combined
+ * into the next update.
+ * </p>
+ * <p>
+ * All methods are thread-safe. Methods taking the current time expect values of {@link System#nanoTime()}.
+ * </p>
+ */
+public class LcdFramebuffer {
+    /**
+     * Default minimum interval between two updates, see {@link #setMinimumUpdateInterval(Duration)}.
+     */
+    public static final Duration DEFAULT_MINIMUM_UPDATE_INTERVAL = Duration.ofMillis(100);
+
+    private static final char BLANK = ' ';
+
+    private final int displayIndex;
+    private final int columns;
+    private final char[][] lines;
+
+    private int dirtyLines;
+    private long minimumUpdateIntervalNanos = DEFAULT_MINIMUM_UPDATE_INTERVAL.toNanos();
+    private long lastUpdateNanos;
+    private boolean updatedBefore = false;
+
+    /**
+     * Creates a new blank framebuffer for the given LCD.
+     *
+     * @param interfaceConfiguration configuration of the module holding the display
+     * @param display                LCD to create the framebuffer for
+     * @throws IllegalArgumentException if the display is not part of the module configuration
+     */
+    public LcdFramebuffer(InterfaceConfiguration interfaceConfiguration, LcdDisplayConfiguration display) {
+        this(interfaceConfiguration.getIndexWithinType(display), display.getColumns(), display.getLines());
+    }
+
+    /**
+     * Creates a new blank framebuffer for an LCD.
+     *
+     * @param displayIndex index of the display among all {@link LcdDisplayConfiguration}s of the module
+     * @param columns      number of characters per line; must be positive
+     * @param lines        number of lines; must be positive and not exceed 32
+     */
+    public LcdFramebuffer(int displayIndex, int columns, int lines) {
+        if (columns < 1) {
+            throw new IllegalArgumentException("at least one column is required, got " + columns);
+        }
+        if (lines < 1 || lines > Integer.SIZE) {
+            throw new IllegalArgumentException("number of lines must be 1.." + Integer.SIZE + ", got " + lines);
+        }
+
+        this.displayIndex = displayIndex;
+        this.columns = columns;
+        this.lines = new char[lines][columns];
+
+        for (char[] line : this.lines) {
+            Arrays.fill(line, BLANK);
+        }
+
+        // content on the display is unknown, so the initial blank screen needs to be sent
+        this.dirtyLines = allLines();
+    }
+
+    /**
+     * Sets the minimum interval between two updates emitted by {@link #drainPending(Consumer)}. Defaults to
+     * {@link #DEFAULT_MINIMUM_UPDATE_INTERVAL}.
+     *
+     * @param minimumUpdateInterval minimum interval between two updates; must not be negative
+     * @return same instance for method-chaining
+     */
+    public synchronized LcdFramebuffer setMinimumUpdateInterval(Duration minimumUpdateInterval) {
+        if (minimumUpdateInterval.isNegative()) {
+            throw new IllegalArgumentException("minimum update interval must not be negative, got " + minimumUpdateInterval);
+        }
+
+        this.minimumUpdateIntervalNanos = minimumUpdateInterval.toNanos();
+        return this;
+    }
+
+    /**
+     * Writes text at the given position. Text exceeding the line is cut off.
+     *
+     * @param line   0-based line to write to
+     * @param column 0-based column to start writing at
+     * @param text   text to write
+     * @return {@code true} if the framebuffer changed, {@code false} if the content was already present
+     */
+    public synchronized boolean write(int line, int column, CharSequence text) {
+        checkLine(line);
+        if (column < 0 || column >= columns) {
+            throw new IllegalArgumentException("column " + column + " out of range, display has " + columns + " columns");
+        }
+
+        char[] chars = lines[line];
+        int end = Math.min(columns, column + text.length());
+
+        boolean changed = false;
+        for (int i = column; i < end; i++) {
+            char ch = text.charAt(i - column);
+            if (chars[i] != ch) {
+                chars[i] = ch;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            dirtyLines |= 1 << line;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Replaces the full line by the given text, padded with blanks. Text exceeding the line is cut off.
+     *
+     * @param line 0-based line to replace
+     * @param text text to show
+     * @return {@code true} if the framebuffer changed, {@code false} if the content was already present
+     */
+    public synchronized boolean setLine(int line, CharSequence text) {
+        checkLine(line);
+
+        char[] chars = lines[line];
+        int length = Math.min(columns, text.length());
+
+        boolean changed = false;
+        for (int i = 0; i < columns; i++) {
+            char ch = (i < length) ? text.charAt(i) : BLANK;
+            if (chars[i] != ch) {
+                chars[i] = ch;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            dirtyLines |= 1 << line;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Blanks all lines.
+     */
+    public synchronized void clear() {
+        for (int line = 0; line < lines.length; line++) {
+            setLine(line, "");
+        }
+    }
+
+    /**
+     * Returns the current content of the given line, regardless of whether it has already been sent.
+     *
+     * @param line 0-based line to return
+     * @return line content, always padded to full width
+     */
+    public synchronized String getLine(int line) {
+        checkLine(line);
+        return new String(lines[line]);
+    }
+
+    /**
+     * Returns the lines which changed since the last update as a bit mask (bit 0 representing line 0).
+     *
+     * @return bit mask of dirty lines
+     */
+    public synchronized int getDirtyLines() {
+        return dirtyLines;
+    }
+
+    /**
+     * Indicates whether any line changed since the last update.
+     *
+     * @return {@code true} if an update is pending, {@code false} if the display is up-to-date
+     */
+    public synchronized boolean hasPendingChanges() {
+        return dirtyLines != 0;
+    }
+
+    /**
+     * Emits a {@link SetLcdDisplayI2CMessage} if any line is dirty and the minimum update interval has passed since the
+     * last update.
+     *
+     * @param sink receives the message, if any
+     * @return {@code true} if a message was emitted, {@code false} if not
+     */
+    public boolean drainPending(Consumer<? super SetLcdDisplayI2CMessage> sink) {
+        return drainPending(sink, System.nanoTime());
+    }
+
+    /**
+     * Emits a {@link SetLcdDisplayI2CMessage} if any line is dirty and the minimum update interval has passed since the
+     * last update.
+     *
+     * @param sink     receives the message, if any
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     * @return {@code true} if a message was emitted, {@code false} if not
+     */
+    public synchronized boolean drainPending(Consumer<? super SetLcdDisplayI2CMessage> sink, long nowNanos) {
+        if (dirtyLines == 0) {
+            return false;
+        }
+
+        if (updatedBefore && (nowNanos - lastUpdateNanos < minimumUpdateIntervalNanos)) {
+            return false;
+        }
+
+        StringBuilder sb = new StringBuilder(columns * lines.length);
+        for (char[] line : lines) {
+            sb.append(line);
+        }
+
+        dirtyLines = 0;
+        lastUpdateNanos = nowNanos;
+        updatedBefore = true;
+
+        sink.accept(
+            SetLcdDisplayI2CMessage.builder()
+                                   .manipulatingDisplay(displayIndex)
+                                   .showing(sb.toString())
+                                   .build()
+        );
+
+        return true;
+    }
+
+    /**
+     * Forgets what has been sent to the display, for example because the connection has been reset. The full screen
+     * will be sent by the next {@link #drainPending(Consumer)}, without waiting for the minimum update interval.
+     */
+    public synchronized void invalidate() {
+        dirtyLines = allLines();
+        updatedBefore = false;
+    }
+
+    private int allLines() {
+        return (int) ((1L << lines.length) - 1);
+    }
+
+    private void checkLine(int line) {
+        if (line < 0 || line >= lines.length) {
+            throw new IllegalArgumentException("line " + line + " out of range, display has " + lines.length + " lines");
+        }
+    }
+}
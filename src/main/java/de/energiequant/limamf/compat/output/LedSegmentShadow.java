@@ -0,0 +1,220 @@
+package de.energiequant.limamf.compat.output;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import de.energiequant.limamf.compat.config.connector.LedModuleDisplay;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.LedSegmentConfiguration;
+import de.energiequant.limamf.compat.protocol.SetModuleMessage;
+
+/**
+ * Remembers the digits and decimal points last rendered on all sub-modules of an LED 7-segment display
+ * ({@link LedSegmentConfiguration}) to only transmit digits which actually changed.
+ * <p>
+ * Values are recorded in the same form as accepted by {@link SetModuleMessage}. When drained, one
+ * {@link SetModuleMessage} is emitted per changed sub-module, selecting only those digits whose character or decimal
+ * point differs from what has last been sent. Displays refreshing constantly thus usually result in updates of just a
+ * digit or two.
+ * </p>
+ * <p>
+ * Emitted messages do not collapse by target; submit them on the {@link Lane#OUTPUT} lane when using an
+ * {@link OutboundQueue} or {@link OutputScheduler} to keep them behind control messages.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class LedSegmentShadow {
+    private static final int NUM_DIGITS = LedSegmentConfiguration.MAX_DIGITS_PER_SUB_MODULE;
+
+    private final int moduleIndex;
+
+    // indexed by sub-module and digit position
+    private final char[][] desiredCharacters;
+    private final char[][] sentCharacters;
+    private final int[] desiredDecimalPoints;
+    private final int[] sentDecimalPoints;
+    private final int[] knownDigits;
+    private final int[] sentDigits;
+
+    /**
+     * Creates a new shadow for the given LED segment display.
+     *
+     * @param interfaceConfiguration configuration of the module holding the display
+     * @param display                LED segment display to track
+     * @throws IllegalArgumentException if the display is not part of the module configuration
+     */
+    public LedSegmentShadow(InterfaceConfiguration interfaceConfiguration, LedSegmentConfiguration display) {
+        this(interfaceConfiguration.getIndexWithinType(display), display.getNumSubModules());
+    }
+
+    /**
+     * Creates a new shadow for an LED segment display.
+     *
+     * @param moduleIndex   index of the display among all {@link LedSegmentConfiguration}s of the module
+     * @param numSubModules number of sub-modules; must be positive
+     */
+    public LedSegmentShadow(int moduleIndex, int numSubModules) {
+        if (numSubModules < 1) {
+            throw new IllegalArgumentException("at least one sub-module is required, got " + numSubModules);
+        }
+
+        this.moduleIndex = moduleIndex;
+
+        this.desiredCharacters = new char[numSubModules][NUM_DIGITS];
+        this.sentCharacters = new char[numSubModules][NUM_DIGITS];
+        this.desiredDecimalPoints = new int[numSubModules];
+        this.sentDecimalPoints = new int[numSubModules];
+        this.knownDigits = new int[numSubModules];
+        this.sentDigits = new int[numSubModules];
+    }
+
+    /**
+     * Records the given value for the selected digits of a sub-module, see {@link SetModuleMessage} for details on the
+     * format. Digits not selected keep their previously recorded state.
+     *
+     * @param subModuleIndex   0-based index of sub-module
+     * @param value            one character per selected digit, ordered from highest to lowest position
+     * @param decimalPointMask bit mask of decimal points to light on selected digits
+     * @param digitMask        bit mask of digits to set
+     * @return {@code true} if the sub-module needs to be updated as a result, {@code false} if redundant
+     */
+    public synchronized boolean set(int subModuleIndex, CharSequence value, int decimalPointMask, int digitMask) {
+        checkSubModuleIndex(subModuleIndex);
+
+        if ((digitMask >> NUM_DIGITS) != 0) {
+            throw new IllegalArgumentException("digit mask exceeds " + NUM_DIGITS + " digits: " + Integer.toBinaryString(digitMask));
+        }
+        if (value.length() != Integer.bitCount(digitMask)) {
+            throw new IllegalArgumentException("value \"" + value + "\" does not match " + Integer.bitCount(digitMask) + " selected digits");
+        }
+
+        char[] characters = desiredCharacters[subModuleIndex];
+        int valueIndex = 0;
+        for (int position = NUM_DIGITS - 1; position >= 0; position--) {
+            if ((digitMask & (1 << position)) != 0) {
+                characters[position] = value.charAt(valueIndex++);
+            }
+        }
+
+        desiredDecimalPoints[subModuleIndex] = (desiredDecimalPoints[subModuleIndex] & ~digitMask) | (decimalPointMask & digitMask);
+        knownDigits[subModuleIndex] |= digitMask;
+
+        return getChangedDigits(subModuleIndex) != 0;
+    }
+
+    /**
+     * Records the value to be shown on the given display, as configured on host-side. The value is aligned to the
+     * right of the digits selected by {@link LedModuleDisplay#getDigitMask()} and padded if configured.
+     *
+     * @param display host-side display configuration
+     * @param value   value to show; excess characters are cut off on the left
+     * @return {@code true} if the sub-module needs to be updated as a result, {@code false} if redundant
+     */
+    public boolean set(LedModuleDisplay display, CharSequence value) {
+        int digitMask = display.getDigitMask();
+        int numDigits = Integer.bitCount(digitMask);
+
+        StringBuilder sb = new StringBuilder(numDigits);
+        char padding = display.isPadded() ? display.getPaddingCharacter() : ' ';
+        for (int i = value.length(); i < numDigits; i++) {
+            sb.append(padding);
+        }
+        sb.append(value, Math.max(0, value.length() - numDigits), value.length());
+
+        return set(display.getSubModuleIndex(), sb, display.getDecimalPointMask(), digitMask);
+    }
+
+    /**
+     * Indicates whether any digit has a state which still needs to be sent.
+     *
+     * @return {@code true} if {@link #drainPending(Consumer)} would emit messages, {@code false} if not
+     */
+    public synchronized boolean hasPendingChanges() {
+        for (int subModuleIndex = 0; subModuleIndex < desiredCharacters.length; subModuleIndex++) {
+            if (getChangedDigits(subModuleIndex) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Emits one {@link SetModuleMessage} per sub-module with pending changes, selecting only the changed digits, and
+     * assumes those states to be active on the module afterwards.
+     *
+     * @param sink receives all messages that need to be sent, ordered by sub-module
+     * @return number of emitted messages
+     */
+    public synchronized int drainPending(Consumer<? super SetModuleMessage> sink) {
+        int numEmitted = 0;
+
+        for (int subModuleIndex = 0; subModuleIndex < desiredCharacters.length; subModuleIndex++) {
+            int changedDigits = getChangedDigits(subModuleIndex);
+            if (changedDigits == 0) {
+                continue;
+            }
+
+            char[] desired = desiredCharacters[subModuleIndex];
+            char[] sent = sentCharacters[subModuleIndex];
+
+            StringBuilder value = new StringBuilder(Integer.bitCount(changedDigits));
+            for (int position = NUM_DIGITS - 1; position >= 0; position--) {
+                if ((changedDigits & (1 << position)) != 0) {
+                    value.append(desired[position]);
+                    sent[position] = desired[position];
+                }
+            }
+
+            sentDecimalPoints[subModuleIndex] = (sentDecimalPoints[subModuleIndex] & ~changedDigits) | (desiredDecimalPoints[subModuleIndex] & changedDigits);
+            sentDigits[subModuleIndex] |= changedDigits;
+
+            sink.accept(
+                SetModuleMessage.builder()
+                                .manipulatingModule(moduleIndex)
+                                .onSubModule(subModuleIndex)
+                                .showing(value.toString(), changedDigits)
+                                .withDecimalPoints(desiredDecimalPoints[subModuleIndex])
+                                .build()
+            );
+            numEmitted++;
+        }
+
+        return numEmitted;
+    }
+
+    /**
+     * Forgets what has been sent to the module, for example because the connection has been reset. All recorded
+     * digits will be sent again by the next {@link #drainPending(Consumer)}.
+     */
+    public synchronized void invalidate() {
+        Arrays.fill(sentDigits, 0);
+    }
+
+    private int getChangedDigits(int subModuleIndex) {
+        int known = knownDigits[subModuleIndex];
+        int sent = sentDigits[subModuleIndex];
+
+        // digits never sent are always changed; decimal points are compared as a whole
+        int changed = known & ~sent;
+        changed |= known & (desiredDecimalPoints[subModuleIndex] ^ sentDecimalPoints[subModuleIndex]);
+
+        char[] desired = desiredCharacters[subModuleIndex];
+        char[] sentChars = sentCharacters[subModuleIndex];
+        for (int position = 0; position < NUM_DIGITS; position++) {
+            if (((known & (1 << position)) != 0) && (desired[position] != sentChars[position])) {
+                changed |= 1 << position;
+            }
+        }
+
+        return changed;
+    }
+
+    private void checkSubModuleIndex(int subModuleIndex) {
+        if (subModuleIndex < 0 || subModuleIndex >= desiredCharacters.length) {
+            throw new IllegalArgumentException("sub-module index " + subModuleIndex + " out of range, display has " + desiredCharacters.length + " sub-modules");
+        }
+    }
+}
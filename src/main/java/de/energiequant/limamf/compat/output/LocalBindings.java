@@ -0,0 +1,398 @@
+package de.energiequant.limamf.compat.output;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import de.energiequant.limamf.compat.config.devices.OutputConfiguration;
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.CommandMessageView;
+import de.energiequant.limamf.compat.protocol.CommandMessageVisitor;
+import de.energiequant.limamf.compat.protocol.DigitalInputMultiplexerChangeMessage;
+import de.energiequant.limamf.compat.protocol.EncoderChangeMessage;
+import de.energiequant.limamf.compat.protocol.FlyweightCommandMessageDecoder;
+import de.energiequant.limamf.compat.protocol.SetPinMessage;
+import de.energiequant.limamf.compat.utils.Numbers;
+
+/**
+ * Executes purely local panel behaviour, such as a switch lighting an annunciator or a button toggling an LED, directly
+ * where input messages of a single module are decoded, without involving the application.
+ * <p>
+ * Bindings map an input event of a {@link DigitalInputMultiplexerChangeMessage} (name, channel, event) or an
+ * {@link EncoderChangeMessage} (name, event) to {@link SetPinMessage}s which are built in advance, so evaluating a
+ * binding only requires a lookup and does not allocate any objects. Used as a {@link CommandMessageVisitor} on a
+ * {@link FlyweightCommandMessageDecoder}, resulting messages are emitted to the configured sink while the input message
+ * is still being decoded. All decoded messages are forwarded to a delegate visitor afterwards, so the application
+ * still observes all inputs.
+ * </p>
+ * <p>
+ * Messages decoded to objects can be evaluated by {@link #apply(CommandMessage)} instead.
+ * </p>
+ * <p>
+ * All methods are thread-safe. The sink is called synchronously from the decoding thread and should thus return
+ * quickly, e.g. by submitting to an {@link OutputScheduler}.
+ * </p>
+ */
+public class LocalBindings implements CommandMessageVisitor {
+    private static final int NUM_PINS = 256;
+    private static final int NUM_CHANNELS = 256;
+
+    private static final int NUM_MULTIPLEXER_EVENTS = DigitalInputMultiplexerChangeMessage.Event.values().length;
+    private static final int NUM_ENCODER_EVENTS = EncoderChangeMessage.Event.values().length;
+
+    private static final Effect[] NO_EFFECTS = new Effect[0];
+
+    private final Input[] inputs;
+    private final Consumer<? super SetPinMessage> sink;
+    private final CommandMessageVisitor delegate;
+
+    // states of pins controlled by toggle bindings, shared by all bindings toggling the same pin
+    private final boolean[] toggledPins = new boolean[NUM_PINS];
+
+    private LocalBindings(Input[] inputs, Consumer<? super SetPinMessage> sink, CommandMessageVisitor delegate) {
+        this.inputs = inputs;
+        this.sink = sink;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onEncoderChange(CharSequence name, EncoderChangeMessage.Event event) {
+        applyEncoder(name, event);
+        delegate.onEncoderChange(name, event);
+    }
+
+    @Override
+    public void onDigitalInputMultiplexerChange(CharSequence name, int channel, DigitalInputMultiplexerChangeMessage.Event event) {
+        applyMultiplexer(name, channel, event);
+        delegate.onDigitalInputMultiplexerChange(name, channel, event);
+    }
+
+    @Override
+    public void onOtherMessage(CommandMessageView message) {
+        delegate.onOtherMessage(message);
+    }
+
+    /**
+     * Evaluates all bindings for the given decoded message. The message is not forwarded to the delegate visitor.
+     *
+     * @param msg decoded message
+     * @return {@code true} if any binding matched, {@code false} if not
+     */
+    public boolean apply(CommandMessage msg) {
+        if (msg instanceof DigitalInputMultiplexerChangeMessage) {
+            DigitalInputMultiplexerChangeMessage change = (DigitalInputMultiplexerChangeMessage) msg;
+            return applyMultiplexer(change.getName(), change.getChannel(), change.getEvent());
+        } else if (msg instanceof EncoderChangeMessage) {
+            EncoderChangeMessage change = (EncoderChangeMessage) msg;
+            return applyEncoder(change.getName(), change.getEvent());
+        }
+
+        return false;
+    }
+
+    private boolean applyMultiplexer(CharSequence name, int channel, DigitalInputMultiplexerChangeMessage.Event event) {
+        Input input = findInput(name);
+        if ((input == null) || (input.multiplexerEffects == null) || (channel < 0) || (channel >= NUM_CHANNELS)) {
+            return false;
+        }
+
+        return applyAll(input.multiplexerEffects[channel * NUM_MULTIPLEXER_EVENTS + event.ordinal()]);
+    }
+
+    private boolean applyEncoder(CharSequence name, EncoderChangeMessage.Event event) {
+        Input input = findInput(name);
+        if ((input == null) || (input.encoderEffects == null)) {
+            return false;
+        }
+
+        return applyAll(input.encoderEffects[event.ordinal()]);
+    }
+
+    private boolean applyAll(Effect[] effects) {
+        if ((effects == null) || (effects.length == 0)) {
+            return false;
+        }
+
+        for (Effect effect : effects) {
+            effect.apply();
+        }
+
+        return true;
+    }
+
+    private Input findInput(CharSequence name) {
+        int hash = hash(name);
+        for (Input input : inputs) {
+            if ((input.hash == hash) && input.name.contentEquals(name)) {
+                return input;
+            }
+        }
+
+        return null;
+    }
+
+    // same as String#hashCode but does not require a String instance
+    private static int hash(CharSequence s) {
+        int hash = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Resets the state of all pins controlled by toggle bindings to off, for example after the module has been reset.
+     * No messages are emitted.
+     */
+    public synchronized void resetToggles() {
+        Arrays.fill(toggledPins, false);
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link LocalBindings}.
+     *
+     * @return {@link Builder} for {@link LocalBindings}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private interface Effect {
+        void apply();
+    }
+
+    private class SetEffect implements Effect {
+        private final SetPinMessage message;
+
+        SetEffect(SetPinMessage message) {
+            this.message = message;
+        }
+
+        @Override
+        public void apply() {
+            sink.accept(message);
+        }
+    }
+
+    private class ToggleEffect implements Effect {
+        private final int pin;
+        private final SetPinMessage enable;
+        private final SetPinMessage disable;
+
+        ToggleEffect(int pin) {
+            this.pin = pin;
+            this.enable = SetPinMessage.of(pin, SetPinMessage.STATE_DIGITAL_ON);
+            this.disable = SetPinMessage.of(pin, SetPinMessage.STATE_DIGITAL_OFF);
+        }
+
+        @Override
+        public void apply() {
+            boolean state;
+            synchronized (LocalBindings.this) {
+                state = !toggledPins[pin];
+                toggledPins[pin] = state;
+            }
+
+            sink.accept(state ? enable : disable);
+        }
+    }
+
+    private static class Input {
+        private final String name;
+        private final int hash;
+        private Effect[][] multiplexerEffects;
+        private Effect[][] encoderEffects;
+
+        Input(String name) {
+            this.name = name;
+            this.hash = hash(name);
+        }
+    }
+
+    /**
+     * Builder creating {@link LocalBindings}.
+     */
+    public static class Builder {
+        private Consumer<? super SetPinMessage> sink;
+        private CommandMessageVisitor delegate = new CommandMessageVisitor() {
+            // ignore everything
+        };
+
+        private final Map<String, List<BindingDefinition>> definitionsByName = new LinkedHashMap<>();
+
+        /**
+         * Sets the sink receiving all messages emitted by bindings, e.g. submitting to an {@link OutputScheduler}.
+         *
+         * @param sink receives all emitted messages
+         * @return same instance for method-chaining
+         */
+        public Builder sendingTo(Consumer<? super SetPinMessage> sink) {
+            this.sink = sink;
+            return this;
+        }
+
+        /**
+         * Sets the visitor all decoded messages are forwarded to after bindings have been evaluated. Defaults to
+         * ignoring all messages.
+         *
+         * @param delegate visitor to forward all messages to
+         * @return same instance for method-chaining
+         */
+        public Builder forwardingTo(CommandMessageVisitor delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Makes the given output follow a multiplexer channel: pressing enables the output, releasing disables it.
+         *
+         * @param name    name of the multiplexer
+         * @param channel channel of the multiplexer
+         * @param output  output to control
+         * @return same instance for method-chaining
+         */
+        public Builder followMultiplexer(String name, int channel, OutputConfiguration output) {
+            onMultiplexer(name, channel, DigitalInputMultiplexerChangeMessage.Event.PRESS, SetPinMessage.of(output.getPin(), SetPinMessage.STATE_DIGITAL_ON));
+            return onMultiplexer(name, channel, DigitalInputMultiplexerChangeMessage.Event.RELEASE, SetPinMessage.of(output.getPin(), SetPinMessage.STATE_DIGITAL_OFF));
+        }
+
+        /**
+         * Makes the given output toggle each time a multiplexer channel is pressed. Toggled outputs start in off state.
+         *
+         * @param name    name of the multiplexer
+         * @param channel channel of the multiplexer
+         * @param output  output to control
+         * @return same instance for method-chaining
+         */
+        public Builder toggleOnMultiplexer(String name, int channel, OutputConfiguration output) {
+            int pin = output.getPin();
+            return addMultiplexer(name, channel, DigitalInputMultiplexerChangeMessage.Event.PRESS, bindings -> bindings.new ToggleEffect(pin));
+        }
+
+        /**
+         * Sends the given message each time the multiplexer channel reports the given event.
+         *
+         * @param name    name of the multiplexer
+         * @param channel channel of the multiplexer
+         * @param event   event to react on
+         * @param message message to send
+         * @return same instance for method-chaining
+         */
+        public Builder onMultiplexer(String name, int channel, DigitalInputMultiplexerChangeMessage.Event event, SetPinMessage message) {
+            return addMultiplexer(name, channel, event, bindings -> bindings.new SetEffect(message));
+        }
+
+        /**
+         * Sends the given message each time the encoder reports the given event.
+         *
+         * @param name    name of the encoder
+         * @param event   event to react on
+         * @param message message to send
+         * @return same instance for method-chaining
+         */
+        public Builder onEncoder(String name, EncoderChangeMessage.Event event, SetPinMessage message) {
+            definitions(name).add(new BindingDefinition(-1, -1, event.ordinal(), bindings -> bindings.new SetEffect(message)));
+            return this;
+        }
+
+        private Builder addMultiplexer(String name, int channel, DigitalInputMultiplexerChangeMessage.Event event, EffectFactory factory) {
+            Numbers.requireUint8(channel);
+            definitions(name).add(new BindingDefinition(channel, event.ordinal(), -1, factory));
+            return this;
+        }
+
+        private List<BindingDefinition> definitions(String name) {
+            if (name == null) {
+                throw new IllegalArgumentException("name must be defined");
+            }
+
+            return definitionsByName.computeIfAbsent(name, x -> new ArrayList<>());
+        }
+
+        /**
+         * Builds the {@link LocalBindings}.
+         *
+         * @return {@link LocalBindings}
+         */
+        public LocalBindings build() {
+            if (sink == null) {
+                throw new IllegalArgumentException("sink must be defined");
+            }
+
+            if (delegate == null) {
+                throw new IllegalArgumentException("delegate must be defined");
+            }
+
+            Input[] inputs = new Input[definitionsByName.size()];
+            LocalBindings bindings = new LocalBindings(inputs, sink, delegate);
+
+            int i = 0;
+            for (Map.Entry<String, List<BindingDefinition>> entry : definitionsByName.entrySet()) {
+                Input input = new Input(entry.getKey());
+
+                List<List<Effect>> multiplexerEffects = new ArrayList<>();
+                List<List<Effect>> encoderEffects = new ArrayList<>();
+
+                for (BindingDefinition definition : entry.getValue()) {
+                    Effect effect = definition.factory.create(bindings);
+                    if (definition.encoderEvent >= 0) {
+                        slot(encoderEffects, NUM_ENCODER_EVENTS, definition.encoderEvent).add(effect);
+                    } else {
+                        int index = definition.channel * NUM_MULTIPLEXER_EVENTS + definition.multiplexerEvent;
+                        slot(multiplexerEffects, NUM_CHANNELS * NUM_MULTIPLEXER_EVENTS, index).add(effect);
+                    }
+                }
+
+                input.multiplexerEffects = toArrays(multiplexerEffects);
+                input.encoderEffects = toArrays(encoderEffects);
+
+                inputs[i++] = input;
+            }
+
+            return bindings;
+        }
+
+        private static List<Effect> slot(List<List<Effect>> slots, int numSlots, int index) {
+            while (slots.size() < numSlots) {
+                slots.add(new ArrayList<>());
+            }
+            return slots.get(index);
+        }
+
+        private static Effect[][] toArrays(List<List<Effect>> slots) {
+            if (slots.isEmpty()) {
+                return null;
+            }
+
+            Effect[][] out = new Effect[slots.size()][];
+            for (int i = 0; i < out.length; i++) {
+                List<Effect> effects = slots.get(i);
+                out[i] = effects.isEmpty() ? NO_EFFECTS : effects.toArray(new Effect[0]);
+            }
+            return out;
+        }
+    }
+
+    @FunctionalInterface
+    private interface EffectFactory {
+        Effect create(LocalBindings bindings);
+    }
+
+    private static class BindingDefinition {
+        private final int channel;
+        private final int multiplexerEvent;
+        private final int encoderEvent;
+        private final EffectFactory factory;
+
+        BindingDefinition(int channel, int multiplexerEvent, int encoderEvent, EffectFactory factory) {
+            this.channel = channel;
+            this.multiplexerEvent = multiplexerEvent;
+            this.encoderEvent = encoderEvent;
+            this.factory = factory;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package de.energiequant.limamf.compat.output;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.SetServoMessage;
+import de.energiequant.limamf.compat.protocol.SetStepperMessage;
+import de.energiequant.limamf.compat.utils.Numbers;
+
+/**
+ * Throttles target positions of servos and steppers on a single module so that motors are only commanded as often as
+ * they can sensibly follow.
+ * <p>
+ * Positions can be set at any rate; only the latest position of each motor is retained, superseded positions are
+ * dropped before they are ever sent. On {@link #drainPending(Consumer)}, a {@link SetServoMessage} or
+ * {@link SetStepperMessage} is emitted for a motor only if
+ * </p>
+ * <ul>
+ * <li>the {@link #setMinimumInterval(Duration) minimum interval} has passed since the last command to that motor and</li>
+ * <li>the position differs by at least the {@link #setMinimumDelta(int) minimum delta} from what has last been sent,
+ * or a smaller difference has remained stable for the {@link #setSettleTime(Duration) settle time}, so motors still
+ * reach their exact final position.</li>
+ * </ul>
+ * <p>
+ * All methods are thread-safe. Methods taking the current time expect values of {@link System#nanoTime()}.
+ * </p>
+ */
+public class MotionOutputStage {
+    /**
+     * Default minimum difference to last sent position, see {@link #setMinimumDelta(int)}.
+     */
+    public static final int DEFAULT_MINIMUM_DELTA = 1;
+
+    /**
+     * Default minimum interval between two commands to the same motor, see {@link #setMinimumInterval(Duration)}.
+     */
+    public static final Duration DEFAULT_MINIMUM_INTERVAL = Duration.ofMillis(50);
+
+    /**
+     * Default time after which differences below minimum delta are sent anyway, see
+     * {@link #setSettleTime(Duration)}.
+     */
+    public static final Duration DEFAULT_SETTLE_TIME = Duration.ofMillis(250);
+
+    private static final int MAX_MOTORS_PER_KIND = 256;
+
+    private final Motor[] servos = new Motor[MAX_MOTORS_PER_KIND];
+    private final Motor[] steppers = new Motor[MAX_MOTORS_PER_KIND];
+
+    private int minimumDelta = DEFAULT_MINIMUM_DELTA;
+    private long minimumIntervalNanos = DEFAULT_MINIMUM_INTERVAL.toNanos();
+    private long settleTimeNanos = DEFAULT_SETTLE_TIME.toNanos();
+
+    private long numSuperseded = 0;
+
+    /**
+     * Sets the minimum difference between a new position and the position last sent to a motor for the new position to
+     * be sent immediately. Defaults to {@value #DEFAULT_MINIMUM_DELTA}.
+     *
+     * @param minimumDelta minimum position difference; must be positive
+     * @return same instance for method-chaining
+     */
+    public synchronized MotionOutputStage setMinimumDelta(int minimumDelta) {
+        if (minimumDelta < 1) {
+            throw new IllegalArgumentException("minimum delta must be positive, got " + minimumDelta);
+        }
+
+        this.minimumDelta = minimumDelta;
+        return this;
+    }
+
+    /**
+     * Sets the minimum interval between two commands sent to the same motor, limiting the maximum command rate.
+     * Defaults to {@link #DEFAULT_MINIMUM_INTERVAL}.
+     *
+     * @param minimumInterval minimum interval between two commands per motor; must not be negative
+     * @return same instance for method-chaining
+     */
+    public synchronized MotionOutputStage setMinimumInterval(Duration minimumInterval) {
+        if (minimumInterval.isNegative()) {
+            throw new IllegalArgumentException("minimum interval must not be negative, got " + minimumInterval);
+        }
+
+        this.minimumIntervalNanos = minimumInterval.toNanos();
+        return this;
+    }
+
+    /**
+     * Sets the time a position differing by less than the minimum delta needs to remain unchanged before it is sent
+     * anyway. Defaults to {@link #DEFAULT_SETTLE_TIME}.
+     *
+     * @param settleTime time until small differences are sent; must not be negative
+     * @return same instance for method-chaining
+     */
+    public synchronized MotionOutputStage setSettleTime(Duration settleTime) {
+        if (settleTime.isNegative()) {
+            throw new IllegalArgumentException("settle time must not be negative, got " + settleTime);
+        }
+
+        this.settleTimeNanos = settleTime.toNanos();
+        return this;
+    }
+
+    /**
+     * Records the target position of a servo, superseding any position not sent yet.
+     *
+     * @param servoIndex index of the servo among all servos of the module
+     * @param position   target position
+     */
+    public void setServoPosition(int servoIndex, int position) {
+        setPosition(servos, servoIndex, Numbers.requireInt16(position), System.nanoTime());
+    }
+
+    /**
+     * Records the target position of a stepper, superseding any position not sent yet.
+     *
+     * @param stepperIndex index of the stepper among all steppers of the module
+     * @param position     absolute target position in steps
+     */
+    public void setStepperPosition(int stepperIndex, int position) {
+        setPosition(steppers, stepperIndex, position, System.nanoTime());
+    }
+
+    private synchronized void setPosition(Motor[] motors, int index, int position, long nowNanos) {
+        Motor motor = motors[Numbers.requireUint8(index)];
+        if (motor == null) {
+            motor = new Motor();
+            motors[index] = motor;
+        }
+
+        if (motor.hasDesired && (motor.desired == position)) {
+            return;
+        }
+
+        if (motor.isPending()) {
+            numSuperseded++;
+        }
+
+        motor.desired = position;
+        motor.hasDesired = true;
+        motor.desiredSinceNanos = nowNanos;
+    }
+
+    /**
+     * Returns the number of positions which have been dropped so far because they were superseded before being sent.
+     *
+     * @return number of superseded positions
+     */
+    public synchronized long getSupersededCount() {
+        return numSuperseded;
+    }
+
+    /**
+     * Emits commands for all motors whose latest position is due to be sent.
+     *
+     * @param sink receives all messages that need to be sent
+     * @return number of emitted messages
+     */
+    public int drainPending(Consumer<? super CommandMessage> sink) {
+        return drainPending(sink, System.nanoTime());
+    }
+
+    /**
+     * Emits commands for all motors whose latest position is due to be sent.
+     *
+     * @param sink     receives all messages that need to be sent
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     * @return number of emitted messages
+     */
+    public synchronized int drainPending(Consumer<? super CommandMessage> sink, long nowNanos) {
+        int numEmitted = 0;
+
+        for (int index = 0; index < MAX_MOTORS_PER_KIND; index++) {
+            Motor servo = servos[index];
+            if ((servo != null) && servo.isDue(nowNanos)) {
+                sink.accept(
+                    SetServoMessage.builder()
+                                   .manipulatingServo(index)
+                                   .movingTo(servo.markSent(nowNanos))
+                                   .build()
+                );
+                numEmitted++;
+            }
+
+            Motor stepper = steppers[index];
+            if ((stepper != null) && stepper.isDue(nowNanos)) {
+                sink.accept(
+                    SetStepperMessage.builder()
+                                     .manipulatingStepper(index)
+                                     .movingTo(stepper.markSent(nowNanos))
+                                     .build()
+                );
+                numEmitted++;
+            }
+        }
+
+        return numEmitted;
+    }
+
+    /**
+     * Forgets what has been sent to the module, for example because the connection has been reset. The latest known
+     * positions of all motors will be sent by the next {@link #drainPending(Consumer)}.
+     */
+    public synchronized void invalidate() {
+        for (int index = 0; index < MAX_MOTORS_PER_KIND; index++) {
+            if (servos[index] != null) {
+                servos[index].hasSent = false;
+            }
+            if (steppers[index] != null) {
+                steppers[index].hasSent = false;
+            }
+        }
+    }
+
+    private class Motor {
+        private int desired;
+        private boolean hasDesired;
+        private long desiredSinceNanos;
+
+        private int sent;
+        private boolean hasSent;
+        private long lastSentNanos;
+
+        boolean isPending() {
+            return hasDesired && (!hasSent || (desired != sent));
+        }
+
+        boolean isDue(long nowNanos) {
+            if (!isPending()) {
+                return false;
+            }
+
+            if (!hasSent) {
+                return true;
+            }
+
+            if (nowNanos - lastSentNanos < minimumIntervalNanos) {
+                return false;
+            }
+
+            long delta = Math.abs((long) desired - sent);
+            return (delta >= minimumDelta) || (nowNanos - desiredSinceNanos >= settleTimeNanos);
+        }
+
+        int markSent(long nowNanos) {
+            sent = desired;
+            hasSent = true;
+            lastSentNanos = nowNanos;
+
+            return sent;
+        }
+    }
+}
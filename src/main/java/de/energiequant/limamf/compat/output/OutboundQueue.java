@@ -0,0 +1,349 @@
+package de.energiequant.limamf.compat.output;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.CommandMessageBatchWriter;
+import de.energiequant.limamf.compat.protocol.MessageDirection;
+
+/**
+ * Queues outbound {@link CommandMessage}s for a single module in separate priority {@link Lane}s and releases them
+ * only as fast as permitted by an optional {@link BandwidthBudget}.
+ * <p>
+ * Higher priority lanes are always served first. To prevent starvation, a lower priority lane gets to send one message
+ * after a higher priority lane has been served {@link #setMaximumConsecutivePrioritized(int) a number of times} in a
+ * row while the lower lane was waiting. Within each lane, messages are sent in order of submission; messages waiting on
+ * the {@link Lane#OUTPUT} lane which {@link CommandMessage#isSupersedingSameTarget() supersede} each other collapse to
+ * the latest one per {@link CommandMessage#getOutputTargetId() target}, keeping the position of the first one.
+ * </p>
+ * <p>
+ * Messages manipulating the same target (e.g. the same stepper motor) are always sent in order of submission: A
+ * message only collapses with a queued one if no other message for the same target has been queued in between, and a
+ * message submitted while earlier messages for the same target are still waiting on another lane joins that lane
+ * instead of overtaking them.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class OutboundQueue {
+    /**
+     * Default number of consecutive messages sent from higher priority lanes while lower priority lanes are waiting,
+     * see {@link #setMaximumConsecutivePrioritized(int)}.
+     */
+    public static final int DEFAULT_MAXIMUM_CONSECUTIVE_PRIORITIZED = 8;
+
+    private static final Lane[] LANES = Lane.values();
+
+    private final Map<Lane, LaneQueue> lanes = new EnumMap<>(Lane.class);
+
+    // latest queued message per target, to keep messages for the same target in order
+    private final Map<Long, QueuedTarget> queuedTargets = new HashMap<>();
+    private long nextSequence = 0;
+
+    private BandwidthBudget budget;
+    private int maximumConsecutivePrioritized = DEFAULT_MAXIMUM_CONSECUTIVE_PRIORITIZED;
+    private int consecutivePrioritized = 0;
+
+    /**
+     * Creates a new queue without bandwidth limit.
+     */
+    public OutboundQueue() {
+        for (Lane lane : LANES) {
+            lanes.put(lane, new LaneQueue(lane == Lane.OUTPUT));
+        }
+    }
+
+    /**
+     * Sets the {@link BandwidthBudget} limiting how many bytes are released by {@link #drainTo(CommandMessageBatchWriter)}.
+     *
+     * @param budget budget to respect; {@code null} for unlimited
+     * @return same instance for method-chaining
+     */
+    public synchronized OutboundQueue setBandwidthBudget(BandwidthBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * Returns the {@link BandwidthBudget} limiting this queue, if any.
+     *
+     * @return budget; {@code null} if unlimited
+     */
+    public synchronized BandwidthBudget getBandwidthBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets how many messages may be sent in a row from higher priority lanes while a lower priority lane is waiting.
+     * Defaults to {@value #DEFAULT_MAXIMUM_CONSECUTIVE_PRIORITIZED}.
+     *
+     * @param maximumConsecutivePrioritized number of consecutive prioritized messages; must be positive
+     * @return same instance for method-chaining
+     */
+    public synchronized OutboundQueue setMaximumConsecutivePrioritized(int maximumConsecutivePrioritized) {
+        if (maximumConsecutivePrioritized < 1) {
+            throw new IllegalArgumentException("maximum consecutive prioritized messages must be positive, got " + maximumConsecutivePrioritized);
+        }
+
+        this.maximumConsecutivePrioritized = maximumConsecutivePrioritized;
+        return this;
+    }
+
+    /**
+     * Queues the given message on its {@link Lane#of(CommandMessage) default lane}.
+     *
+     * @param msg message to queue
+     * @throws IllegalArgumentException if the message is not supposed to be sent to a module
+     */
+    public void submit(CommandMessage msg) {
+        submit(msg, Lane.of(msg));
+    }
+
+    /**
+     * Queues the given message on the specified lane.
+     *
+     * @param msg  message to queue
+     * @param lane lane to queue the message on
+     * @throws IllegalArgumentException if the message is not supposed to be sent to a module
+     */
+    public synchronized void submit(CommandMessage msg, Lane lane) {
+        if (msg.getMessageDirection() == MessageDirection.RECEIVED_ONLY) {
+            throw new IllegalArgumentException("message is not supposed to be sent to a module: " + msg);
+        }
+
+        LaneQueue queue = lanes.get(lane);
+
+        long targetKey = getTargetKey(msg);
+        QueuedTarget queuedTarget = (targetKey < 0) ? null : queuedTargets.get(targetKey);
+        if (queuedTarget != null) {
+            // must not overtake earlier messages for the same target waiting on another lane
+            queue = queuedTarget.queue;
+
+            if (queue.combineByTarget && queue.replace(queuedTarget.sequence, msg)) {
+                return;
+            }
+        }
+
+        long sequence = nextSequence++;
+        queue.add(sequence, msg);
+
+        if (targetKey >= 0) {
+            if (queuedTarget == null) {
+                queuedTarget = new QueuedTarget();
+                queuedTargets.put(targetKey, queuedTarget);
+            }
+            queuedTarget.queue = queue;
+            queuedTarget.sequence = sequence;
+        }
+    }
+
+    private static long getTargetKey(CommandMessage msg) {
+        int targetId = msg.getOutputTargetId();
+        if (targetId < 0) {
+            return -1;
+        }
+
+        // targets are only unique per device type; messages not indicating any are scoped to their own type ID
+        DeviceType deviceType = msg.getOutputDeviceType();
+        long namespace = (deviceType != null) ? deviceType.ordinal() : (1L << 16) + msg.getTypeId();
+
+        return (namespace << 32) | targetId;
+    }
+
+    /**
+     * Returns the total number of queued messages, after combination.
+     *
+     * @return number of queued messages
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (LaneQueue queue : lanes.values()) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of messages queued on the given lane, after combination.
+     *
+     * @param lane lane to check
+     * @return number of messages queued on the lane
+     */
+    public synchronized int size(Lane lane) {
+        return lanes.get(lane).size();
+    }
+
+    /**
+     * Indicates whether the queue is empty.
+     *
+     * @return {@code true} if no messages are queued, {@code false} if messages are waiting to be sent
+     */
+    public synchronized boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Discards all queued messages.
+     */
+    public synchronized void clear() {
+        for (LaneQueue queue : lanes.values()) {
+            queue.clear();
+        }
+        queuedTargets.clear();
+        consecutivePrioritized = 0;
+    }
+
+    /**
+     * Moves as many messages to the given batch as permitted by the batch's remaining space and the
+     * {@link BandwidthBudget}.
+     *
+     * @param batch batch to add messages to
+     * @return number of messages added to the batch
+     */
+    public int drainTo(CommandMessageBatchWriter batch) {
+        return drainTo(batch, System.nanoTime());
+    }
+
+    /**
+     * Moves as many messages to the given batch as permitted by the batch's remaining space and the
+     * {@link BandwidthBudget}.
+     *
+     * @param batch    batch to add messages to
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     * @return number of messages added to the batch
+     */
+    public synchronized int drainTo(CommandMessageBatchWriter batch, long nowNanos) {
+        int numDrained = 0;
+
+        while (true) {
+            LaneQueue queue = selectLane();
+            if (queue == null) {
+                break;
+            }
+
+            CommandMessage msg = queue.peek();
+            int length = msg.getEncodedLength();
+            if ((length > batch.getRemaining()) && !batch.isEmpty()) {
+                break;
+            }
+            if ((budget != null) && !budget.tryConsume(length, nowNanos)) {
+                break;
+            }
+
+            long sequence = queue.remove();
+            recordSelection(queue);
+
+            long targetKey = getTargetKey(msg);
+            if (targetKey >= 0) {
+                QueuedTarget queuedTarget = queuedTargets.get(targetKey);
+                if ((queuedTarget != null) && (queuedTarget.sequence == sequence)) {
+                    queuedTargets.remove(targetKey);
+                }
+            }
+
+            // throws if the message exceeds even an empty batch; it has been removed so the queue does not get stuck
+            batch.add(msg);
+            numDrained++;
+        }
+
+        return numDrained;
+    }
+
+    private LaneQueue selectLane() {
+        LaneQueue highest = null;
+        for (Lane lane : LANES) {
+            LaneQueue queue = lanes.get(lane);
+            if (queue.size() == 0) {
+                continue;
+            }
+
+            if (highest == null) {
+                highest = queue;
+            } else if (consecutivePrioritized >= maximumConsecutivePrioritized) {
+                // lower lane has been waiting long enough
+                return queue;
+            } else {
+                return highest;
+            }
+        }
+
+        return highest;
+    }
+
+    private void recordSelection(LaneQueue selected) {
+        boolean lowerWaiting = false;
+        boolean passedSelected = false;
+        for (Lane lane : LANES) {
+            LaneQueue queue = lanes.get(lane);
+            if (queue == selected) {
+                passedSelected = true;
+            } else if (passedSelected && (queue.size() > 0)) {
+                lowerWaiting = true;
+                break;
+            }
+        }
+
+        if (lowerWaiting) {
+            consecutivePrioritized++;
+        } else {
+            consecutivePrioritized = 0;
+        }
+    }
+
+    private static class QueuedTarget {
+        private LaneQueue queue;
+        private long sequence;
+    }
+
+    private static class LaneQueue {
+        private final boolean combineByTarget;
+        private final LinkedHashMap<Long, CommandMessage> messages = new LinkedHashMap<>();
+
+        LaneQueue(boolean combineByTarget) {
+            this.combineByTarget = combineByTarget;
+        }
+
+        void add(long sequence, CommandMessage msg) {
+            messages.put(sequence, msg);
+        }
+
+        boolean replace(long sequence, CommandMessage msg) {
+            CommandMessage queued = messages.get(sequence);
+            if ((queued == null)
+                || (queued.getTypeId() != msg.getTypeId())
+                || !queued.isSupersedingSameTarget()
+                || !msg.isSupersedingSameTarget()) {
+                return false;
+            }
+
+            // replacing an existing entry retains its position
+            messages.put(sequence, msg);
+            return true;
+        }
+
+        CommandMessage peek() {
+            return messages.values().iterator().next();
+        }
+
+        long remove() {
+            Iterator<Map.Entry<Long, CommandMessage>> it = messages.entrySet().iterator();
+            long sequence = it.next().getKey();
+            it.remove();
+            return sequence;
+        }
+
+        int size() {
+            return messages.size();
+        }
+
+        void clear() {
+            messages.clear();
+        }
+    }
+}
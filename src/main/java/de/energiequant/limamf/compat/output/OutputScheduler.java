@@ -0,0 +1,290 @@
+package de.energiequant.limamf.compat.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.CommandMessageBatchWriter;
+import de.energiequant.limamf.compat.protocol.SetPinMessage;
+
+/**
+ * Collects outbound {@link CommandMessage}s from any number of threads and writes them to their modules at a fixed
+ * rate.
+ * <p>
+ * All messages submitted for a module within one tick are combined into batches which are handed to the
+ * {@link ModuleWriter}. Usually this results in a single call per module and tick; batches exceeding the batch buffer
+ * ({@value CommandMessageBatchWriter#DEFAULT_CAPACITY} bytes) are split into several consecutive calls, each containing
+ * only complete messages. Messages are queued per module on an {@link OutboundQueue}, so output updates of
+ * the same type fully superseding each other for the same {@link CommandMessage#getOutputTargetId() target} (e.g.
+ * {@link SetPinMessage}s for the same pin) collapse to the latest one, keeping the position of the first one. All other
+ * messages are never combined; messages for the same target are always sent in order of submission.
+ * </p>
+ * <p>
+ * If a {@link #setBandwidthBudget(Object, BandwidthBudget) bandwidth budget} is set for a module, messages exceeding
+ * the budget remain queued for the next tick, with {@link Lane#CONTROL control messages} being prioritized over bulk
+ * output updates.
+ * </p>
+ * <p>
+ * Modules are identified by an arbitrary key which needs to implement {@link Object#equals(Object)} and
+ * {@link Object#hashCode()}. Writes are performed sequentially from a single scheduler thread, so the
+ * {@link ModuleWriter} does not need to be thread-safe.
+ * </p>
+ *
+ * @param <K> type of module keys
+ */
+public class OutputScheduler<K> implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutputScheduler.class);
+
+    /**
+     * Default interval between two flushes, see {@link #OutputScheduler(ModuleWriter)}.
+     */
+    public static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+
+    private final ModuleWriter<K> writer;
+    private final long tickNanos;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final Map<K, ModuleQueue> queues = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Writes batches of encoded messages to modules.
+     *
+     * @param <K> type of module keys
+     */
+    @FunctionalInterface
+    public interface ModuleWriter<K> {
+        /**
+         * Writes the given data to the specified module. All remaining bytes are expected to be consumed.
+         *
+         * @param module key of module to write to
+         * @param data   encoded messages including command separators
+         * @throws IOException if writing fails
+         */
+        void write(K module, ByteBuffer data) throws IOException;
+    }
+
+    /**
+     * Creates a new scheduler flushing every {@link #DEFAULT_TICK} on its own thread.
+     *
+     * @param writer writes batches to modules
+     */
+    public OutputScheduler(ModuleWriter<K> writer) {
+        this(writer, DEFAULT_TICK);
+    }
+
+    /**
+     * Creates a new scheduler flushing at the given interval on its own thread.
+     *
+     * @param writer writes batches to modules
+     * @param tick   interval between two flushes; must be positive
+     */
+    public OutputScheduler(ModuleWriter<K> writer, Duration tick) {
+        this(writer, tick, createExecutor(), true);
+    }
+
+    /**
+     * Creates a new scheduler flushing at the given interval on a shared executor. The executor is not shut down when
+     * the scheduler gets closed.
+     *
+     * @param writer   writes batches to modules
+     * @param tick     interval between two flushes; must be positive
+     * @param executor executor to schedule flushes on
+     */
+    public OutputScheduler(ModuleWriter<K> writer, Duration tick, ScheduledExecutorService executor) {
+        this(writer, tick, executor, false);
+    }
+
+    private OutputScheduler(ModuleWriter<K> writer, Duration tick, ScheduledExecutorService executor, boolean ownsExecutor) {
+        if (tick.isNegative() || tick.isZero()) {
+            throw new IllegalArgumentException("tick must be positive, got " + tick);
+        }
+
+        this.writer = writer;
+        this.tickNanos = tick.toNanos();
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, OutputScheduler.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts flushing at the configured fixed rate. Messages can already be submitted before starting.
+     *
+     * @return same instance for method-chaining
+     */
+    public synchronized OutputScheduler<K> start() {
+        if (scheduledFlush == null) {
+            scheduledFlush = executor.scheduleAtFixedRate(this::flush, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        }
+
+        return this;
+    }
+
+    /**
+     * Stops flushing. Pending messages are retained and written once started again or flushed manually.
+     */
+    public synchronized void stop() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    /**
+     * Sets the {@link BandwidthBudget} to respect when writing to the given module.
+     *
+     * @param module key of module to configure
+     * @param budget budget to respect; {@code null} for unlimited
+     * @return same instance for method-chaining
+     */
+    public OutputScheduler<K> setBandwidthBudget(K module, BandwidthBudget budget) {
+        getModuleQueue(module).queue.setBandwidthBudget(budget);
+        return this;
+    }
+
+    /**
+     * Returns the {@link BandwidthBudget} used when writing to the given module, if any.
+     *
+     * @param module key of module to check
+     * @return budget; {@code null} if unlimited
+     */
+    public BandwidthBudget getBandwidthBudget(K module) {
+        ModuleQueue moduleQueue = queues.get(module);
+        if (moduleQueue == null) {
+            return null;
+        }
+
+        return moduleQueue.queue.getBandwidthBudget();
+    }
+
+    /**
+     * Submits a message to be written to the given module on its {@link Lane#of(CommandMessage) default lane}.
+     * Can be called from any thread.
+     *
+     * @param module key of module to write to
+     * @param msg    message to write
+     * @throws IllegalArgumentException if the message is not supposed to be sent to a module
+     */
+    public void submit(K module, CommandMessage msg) {
+        getModuleQueue(module).queue.submit(msg);
+    }
+
+    /**
+     * Submits a message to be written to the given module on the specified lane. Can be called from any thread.
+     *
+     * @param module key of module to write to
+     * @param msg    message to write
+     * @param lane   lane to queue the message on
+     * @throws IllegalArgumentException if the message is not supposed to be sent to a module
+     */
+    public void submit(K module, CommandMessage msg, Lane lane) {
+        getModuleQueue(module).queue.submit(msg, lane);
+    }
+
+    private ModuleQueue getModuleQueue(K module) {
+        return queues.computeIfAbsent(module, x -> new ModuleQueue());
+    }
+
+    /**
+     * Returns the number of messages currently waiting to be written to the given module, after combination.
+     *
+     * @param module key of module to check
+     * @return number of messages pending for the module
+     */
+    public int getPendingCount(K module) {
+        ModuleQueue moduleQueue = queues.get(module);
+        if (moduleQueue == null) {
+            return 0;
+        }
+
+        return moduleQueue.queue.size();
+    }
+
+    /**
+     * Discards all messages pending for the given module, for example because it has been disconnected.
+     *
+     * @param module key of module to discard messages for
+     */
+    public void discard(K module) {
+        ModuleQueue moduleQueue = queues.remove(module);
+        if (moduleQueue != null) {
+            moduleQueue.queue.clear();
+        }
+    }
+
+    /**
+     * Immediately writes all pending messages to their modules. This is called automatically at a fixed rate once
+     * {@link #start()}ed but may also be called manually. Write failures are logged and do not affect other modules.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            for (Map.Entry<K, ModuleQueue> entry : queues.entrySet()) {
+                try {
+                    entry.getValue().flush(entry.getKey());
+                } catch (Exception ex) {
+                    LOGGER.warn("Failed to write to module {}", entry.getKey(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops flushing and shuts down the executor if it was created by this scheduler. Pending messages are discarded.
+     */
+    @Override
+    public void close() {
+        stop();
+
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+
+        queues.clear();
+    }
+
+    private class ModuleQueue {
+        private final OutboundQueue queue = new OutboundQueue();
+        private final CommandMessageBatchWriter batch = new CommandMessageBatchWriter();
+
+        // only called while holding flushLock
+        void flush(K module) throws IOException {
+            // drainTo stops when the batch is full, so keep writing until nothing more is released
+            while (true) {
+                queue.drainTo(batch);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                write(module);
+            }
+        }
+
+        private void write(K module) throws IOException {
+            try {
+                writer.write(module, batch.getPendingBytes());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
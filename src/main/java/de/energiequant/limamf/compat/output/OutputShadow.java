@@ -0,0 +1,171 @@
+package de.energiequant.limamf.compat.output;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.OutputConfiguration;
+import de.energiequant.limamf.compat.protocol.ConfigurationInfoMessage;
+import de.energiequant.limamf.compat.protocol.SetPinMessage;
+import de.energiequant.limamf.compat.utils.Numbers;
+
+/**
+ * Remembers the output pin states of a single MobiFlight module to suppress redundant {@link SetPinMessage}s.
+ * <p>
+ * Applications record the desired state of each pin as often as they like (e.g. every frame). Only pins whose desired
+ * state differs from what has last been sent to the module are emitted by {@link #drainPending(Consumer)}. If a pin
+ * changes multiple times before being drained, only the latest state is sent; if it returns to the state already sent,
+ * nothing is sent at all.
+ * </p>
+ * <p>
+ * After a reconnect, {@link #invalidate()} marks all known states as pending again so that the next drain restores
+ * the full state on the module with a minimal burst of messages. {@link #resync(InterfaceConfiguration)} does the
+ * same after a configuration has been (re)read but also forgets all pins which are no longer configured as outputs.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class OutputShadow {
+    private static final int NUM_PINS = 256;
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final int[] desiredStates = new int[NUM_PINS];
+    private final int[] sentStates = new int[NUM_PINS];
+    private final BitSet pendingPins = new BitSet(NUM_PINS);
+
+    /**
+     * Creates a new shadow without any known states.
+     */
+    public OutputShadow() {
+        Arrays.fill(desiredStates, UNKNOWN);
+        Arrays.fill(sentStates, UNKNOWN);
+    }
+
+    /**
+     * Records the desired state of the given output.
+     *
+     * @param output output to set
+     * @param state  state/duty cycle value as used by {@link SetPinMessage}
+     * @return {@code true} if a message needs to be sent as a result, {@code false} if redundant
+     */
+    public boolean set(OutputConfiguration output, int state) {
+        return set(output.getPin(), state);
+    }
+
+    /**
+     * Records the state described by the given message as desired; the message itself is not retained.
+     *
+     * @param msg message describing the desired state
+     * @return {@code true} if a message needs to be sent as a result, {@code false} if redundant
+     */
+    public boolean set(SetPinMessage msg) {
+        return set(msg.getPin(), msg.getState());
+    }
+
+    /**
+     * Records the desired state of the given pin.
+     *
+     * @param pin   pin ID
+     * @param state state/duty cycle value as used by {@link SetPinMessage}
+     * @return {@code true} if a message needs to be sent as a result, {@code false} if redundant
+     */
+    public synchronized boolean set(int pin, int state) {
+        Numbers.requireUint8(pin);
+        Numbers.requireInt16(state);
+
+        desiredStates[pin] = state;
+
+        boolean isPending = (sentStates[pin] != state);
+        pendingPins.set(pin, isPending);
+
+        return isPending;
+    }
+
+    /**
+     * Returns the latest state recorded for the given pin, regardless of whether it has already been sent.
+     *
+     * @param pin pin ID
+     * @return latest recorded state; empty if unknown
+     */
+    public synchronized OptionalInt getState(int pin) {
+        int state = desiredStates[Numbers.requireUint8(pin)];
+        if (state == UNKNOWN) {
+            return OptionalInt.empty();
+        }
+
+        return OptionalInt.of(state);
+    }
+
+    /**
+     * Indicates whether any pin has a state which still needs to be sent.
+     *
+     * @return {@code true} if {@link #drainPending(Consumer)} would emit messages, {@code false} if not
+     */
+    public synchronized boolean hasPendingChanges() {
+        return !pendingPins.isEmpty();
+    }
+
+    /**
+     * Emits a {@link SetPinMessage} for every pin whose latest state has not been sent yet and assumes those states
+     * to be active on the module afterwards.
+     *
+     * @param sink receives all messages that need to be sent, ordered by pin
+     * @return number of emitted messages
+     */
+    public synchronized int drainPending(Consumer<? super SetPinMessage> sink) {
+        int numEmitted = 0;
+
+        for (int pin = pendingPins.nextSetBit(0); pin >= 0; pin = pendingPins.nextSetBit(pin + 1)) {
+            int state = desiredStates[pin];
+
+            sink.accept(SetPinMessage.of(pin, state));
+
+            sentStates[pin] = state;
+            numEmitted++;
+        }
+
+        pendingPins.clear();
+
+        return numEmitted;
+    }
+
+    /**
+     * Forgets what has been sent to the module, for example because the connection has been reset. All known states
+     * become pending, so the next {@link #drainPending(Consumer)} restores them.
+     */
+    public synchronized void invalidate() {
+        Arrays.fill(sentStates, UNKNOWN);
+
+        for (int pin = 0; pin < NUM_PINS; pin++) {
+            if (desiredStates[pin] != UNKNOWN) {
+                pendingPins.set(pin);
+            }
+        }
+    }
+
+    /**
+     * Adapts to a (re)read module configuration, for example as received by {@link ConfigurationInfoMessage}.
+     * All states for pins not configured as {@link OutputConfiguration} are forgotten, all other known states become
+     * pending to restore them with the next {@link #drainPending(Consumer)}.
+     *
+     * @param configuration configuration currently active on the module
+     */
+    public synchronized void resync(InterfaceConfiguration configuration) {
+        BitSet outputPins = new BitSet(NUM_PINS);
+        for (OutputConfiguration output : configuration.getDevicesOfType(DeviceType.OUTPUT, OutputConfiguration.class)) {
+            outputPins.set(output.getPin());
+        }
+
+        for (int pin = 0; pin < NUM_PINS; pin++) {
+            if (!outputPins.get(pin)) {
+                desiredStates[pin] = UNKNOWN;
+            }
+        }
+
+        invalidate();
+    }
+}
@@ -0,0 +1,185 @@
+package de.energiequant.limamf.compat.output;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.OutputShifterConfiguration;
+import de.energiequant.limamf.compat.protocol.SetShiftRegisterPinsMessage;
+
+/**
+ * Remembers the output states of a single shift register chain ({@link OutputShifterConfiguration}) to send only
+ * actual changes, packed into as few {@link SetShiftRegisterPinsMessage}s as possible.
+ * <p>
+ * States are tracked per register (8 pins each), so unchanged registers are skipped without looking at individual pins
+ * when changes are drained. Similar to {@link OutputShadow}, pins may be set as often as wanted; only the latest state
+ * differing from what has last been sent gets transmitted.
+ * </p>
+ * <p>
+ * All pins are assumed to be disabled until set otherwise. After a reconnect, {@link #invalidate()} causes the full
+ * state to be sent again on next drain.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class ShiftRegisterShadow {
+    private static final int PINS_PER_REGISTER = OutputShifterConfiguration.PINS_PER_REGISTER;
+
+    private final int shifterIndex;
+    private final int numPins;
+
+    private final int[] desiredStates;
+    private final int[] sentStates;
+    private final boolean[] sentKnown;
+
+    private int maximumEncodedLength = SetShiftRegisterPinsMessage.DEFAULT_MAXIMUM_ENCODED_LENGTH;
+
+    /**
+     * Creates a new shadow for the given shift register chain.
+     *
+     * @param interfaceConfiguration configuration of the module holding the shift register chain
+     * @param shifter                shift register chain to track
+     * @throws IllegalArgumentException if the shift register chain is not part of the module configuration
+     */
+    public ShiftRegisterShadow(InterfaceConfiguration interfaceConfiguration, OutputShifterConfiguration shifter) {
+        this(interfaceConfiguration.getIndexWithinType(shifter), shifter.getNumRegisters());
+    }
+
+    /**
+     * Creates a new shadow for a shift register chain.
+     *
+     * @param shifterIndex index of the shift register chain among all {@link OutputShifterConfiguration}s of the module
+     * @param numRegisters number of registers in the chain; must be positive
+     */
+    public ShiftRegisterShadow(int shifterIndex, int numRegisters) {
+        if (numRegisters < 1) {
+            throw new IllegalArgumentException("at least one register is required, got " + numRegisters);
+        }
+
+        this.shifterIndex = shifterIndex;
+        this.numPins = numRegisters * PINS_PER_REGISTER;
+
+        this.desiredStates = new int[numRegisters];
+        this.sentStates = new int[numRegisters];
+        this.sentKnown = new boolean[numRegisters];
+    }
+
+    /**
+     * Sets the maximum length of each encoded message, see
+     * {@link SetShiftRegisterPinsMessage.Builder#limitEncodedLength(int)}.
+     *
+     * @param maximumEncodedLength maximum length of each message
+     * @return same instance for method-chaining
+     */
+    public synchronized ShiftRegisterShadow limitEncodedLength(int maximumEncodedLength) {
+        this.maximumEncodedLength = maximumEncodedLength;
+        return this;
+    }
+
+    /**
+     * Records the desired state of the given pin.
+     *
+     * @param pin    pin ID, numbered consecutively across all registers of the chain
+     * @param enable {@code true} to enable, {@code false} to disable
+     * @return {@code true} if the register holding the pin needs to be updated, {@code false} if redundant
+     */
+    public synchronized boolean set(int pin, boolean enable) {
+        if (pin < 0 || pin >= numPins) {
+            throw new IllegalArgumentException("pin " + pin + " out of range, shifter has " + numPins + " pins");
+        }
+
+        int register = pin / PINS_PER_REGISTER;
+        int mask = 1 << (pin % PINS_PER_REGISTER);
+
+        if (enable) {
+            desiredStates[register] |= mask;
+        } else {
+            desiredStates[register] &= ~mask;
+        }
+
+        return isRegisterPending(register);
+    }
+
+    /**
+     * Returns the latest state recorded for the given pin, regardless of whether it has already been sent.
+     *
+     * @param pin pin ID, numbered consecutively across all registers of the chain
+     * @return {@code true} if enabled, {@code false} if disabled
+     */
+    public synchronized boolean isEnabled(int pin) {
+        if (pin < 0 || pin >= numPins) {
+            throw new IllegalArgumentException("pin " + pin + " out of range, shifter has " + numPins + " pins");
+        }
+
+        return (desiredStates[pin / PINS_PER_REGISTER] & (1 << (pin % PINS_PER_REGISTER))) != 0;
+    }
+
+    /**
+     * Indicates whether any pin has a state which still needs to be sent.
+     *
+     * @return {@code true} if {@link #drainPending(Consumer)} would emit messages, {@code false} if not
+     */
+    public synchronized boolean hasPendingChanges() {
+        for (int register = 0; register < desiredStates.length; register++) {
+            if (isRegisterPending(register)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isRegisterPending(int register) {
+        return !sentKnown[register] || (desiredStates[register] != sentStates[register]);
+    }
+
+    /**
+     * Emits as few {@link SetShiftRegisterPinsMessage}s as possible to apply all pin states which have not been sent
+     * yet and assumes those states to be active on the module afterwards.
+     *
+     * @param sink receives all messages that need to be sent
+     * @return number of emitted messages
+     */
+    public synchronized int drainPending(Consumer<? super SetShiftRegisterPinsMessage> sink) {
+        SetShiftRegisterPinsMessage.Builder builder = SetShiftRegisterPinsMessage.builder()
+                                                                                 .manipulatingShifter(shifterIndex)
+                                                                                 .limitEncodedLength(maximumEncodedLength);
+
+        for (int register = 0; register < desiredStates.length; register++) {
+            if (!isRegisterPending(register)) {
+                continue;
+            }
+
+            int desired = desiredStates[register];
+            int changed = sentKnown[register] ? (desired ^ sentStates[register]) : 0xFF;
+
+            int firstPin = register * PINS_PER_REGISTER;
+            for (int bit = 0; bit < PINS_PER_REGISTER; bit++) {
+                int mask = 1 << bit;
+                if ((changed & mask) != 0) {
+                    builder.set(firstPin + bit, (desired & mask) != 0);
+                }
+            }
+        }
+
+        List<SetShiftRegisterPinsMessage> messages = builder.build();
+
+        // all registers are in sync once the messages have been built successfully
+        System.arraycopy(desiredStates, 0, sentStates, 0, desiredStates.length);
+        Arrays.fill(sentKnown, true);
+
+        messages.forEach(sink);
+
+        return messages.size();
+    }
+
+    /**
+     * Forgets what has been sent to the module, for example because the connection has been reset. The full state of
+     * all registers will be sent by the next {@link #drainPending(Consumer)}.
+     */
+    public synchronized void invalidate() {
+        Arrays.fill(sentKnown, false);
+    }
+}
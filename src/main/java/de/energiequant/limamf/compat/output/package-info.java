@@ -0,0 +1,10 @@
+/**
+ * This package contains host-side helpers to efficiently drive outputs of MobiFlight modules, for example by
+ * remembering which state has already been sent to a module in order to avoid redundant transmissions.
+ * <p>
+ * Similar to {@link de.energiequant.limamf.compat.protocol}, classes in this package do not implement any actual
+ * device communication but only decide what {@link de.energiequant.limamf.compat.protocol.CommandMessage}s need to be
+ * sent.
+ * </p>
+ */
+package de.energiequant.limamf.compat.output;
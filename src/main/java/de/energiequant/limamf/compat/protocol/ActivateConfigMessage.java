@@ -0,0 +1,57 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.Collections;
+
+/**
+ * Reinitializes all devices of a module according to its saved configuration (replied to with
+ * {@link ConfigActivatedMessage}).
+ *
+ * @see SaveConfigMessage
+ */
+public class ActivateConfigMessage extends CommandMessage {
+    private static final ActivateConfigMessage INSTANCE = new ActivateConfigMessage();
+
+    // the message does not hold any parameters, so all instances share the same encoding
+    private static final byte[] ENCODED = INSTANCE.encode();
+
+    /**
+     * Creates a new message activating the saved configuration of a module.
+     *
+     * @see ConfigActivatedMessage
+     */
+    public ActivateConfigMessage() {
+        super(CommandType.ACTIVATE_CONFIG, Collections.emptyList());
+    }
+
+    /**
+     * Returns a shared instance which has already been encoded for transmission, so it can be written repeatedly
+     * without any formatting or allocation. As the message does not hold any parameters, it is equivalent to creating
+     * a new instance.
+     *
+     * @return shared instance
+     */
+    public static ActivateConfigMessage getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    byte[] getPreEncoded() {
+        return ENCODED;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // reconfigures all pins of the module
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "ActivateConfigMessage()";
+    }
+}
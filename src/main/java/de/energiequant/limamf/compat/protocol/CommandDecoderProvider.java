@@ -0,0 +1,19 @@
+package de.energiequant.limamf.compat.protocol;
+
+/**
+ * Service provider interface to contribute additional decoders to the default {@link CommandDecoderRegistry}.
+ * <p>
+ * Implementations are discovered through {@link java.util.ServiceLoader} when the default registry is first accessed.
+ * To be found, implementations need to be listed in
+ * {@code META-INF/services/de.energiequant.limamf.compat.protocol.CommandDecoderProvider} and provide a public
+ * no-argument constructor.
+ * </p>
+ */
+public interface CommandDecoderProvider {
+    /**
+     * Registers all decoders contributed by this provider.
+     *
+     * @param registry registry to add decoders to
+     */
+    void registerDecoders(CommandDecoderRegistry registry);
+}
@@ -0,0 +1,254 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.compat.utils.Numbers;
+
+/**
+ * Holds the specialized decoders used by {@link CommandMessageDecoder} to turn generic {@link CommandMessage}s into
+ * more specific implementations, indexed by raw message type ID.
+ * <p>
+ * Decoders receive a generic {@link CommandMessage} and return the specialized message; they should throw an
+ * {@link IllegalArgumentException} if the message cannot be decoded. Decoders can also be registered for type IDs
+ * not known to {@link CommandType}, so applications can add support for further messages without having to modify
+ * this library.
+ * </p>
+ * <p>
+ * Decoders can be accompanied by a {@link CommandMessageValidator} which checks messages before they are decoded,
+ * allowing malformed messages to be rejected without any exceptions being thrown, see
+ * {@link CommandMessageStreamDecoder#setTolerateErrors(boolean)}. All decoders provided by this library come with a
+ * validator.
+ * </p>
+ * <p>
+ * Registries are thread-safe; lookups are constant-time array accesses.
+ * </p>
+ *
+ * @see CommandDecoderProvider
+ */
+public class CommandDecoderRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandDecoderRegistry.class);
+
+    private static final int NUM_TYPE_IDS = 256;
+
+    private final AtomicReferenceArray<Registration> registrationsByTypeId = new AtomicReferenceArray<>(NUM_TYPE_IDS);
+
+    private static class Registration {
+        private final UnaryOperator<CommandMessage> decoder;
+        private final CommandMessageValidator validator;
+
+        private Registration(UnaryOperator<CommandMessage> decoder, CommandMessageValidator validator) {
+            this.decoder = decoder;
+            this.validator = validator;
+        }
+    }
+
+    private static class DefaultHolder {
+        private static final CommandDecoderRegistry INSTANCE = createDefault();
+    }
+
+    /**
+     * Creates a new, empty registry.
+     *
+     * @see #withBuiltInDecoders()
+     */
+    public CommandDecoderRegistry() {
+        // nothing to do
+    }
+
+    /**
+     * Returns the default registry shared by all {@link CommandMessageDecoder}s unless configured otherwise.
+     * <p>
+     * The default registry holds all decoders provided by this library as well as those contributed by any
+     * {@link CommandDecoderProvider} found via {@link ServiceLoader} upon first access. Providers which cannot be loaded
+     * or fail to register their decoders are logged and skipped. Further decoders may be registered at runtime.
+     * </p>
+     *
+     * @return default registry
+     */
+    public static CommandDecoderRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a new registry holding only the decoders provided by this library.
+     *
+     * @return new registry holding all built-in decoders
+     */
+    public static CommandDecoderRegistry withBuiltInDecoders() {
+        return new CommandDecoderRegistry()
+            .register(CommandType.CONFIG_ACTIVATED, ConfigActivatedMessage::new, ConfigActivatedMessage::validate)
+            .register(CommandType.CONFIG_SAVED, ConfigSavedMessage::new, ConfigSavedMessage::validate)
+            .register(CommandType.DIG_IN_MUX_CHANGE, DigitalInputMultiplexerChangeMessage::new, DigitalInputMultiplexerChangeMessage::validate)
+            .register(CommandType.ENCODER_CHANGE, EncoderChangeMessage::new, EncoderChangeMessage::validate)
+            .register(CommandType.INFO, InfoMessage::decode, InfoMessage::validate)
+            .register(CommandType.STATUS, StatusMessage::new, StatusMessage::validate);
+    }
+
+    private static CommandDecoderRegistry createDefault() {
+        CommandDecoderRegistry registry = withBuiltInDecoders();
+
+        Iterator<CommandDecoderProvider> providers = ServiceLoader.load(CommandDecoderProvider.class).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+            } catch (ServiceConfigurationError ex) {
+                // iterator state is undefined if provider configuration cannot be read, so there is no safe way to continue
+                LOGGER.warn("failed to look up further decoder providers", ex);
+                break;
+            }
+
+            CommandDecoderProvider provider;
+            try {
+                provider = providers.next();
+            } catch (ServiceConfigurationError ex) {
+                // provider could not be loaded or instantiated; the iterator has already moved past it
+                LOGGER.warn("failed to load decoder provider, skipping", ex);
+                continue;
+            }
+
+            try {
+                provider.registerDecoders(registry);
+            } catch (Exception ex) {
+                LOGGER.warn("failed to register decoders from {}", provider.getClass().getName(), ex);
+            }
+        }
+
+        return registry;
+    }
+
+    /**
+     * Registers a decoder for the given {@link CommandType}, without a validator.
+     *
+     * @param type    message type to decode
+     * @param decoder decoder for messages of that type
+     * @return same instance for method-chaining
+     * @throws IllegalArgumentException if a decoder has already been registered for that type
+     */
+    public CommandDecoderRegistry register(CommandType type, UnaryOperator<CommandMessage> decoder) {
+        return register(type.getFirmwareEncoding(), decoder, null);
+    }
+
+    /**
+     * Registers a decoder for the given {@link CommandType}, accompanied by a validator.
+     *
+     * @param type      message type to decode
+     * @param decoder   decoder for messages of that type
+     * @param validator checks if messages of that type can be decoded without causing an exception; may be null
+     * @return same instance for method-chaining
+     * @throws IllegalArgumentException if a decoder has already been registered for that type
+     */
+    public CommandDecoderRegistry register(CommandType type, UnaryOperator<CommandMessage> decoder, CommandMessageValidator validator) {
+        return register(type.getFirmwareEncoding(), decoder, validator);
+    }
+
+    /**
+     * Registers a decoder for the given raw message type ID, without a validator.
+     *
+     * @param typeId  raw message type ID to decode
+     * @param decoder decoder for messages of that type
+     * @return same instance for method-chaining
+     * @throws IllegalArgumentException if a decoder has already been registered for that type ID
+     */
+    public CommandDecoderRegistry register(int typeId, UnaryOperator<CommandMessage> decoder) {
+        return register(typeId, decoder, null);
+    }
+
+    /**
+     * Registers a decoder for the given raw message type ID, accompanied by a validator.
+     *
+     * @param typeId    raw message type ID to decode
+     * @param decoder   decoder for messages of that type
+     * @param validator checks if messages of that type can be decoded without causing an exception; may be null
+     * @return same instance for method-chaining
+     * @throws IllegalArgumentException if a decoder has already been registered for that type ID
+     */
+    public CommandDecoderRegistry register(int typeId, UnaryOperator<CommandMessage> decoder, CommandMessageValidator validator) {
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null");
+        }
+
+        Registration registration = new Registration(decoder, validator);
+        if (!registrationsByTypeId.compareAndSet(Numbers.requireUint8(typeId), null, registration)) {
+            throw new IllegalArgumentException("a decoder has already been registered for type ID " + typeId);
+        }
+
+        return this;
+    }
+
+    /**
+     * Removes the decoder (and validator) registered for the given raw message type ID, if any.
+     *
+     * @param typeId raw message type ID
+     * @return removed decoder, if any
+     */
+    public Optional<UnaryOperator<CommandMessage>> unregister(int typeId) {
+        Registration removed = registrationsByTypeId.getAndSet(Numbers.requireUint8(typeId), null);
+        return Optional.ofNullable((removed != null) ? removed.decoder : null);
+    }
+
+    /**
+     * Returns the decoder registered for the given raw message type ID.
+     *
+     * @param typeId raw message type ID
+     * @return registered decoder, if any
+     */
+    public Optional<UnaryOperator<CommandMessage>> getDecoder(int typeId) {
+        return Optional.ofNullable(get(typeId));
+    }
+
+    /**
+     * Returns the decoder registered for the given raw message type ID without allocating any objects.
+     *
+     * @param typeId raw message type ID
+     * @return registered decoder; null if none
+     */
+    UnaryOperator<CommandMessage> get(int typeId) {
+        Registration registration = getRegistration(typeId);
+        return (registration != null) ? registration.decoder : null;
+    }
+
+    /**
+     * Returns the validator registered for the given raw message type ID.
+     *
+     * @param typeId raw message type ID
+     * @return registered validator; empty if none, also if a decoder has been registered without a validator
+     */
+    public Optional<CommandMessageValidator> getValidator(int typeId) {
+        Registration registration = getRegistration(typeId);
+        return Optional.ofNullable((registration != null) ? registration.validator : null);
+    }
+
+    /**
+     * Checks if the message held by the given view can be decoded without causing an exception, using the validator
+     * registered for its type ID. No objects are allocated.
+     *
+     * @param view successfully parsed message to check
+     * @return {@link DecodeResult#SUCCESS} if valid or no validator has been registered, otherwise the category of error
+     */
+    DecodeResult validate(CommandMessageView view) {
+        Registration registration = getRegistration(view.getTypeId());
+        if ((registration == null) || (registration.validator == null)) {
+            return DecodeResult.SUCCESS;
+        }
+
+        return registration.validator.validate(view);
+    }
+
+    private Registration getRegistration(int typeId) {
+        if (typeId < 0 || typeId >= NUM_TYPE_IDS) {
+            return null;
+        }
+
+        return registrationsByTypeId.get(typeId);
+    }
+}
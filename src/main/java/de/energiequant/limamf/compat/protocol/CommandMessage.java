@@ -1,10 +1,15 @@
 package de.energiequant.limamf.compat.protocol;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import de.energiequant.limamf.compat.config.devices.DeviceType;
 import de.energiequant.limamf.compat.utils.Numbers;
 
 /**
@@ -19,7 +24,11 @@ import de.energiequant.limamf.compat.utils.Numbers;
 public class CommandMessage {
     private final CommandType type;
     private final int typeId;
-    private final List<String> fields;
+    private volatile List<String> fields;
+
+    // raw encoded fields for lazy splitting, null if fields have been provided on construction
+    private final String rawMessage;
+    private final int rawFieldsOffset;
 
     /**
      * standard field separator used by MobiFlight protocol messages
@@ -44,6 +53,8 @@ public class CommandMessage {
         this.type = type;
         this.typeId = Numbers.requireUint8(type.getFirmwareEncoding());
         this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.rawMessage = null;
+        this.rawFieldsOffset = -1;
     }
 
     /**
@@ -56,6 +67,23 @@ public class CommandMessage {
         this.type = CommandType.fromFirmwareEncoding(typeId).orElse(null);
         this.typeId = Numbers.requireUint8(typeId);
         this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.rawMessage = null;
+        this.rawFieldsOffset = -1;
+    }
+
+    /**
+     * Constructs a message whose fields are only split from the raw encoded message when requested.
+     *
+     * @param typeId          raw message type ID
+     * @param rawMessage      raw encoded message (without command separator), must not have an open escape
+     * @param rawFieldsOffset offset of first field within raw message; -1 if the message has no fields
+     */
+    CommandMessage(int typeId, String rawMessage, int rawFieldsOffset) {
+        this.type = CommandType.fromFirmwareEncoding(typeId).orElse(null);
+        this.typeId = Numbers.requireUint8(typeId);
+        this.fields = (rawFieldsOffset < 0) ? Collections.emptyList() : null;
+        this.rawMessage = rawMessage;
+        this.rawFieldsOffset = rawFieldsOffset;
     }
 
     /**
@@ -67,6 +95,8 @@ public class CommandMessage {
         this.type = base.type;
         this.typeId = base.typeId;
         this.fields = base.fields;
+        this.rawMessage = base.rawMessage;
+        this.rawFieldsOffset = base.rawFieldsOffset;
     }
 
     /**
@@ -98,7 +128,13 @@ public class CommandMessage {
      * @return all field values
      */
     public List<String> getFields() {
-        return fields;
+        List<String> out = fields;
+        if (out == null) {
+            // concurrent calls may split redundantly but will always arrive at the same result
+            out = Collections.unmodifiableList(CommandMessageDecoder.splitFields(rawMessage, rawFieldsOffset));
+            fields = out;
+        }
+        return out;
     }
 
     /**
@@ -111,7 +147,7 @@ public class CommandMessage {
 
         sb.append(typeId);
 
-        for (String field : fields) {
+        for (String field : getFields()) {
             sb.append(FIELD_SEPARATOR);
             serializeField(sb, field);
         }
@@ -120,8 +156,15 @@ public class CommandMessage {
     }
 
     private void serializeField(StringBuilder sb, String s) {
-        for (char ch : s.toCharArray()) {
-            if (ch == ESCAPE_CHARACTER || ch == FIELD_SEPARATOR || ch == COMMAND_SEPARATOR) {
+        if (!needsEscaping(s)) {
+            sb.append(s);
+            return;
+        }
+
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char ch = s.charAt(i);
+            if (isEscapable(ch)) {
                 sb.append(ESCAPE_CHARACTER);
             }
 
@@ -129,6 +172,195 @@ public class CommandMessage {
         }
     }
 
+    private static boolean needsEscaping(String s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            if (isEscapable(s.charAt(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static boolean isEscapable(char ch) {
+        return ch == ESCAPE_CHARACTER || ch == FIELD_SEPARATOR || ch == COMMAND_SEPARATOR;
+    }
+
+    /**
+     * Returns the number of bytes needed to write the message including its command separator, as written by
+     * {@link #writeTo(ByteBuffer)}.
+     *
+     * @return number of bytes needed to write the message
+     */
+    public int getEncodedLength() {
+        byte[] preEncoded = getPreEncoded();
+        if (preEncoded != null) {
+            return preEncoded.length;
+        }
+
+        int length = getNumDigits(typeId) + 1; // command separator
+
+        for (String field : getFields()) {
+            length += 1 + field.length() + countEscapable(field);
+        }
+
+        return length;
+    }
+
+    private static int getNumDigits(int value) {
+        // type IDs are unsigned 8-bit values
+        if (value >= 100) {
+            return 3;
+        } else if (value >= 10) {
+            return 2;
+        } else {
+            return 1;
+        }
+    }
+
+    private static int countEscapable(String s) {
+        int count = 0;
+
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            if (isEscapable(s.charAt(i))) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the complete encoding as written by {@link #writeTo(ByteBuffer)} if it has been computed in advance.
+     * Only shared instances which are written repeatedly should hold such an encoding; see {@link #encode()}.
+     *
+     * @return encoded message including command separator; null if not encoded in advance
+     */
+    byte[] getPreEncoded() {
+        return null;
+    }
+
+    /**
+     * Encodes the message including its command separator to a new array, as written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @return encoded message including command separator
+     */
+    byte[] encode() {
+        byte[] out = new byte[getEncodedLength()];
+        writeUnchecked(ByteBuffer.wrap(out));
+        return out;
+    }
+
+    /**
+     * Writes the message including its command separator to the given buffer, ready to be sent to a MobiFlight
+     * module. Type ID, separators and field characters are written directly to the buffer; fields which do not need to
+     * be escaped are copied in bulk. Apart from shared instances, which have been encoded in advance, no intermediate
+     * {@link String}s or arrays are created.
+     * <p>
+     * Characters outside of 8-bit range cannot be encoded and will be replaced.
+     * </p>
+     *
+     * @param buffer buffer to write to; position will be advanced
+     * @throws BufferOverflowException if the buffer does not have enough space left; nothing is written in that case
+     * @see #getEncodedLength()
+     */
+    public void writeTo(ByteBuffer buffer) {
+        if (buffer.remaining() < getEncodedLength()) {
+            throw new BufferOverflowException();
+        }
+
+        writeUnchecked(buffer);
+    }
+
+    /**
+     * Writes the message including its command separator to the given buffer without checking for sufficient space
+     * first; callers need to ensure that at least {@link #getEncodedLength()} bytes are remaining.
+     *
+     * @param buffer buffer to write to; position will be advanced
+     */
+    void writeUnchecked(ByteBuffer buffer) {
+        byte[] preEncoded = getPreEncoded();
+        if (preEncoded != null) {
+            buffer.put(preEncoded);
+            return;
+        }
+
+        if (typeId >= 100) {
+            buffer.put((byte) ('0' + typeId / 100));
+        }
+        if (typeId >= 10) {
+            buffer.put((byte) ('0' + (typeId / 10) % 10));
+        }
+        buffer.put((byte) ('0' + typeId % 10));
+
+        for (String field : getFields()) {
+            buffer.put((byte) FIELD_SEPARATOR);
+
+            if (countEscapable(field) == 0) {
+                putChars(buffer, field);
+            } else {
+                putEscaped(buffer, field);
+            }
+        }
+
+        buffer.put((byte) COMMAND_SEPARATOR);
+    }
+
+    private static void putChars(ByteBuffer buffer, String s) {
+        int length = s.length();
+
+        if (!buffer.hasArray()) {
+            for (int i = 0; i < length; i++) {
+                buffer.put(toByte(s.charAt(i)));
+            }
+            return;
+        }
+
+        byte[] array = buffer.array();
+        int position = buffer.position();
+        int offset = buffer.arrayOffset() + position;
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = toByte(s.charAt(i));
+        }
+        buffer.position(position + length);
+    }
+
+    private static void putEscaped(ByteBuffer buffer, String s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char ch = s.charAt(i);
+            if (isEscapable(ch)) {
+                buffer.put((byte) ESCAPE_CHARACTER);
+            }
+
+            buffer.put(toByte(ch));
+        }
+    }
+
+    private static byte toByte(char ch) {
+        // the protocol only uses ASCII but 8-bit characters are passed through as-is (ISO-8859-1)
+        return (ch <= 0xFF) ? (byte) ch : (byte) '?';
+    }
+
+    /**
+     * Writes the message including its command separator to the given {@link OutputStream}, ready to be sent to a
+     * MobiFlight module. The message is handed to the stream in a single write; unless the message has been encoded
+     * in advance, it is encoded to a single array of exact size first, without creating any intermediate
+     * {@link String}s.
+     * <p>
+     * Characters outside of 8-bit range cannot be encoded and will be replaced.
+     * </p>
+     *
+     * @param out stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] preEncoded = getPreEncoded();
+        out.write((preEncoded != null) ? preEncoded : encode());
+    }
+
     /**
      * Checks if the command has been confirmed to be syntactically correct for the given firmware version.
      *
@@ -155,6 +387,49 @@ public class CommandMessage {
         return true;
     }
 
+    /**
+     * Returns the ID of the target (such as a pin or the index of a device) this message manipulates on a module, if
+     * applicable. Together with {@link #getOutputDeviceType()}, the target ID identifies what is being manipulated, so
+     * outbound messages addressing the same target can be kept in order.
+     *
+     * @return ID of manipulated target; -1 if not applicable
+     */
+    public int getOutputTargetId() {
+        return -1;
+    }
+
+    /**
+     * Returns the type of device addressed by {@link #getOutputTargetId()}, if applicable. Messages addressing plain
+     * pins indicate {@link DeviceType#OUTPUT}.
+     *
+     * @return type of manipulated device; null if not applicable
+     */
+    public DeviceType getOutputDeviceType() {
+        return null;
+    }
+
+    /**
+     * Indicates whether this message fully supersedes earlier messages of the same type manipulating the same
+     * {@link #getOutputTargetId() target}, so that only the latest of them needs to be sent. Messages which only
+     * affect part of a target or trigger actions must not be superseded.
+     *
+     * @return {@code true} if earlier messages of the same type and target can be dropped, {@code false} if not
+     */
+    public boolean isSupersedingSameTarget() {
+        // safe default: every message needs to be sent
+        return false;
+    }
+
+    /**
+     * Indicates whether this message is part of regular (potentially high-volume) output traffic, such as setting pins,
+     * displays or motors, as opposed to handshakes, requests and configuration.
+     *
+     * @return {@code true} if the message updates outputs, {@code false} if it controls the module
+     */
+    public boolean isOutputUpdate() {
+        return false;
+    }
+
     /**
      * Indicates the direction(s) this message can flow.
      *
@@ -175,7 +450,7 @@ public class CommandMessage {
             sb.append(type);
         }
 
-        for (String field : fields) {
+        for (String field : getFields()) {
             sb.append(", \"");
             sb.append(field);
             sb.append("\"");
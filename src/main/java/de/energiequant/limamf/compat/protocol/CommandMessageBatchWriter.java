@@ -0,0 +1,188 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Packs multiple {@link CommandMessage}s into a single buffer so they can be sent to a MobiFlight module in one write.
+ * <p>
+ * Messages are written as encoded bytes including their command separators directly into the buffer, without creating
+ * any intermediate {@link String}s or arrays.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class CommandMessageBatchWriter {
+    /**
+     * Default buffer capacity, see {@link #CommandMessageBatchWriter()}.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final ByteBuffer buffer;
+    private int messageCount = 0;
+
+    /**
+     * Creates a new batch writer with a capacity of {@value #DEFAULT_CAPACITY} bytes.
+     */
+    public CommandMessageBatchWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new batch writer with the given capacity.
+     *
+     * @param capacity maximum number of bytes to hold before the batch needs to be written
+     */
+    public CommandMessageBatchWriter(int capacity) {
+        this(ByteBuffer.allocate(capacity));
+    }
+
+    /**
+     * Creates a new batch writer packing messages into the given buffer. The buffer's full capacity will be used,
+     * regardless of its current position and limit.
+     *
+     * @param buffer buffer to pack messages into, may be a direct buffer
+     */
+    public CommandMessageBatchWriter(ByteBuffer buffer) {
+        this.buffer = buffer;
+        buffer.clear();
+    }
+
+    /**
+     * Adds the given message to the batch if there is enough space left.
+     *
+     * @param msg message to add
+     * @return {@code true} if added, {@code false} if the batch needs to be written first
+     * @throws IllegalArgumentException if the message exceeds the capacity even of an empty batch
+     */
+    public boolean add(CommandMessage msg) {
+        int length = msg.getEncodedLength();
+        if (length > buffer.capacity()) {
+            throw new IllegalArgumentException("message requires " + length + " bytes, exceeding batch capacity of " + buffer.capacity() + " bytes");
+        }
+
+        if (length > buffer.remaining()) {
+            return false;
+        }
+
+        // space has already been checked above
+        msg.writeUnchecked(buffer);
+        messageCount++;
+
+        return true;
+    }
+
+    /**
+     * Adds all given messages, writing the batch to the channel whenever it is full. Remaining messages are kept in
+     * the batch and need to be written by the caller eventually.
+     *
+     * @param messages messages to add
+     * @param channel  channel to write full batches to
+     * @throws IOException if writing fails
+     */
+    public void addAll(Iterable<? extends CommandMessage> messages, WritableByteChannel channel) throws IOException {
+        for (CommandMessage msg : messages) {
+            if (!add(msg)) {
+                writeTo(channel);
+                add(msg);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of messages currently held in the batch.
+     *
+     * @return number of messages pending to be written
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Returns the number of bytes currently held in the batch.
+     *
+     * @return number of bytes pending to be written
+     */
+    public int getLength() {
+        return buffer.position();
+    }
+
+    /**
+     * Returns the number of bytes which can still be added to the batch before it needs to be written.
+     *
+     * @return number of bytes left in the batch
+     */
+    public int getRemaining() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Indicates whether the batch is empty.
+     *
+     * @return {@code true} if no messages are pending, {@code false} if messages need to be written
+     */
+    public boolean isEmpty() {
+        return messageCount == 0;
+    }
+
+    /**
+     * Writes all pending messages to the given channel and clears the batch.
+     *
+     * @param channel channel to write to
+     * @throws IOException if writing fails; the batch is cleared regardless
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Writes all pending messages to the given stream and clears the batch.
+     *
+     * @param out stream to write to
+     * @throws IOException if writing fails; the batch is cleared regardless
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        try {
+            if (buffer.hasArray()) {
+                out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            } else {
+                buffer.flip();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                out.write(bytes);
+            }
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Provides direct read access to the pending bytes, e.g. to hand them to an API not supported by this class.
+     * The returned buffer shares its content with the batch; call {@link #clear()} after it has been consumed.
+     *
+     * @return read-only view of all pending bytes
+     */
+    public ByteBuffer getPendingBytes() {
+        ByteBuffer out = buffer.duplicate();
+        out.flip();
+        return out.asReadOnlyBuffer();
+    }
+
+    /**
+     * Discards all pending messages.
+     */
+    public void clear() {
+        buffer.clear();
+        messageCount = 0;
+    }
+}
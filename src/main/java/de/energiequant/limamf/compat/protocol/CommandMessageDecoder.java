@@ -3,36 +3,237 @@ package de.energiequant.limamf.compat.protocol;
 import static de.energiequant.limamf.compat.protocol.CommandMessage.ESCAPE_CHARACTER;
 import static de.energiequant.limamf.compat.protocol.CommandMessage.FIELD_SEPARATOR;
 
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.UnaryOperator;
 
-import de.energiequant.limamf.compat.utils.Maps;
+import de.energiequant.limamf.compat.utils.Numbers;
 
 /**
  * Decodes {@link CommandMessage}s serialized according to MobiFlight firmware protocol.
+ * <p>
+ * Decoders can optionally be restricted to only decode messages of interest, see {@link #builder()}. Messages not
+ * matching the configured interest are skipped by {@link #deserializeIfInterested(String)} after only reading the
+ * numeric type prefix (and, if restricted by device names, the first field).
+ * </p>
+ * <p>
+ * Field values of messages without a specialized implementation are only split/unescaped when
+ * {@link CommandMessage#getFields()} is called for the first time.
+ * </p>
  */
 public class CommandMessageDecoder {
-    private static final Map<CommandType, UnaryOperator<CommandMessage>> DECODERS_BY_COMMAND_TYPE = Maps.createEnumMap(
-        CommandType.class,
-        Maps.entry(CommandType.DIG_IN_MUX_CHANGE, DigitalInputMultiplexerChangeMessage::new),
-        Maps.entry(CommandType.ENCODER_CHANGE, EncoderChangeMessage::new),
-        Maps.entry(CommandType.INFO, InfoMessage::decode)
-    );
+    private static final CommandType[] TYPES_NAMING_DEVICE_ON_FIRST_FIELD = {
+        CommandType.ENCODER_CHANGE,
+        CommandType.BUTTON_CHANGE,
+        CommandType.ANALOG_CHANGE,
+        CommandType.INPUT_SHIFTER_CHANGE,
+        CommandType.DIG_IN_MUX_CHANGE,
+    };
+
+    private static final boolean[] NAMES_DEVICE_ON_FIRST_FIELD = new boolean[256];
+
+    static {
+        for (CommandType type : TYPES_NAMING_DEVICE_ON_FIRST_FIELD) {
+            NAMES_DEVICE_ON_FIRST_FIELD[type.getFirmwareEncoding()] = true;
+        }
+    }
+
+    private final CommandDecoderRegistry registry;
+    private final boolean[] interestingTypeIds;
+    private final String[] interestingDeviceNames;
+
+    /**
+     * Creates a new decoder interested in all messages, using the {@link CommandDecoderRegistry#getDefault() default}
+     * {@link CommandDecoderRegistry}.
+     */
+    public CommandMessageDecoder() {
+        this(CommandDecoderRegistry.getDefault());
+    }
+
+    /**
+     * Creates a new decoder interested in all messages, using the given {@link CommandDecoderRegistry}.
+     *
+     * @param registry provides specialized decoders
+     */
+    public CommandMessageDecoder(CommandDecoderRegistry registry) {
+        this(registry, null, null);
+    }
+
+    private CommandMessageDecoder(CommandDecoderRegistry registry, boolean[] interestingTypeIds, String[] interestingDeviceNames) {
+        this.registry = registry;
+        this.interestingTypeIds = interestingTypeIds;
+        this.interestingDeviceNames = interestingDeviceNames;
+    }
 
     /**
      * Decodes a single {@link CommandMessage} from the given raw protocol message.
+     * <p>
+     * This method decodes all messages, regardless of any configured interest.
+     * </p>
      *
      * @param s raw protocol message to decode
      * @return decoded {@link CommandMessage}
+     * @see #deserializeIfInterested(String)
      */
     public CommandMessage deserialize(String s) {
-        LinkedList<String> fields = new LinkedList<>();
+        if (hasOpenEscape(s)) {
+            throw new IllegalArgumentException("Open escape on command message: \"" + s + "\"");
+        }
+
+        int typeEnd = findFieldEnd(s, 0);
+        int typeId = parseTypeId(s, typeEnd);
+
+        CommandMessage msg = new CommandMessage(typeId, s, (typeEnd < s.length()) ? typeEnd + 1 : -1);
+
+        UnaryOperator<CommandMessage> decoder = registry.get(typeId);
+        if (decoder != null) {
+            try {
+                msg = decoder.apply(msg);
+            } catch (Exception ex) {
+                throw new IllegalArgumentException("Failed to decode command message: \"" + s + "\"", ex);
+            }
+        }
+
+        return msg;
+    }
+
+    /**
+     * Decodes the message held by the given view without parsing it again. Any escapes have already been resolved by
+     * the view.
+     *
+     * @param view successfully parsed message to decode
+     * @return decoded {@link CommandMessage}
+     * @throws IllegalArgumentException if the message cannot be decoded by its specialized decoder
+     * @see #validate(CommandMessageView)
+     */
+    CommandMessage decode(CommandMessageView view) {
+        CommandMessage msg = view.toCommandMessage();
+
+        UnaryOperator<CommandMessage> decoder = registry.get(msg.getTypeId());
+        if (decoder != null) {
+            try {
+                msg = decoder.apply(msg);
+            } catch (Exception ex) {
+                throw new IllegalArgumentException("Failed to decode command message: " + msg, ex);
+            }
+        }
+
+        return msg;
+    }
+
+    /**
+     * Checks if the message held by the given view can be decoded by {@link #decode(CommandMessageView)} without
+     * causing an exception, using the validator registered along with its specialized decoder.
+     *
+     * @param view successfully parsed message to check
+     * @return {@link DecodeResult#SUCCESS} if valid or no validator is registered, otherwise the category of error
+     */
+    DecodeResult validate(CommandMessageView view) {
+        return registry.validate(view);
+    }
+
+    /**
+     * Decodes a single {@link CommandMessage} from the given raw protocol message if it matches the configured
+     * interest. Malformed messages are always decoded (i.e. will cause an exception) as their interest cannot be
+     * determined.
+     *
+     * @param s raw protocol message to decode
+     * @return decoded {@link CommandMessage}; empty if not of interest
+     * @see #isInterestedIn(CharSequence)
+     */
+    public Optional<CommandMessage> deserializeIfInterested(String s) {
+        if (!isInterestedIn(s)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(deserialize(s));
+    }
+
+    /**
+     * Checks if the given raw protocol message matches the configured interest. Only the numeric type prefix and, if
+     * needed to check device names, the first field are read. No objects are allocated.
+     * <p>
+     * Malformed messages are indicated as interesting if their interest cannot be determined.
+     * </p>
+     *
+     * @param s raw protocol message to check
+     * @return {@code true} if the message should be decoded, {@code false} if it can be skipped
+     */
+    public boolean isInterestedIn(CharSequence s) {
+        if (interestingTypeIds == null && interestingDeviceNames == null) {
+            return true;
+        }
+
+        int typeEnd = findFieldEnd(s, 0);
+        int typeId = Numbers.tryParseUnsignedInt(s, 0, typeEnd);
+        if (typeId < 0 || typeId > 255) {
+            return true;
+        }
+
+        if (interestingTypeIds != null && !interestingTypeIds[typeId]) {
+            return false;
+        }
+
+        if (interestingDeviceNames == null || !NAMES_DEVICE_ON_FIRST_FIELD[typeId] || typeEnd >= s.length()) {
+            return true;
+        }
+
+        int nameStart = typeEnd + 1;
+        int nameEnd = findFieldEnd(s, nameStart);
+        for (String name : interestingDeviceNames) {
+            if (unescapedRegionEquals(s, nameStart, nameEnd, name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int parseTypeId(String s, int typeEnd) {
+        if (typeEnd == 0) {
+            throw new IllegalArgumentException("Missing type on command message: \"" + s + "\"");
+        }
+
+        int typeId = Numbers.tryParseUnsignedInt(s, 0, typeEnd);
+        if (typeId >= 0 && typeId <= 255) {
+            return typeId;
+        }
+
+        // slow path for everything not trivially parseable, also responsible for reporting errors
+        String typeIdString = unescape(s, 0, typeEnd);
+        if (typeIdString.isEmpty()) {
+            throw new IllegalArgumentException("Missing type on command message: \"" + s + "\"");
+        }
+        try {
+            typeId = Integer.parseInt(typeIdString);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Failed to parse type from command message (not an integer): \"" + s + "\"", ex);
+        }
+        if (typeId < 0 || typeId > 255) {
+            throw new IllegalArgumentException("Failed to parse type from command message (out of range): \"" + s + "\"");
+        }
+
+        return typeId;
+    }
+
+    /**
+     * Splits the given raw protocol message into unescaped fields, starting at the given offset.
+     *
+     * @param s        raw protocol message
+     * @param fromIncl offset to start splitting at; must not point to an escaped character
+     * @return unescaped fields
+     */
+    static List<String> splitFields(String s, int fromIncl) {
+        List<String> fields = new ArrayList<>();
 
         StringBuilder collector = new StringBuilder();
 
         boolean inEscape = false;
-        for (char ch : s.toCharArray()) {
+        for (int i = fromIncl; i < s.length(); i++) {
+            char ch = s.charAt(i);
             if (inEscape) {
                 collector.append(ch);
                 inEscape = false;
@@ -40,43 +241,183 @@ public class CommandMessageDecoder {
                 inEscape = true;
             } else if (ch == FIELD_SEPARATOR) {
                 fields.add(collector.toString());
-                collector = new StringBuilder();
+                collector.setLength(0);
             } else {
                 collector.append(ch);
             }
         }
-        if (inEscape) {
-            throw new IllegalArgumentException("Open escape on command message: \"" + s + "\"");
-        }
         fields.add(collector.toString());
 
-        String typeIdString = fields.removeFirst();
-        if (typeIdString.isEmpty()) {
-            throw new IllegalArgumentException("Missing type on command message: \"" + s + "\"");
+        return fields;
+    }
+
+    private static String unescape(CharSequence s, int fromIncl, int toExcl) {
+        StringBuilder sb = new StringBuilder(toExcl - fromIncl);
+
+        boolean inEscape = false;
+        for (int i = fromIncl; i < toExcl; i++) {
+            char ch = s.charAt(i);
+            if (!inEscape && ch == ESCAPE_CHARACTER) {
+                inEscape = true;
+            } else {
+                sb.append(ch);
+                inEscape = false;
+            }
         }
-        int typeId;
-        try {
-            typeId = Integer.parseInt(typeIdString);
-        } catch (NumberFormatException ex) {
-            throw new IllegalArgumentException("Failed to parse type from command message (not an integer): \"" + s + "\"", ex);
+
+        return sb.toString();
+    }
+
+    private static boolean unescapedRegionEquals(CharSequence s, int fromIncl, int toExcl, String expected) {
+        int expectedIndex = 0;
+        int expectedLength = expected.length();
+
+        boolean inEscape = false;
+        for (int i = fromIncl; i < toExcl; i++) {
+            char ch = s.charAt(i);
+            if (!inEscape && ch == ESCAPE_CHARACTER) {
+                inEscape = true;
+                continue;
+            }
+            inEscape = false;
+
+            if (expectedIndex >= expectedLength || expected.charAt(expectedIndex) != ch) {
+                return false;
+            }
+            expectedIndex++;
         }
-        if (typeId < 0 || typeId > 255) {
-            throw new IllegalArgumentException("Failed to parse type from command message (out of range): \"" + s + "\"");
+
+        return expectedIndex == expectedLength;
+    }
+
+    private static int findFieldEnd(CharSequence s, int fromIncl) {
+        int length = s.length();
+
+        boolean inEscape = false;
+        for (int i = fromIncl; i < length; i++) {
+            char ch = s.charAt(i);
+            if (inEscape) {
+                inEscape = false;
+            } else if (ch == ESCAPE_CHARACTER) {
+                inEscape = true;
+            } else if (ch == FIELD_SEPARATOR) {
+                return i;
+            }
         }
 
-        CommandMessage msg = new CommandMessage(typeId, fields);
+        return length;
+    }
 
-        UnaryOperator<CommandMessage> decoder = msg.getType()
-                                                   .map(DECODERS_BY_COMMAND_TYPE::get)
-                                                   .orElse(null);
-        if (decoder != null) {
-            try {
-                msg = decoder.apply(msg);
-            } catch (Exception ex) {
-                throw new IllegalArgumentException("Failed to decode command message: \"" + s + "\"", ex);
+    private static boolean hasOpenEscape(CharSequence s) {
+        // only trailing escape characters matter: an odd number leaves the last one open
+        int numTrailingEscapes = 0;
+        for (int i = s.length() - 1; i >= 0 && s.charAt(i) == ESCAPE_CHARACTER; i--) {
+            numTrailingEscapes++;
+        }
+
+        return (numTrailingEscapes % 2) != 0;
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link CommandMessageDecoder}s restricted to certain messages of interest.
+     *
+     * @return {@link Builder} for {@link CommandMessageDecoder}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder creating {@link CommandMessageDecoder}s restricted to certain messages of interest.
+     * <p>
+     * Without any restrictions, all messages are of interest. Once any type has been declared interesting, all other
+     * types are skipped. Device names only restrict messages naming a device on their first field, such as
+     * {@link CommandType#ENCODER_CHANGE} or {@link CommandType#DIG_IN_MUX_CHANGE}.
+     * </p>
+     */
+    public static class Builder {
+        private CommandDecoderRegistry registry = CommandDecoderRegistry.getDefault();
+        private boolean[] interestingTypeIds;
+        private final List<String> interestingDeviceNames = new ArrayList<>();
+
+        /**
+         * Sets the {@link CommandDecoderRegistry} to look up specialized decoders from. Defaults to
+         * {@link CommandDecoderRegistry#getDefault()}.
+         *
+         * @param registry provides specialized decoders
+         * @return same instance for method-chaining
+         */
+        public Builder usingRegistry(CommandDecoderRegistry registry) {
+            this.registry = registry;
+            return this;
+        }
+
+        /**
+         * Declares the given {@link CommandType}s as interesting.
+         *
+         * @param types types to decode
+         * @return same instance for method-chaining
+         */
+        public Builder interestedIn(CommandType... types) {
+            for (CommandType type : types) {
+                interestedInTypeIds(type.getFirmwareEncoding());
             }
+            return this;
         }
 
-        return msg;
+        /**
+         * Declares the given raw type IDs as interesting. This can be used to include types not known to
+         * {@link CommandType}.
+         *
+         * @param typeIds raw type IDs to decode
+         * @return same instance for method-chaining
+         */
+        public Builder interestedInTypeIds(int... typeIds) {
+            if (interestingTypeIds == null) {
+                interestingTypeIds = new boolean[256];
+            }
+
+            for (int typeId : typeIds) {
+                interestingTypeIds[Numbers.requireUint8(typeId)] = true;
+            }
+
+            return this;
+        }
+
+        /**
+         * Declares the given device names as interesting. Only applies to messages naming a device on their first
+         * field; all other messages will not be restricted by device names.
+         *
+         * @param names device names to decode messages for
+         * @return same instance for method-chaining
+         */
+        public Builder interestedInDeviceNames(Collection<String> names) {
+            interestingDeviceNames.addAll(names);
+            return this;
+        }
+
+        /**
+         * Declares the given device names as interesting. Only applies to messages naming a device on their first
+         * field; all other messages will not be restricted by device names.
+         *
+         * @param names device names to decode messages for
+         * @return same instance for method-chaining
+         */
+        public Builder interestedInDeviceNames(String... names) {
+            return interestedInDeviceNames(Arrays.asList(names));
+        }
+
+        /**
+         * Constructs a {@link CommandMessageDecoder} as configured.
+         *
+         * @return {@link CommandMessageDecoder} according to configuration
+         */
+        public CommandMessageDecoder build() {
+            return new CommandMessageDecoder(
+                registry,
+                (interestingTypeIds != null) ? interestingTypeIds.clone() : null,
+                !interestingDeviceNames.isEmpty() ? interestingDeviceNames.toArray(new String[0]) : null
+            );
+        }
     }
 }
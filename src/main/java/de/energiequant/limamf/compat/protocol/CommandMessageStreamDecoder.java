@@ -0,0 +1,307 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.protocol.CommandMessage.COMMAND_SEPARATOR;
+import static de.energiequant.limamf.compat.protocol.CommandMessage.ESCAPE_CHARACTER;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.Consumer;
+
+/**
+ * Decodes {@link CommandMessage}s from a raw, unframed byte stream as received from a MobiFlight module.
+ * <p>
+ * Messages are split at each unescaped {@link CommandMessage#COMMAND_SEPARATOR}. Data can be provided in arbitrary
+ * chunks; incomplete messages as well as open escapes are retained until the next chunk is provided. Each fully
+ * received message of interest is decoded using a {@link CommandMessageDecoder} and forwarded to the consumer given
+ * on construction.
+ * </p>
+ * <p>
+ * Alternatively, messages can be decoded by a {@link FlyweightCommandMessageDecoder} and dispatched to a
+ * {@link CommandMessageVisitor}. No objects are allocated in steady state in that case.
+ * </p>
+ * <p>
+ * Messages exceeding the {@link #setMaximumMessageLength(int) maximum length} are discarded up to the next command
+ * separator, so memory stays bounded even if garbage is being received. By default, errors are reported by throwing
+ * exceptions; {@link #setTolerateErrors(boolean)} switches to an exception-free mode which only counts errors on the
+ * {@link DecodeStatistics} (if set) and resumes with the next message.
+ * </p>
+ * <p>
+ * Instances are stateful and thus not thread-safe. Use one instance per stream.
+ * </p>
+ */
+public class CommandMessageStreamDecoder {
+    private static final int DEFAULT_READ_BUFFER_SIZE = 1024;
+
+    /**
+     * Default maximum length of a single message, see {@link #setMaximumMessageLength(int)}.
+     */
+    public static final int DEFAULT_MAXIMUM_MESSAGE_LENGTH = 8192;
+
+    private final CommandMessageDecoder decoder;
+    private final Consumer<CommandMessage> consumer;
+    private final FlyweightCommandMessageDecoder flyweightDecoder;
+    private final CommandMessageVisitor visitor;
+
+    private int maximumMessageLength = DEFAULT_MAXIMUM_MESSAGE_LENGTH;
+    private boolean tolerateErrors = false;
+    private DecodeStatistics statistics;
+
+    private final StringBuilder frame = new StringBuilder();
+    private boolean inEscape = false;
+    private boolean discarding = false;
+
+    private CommandMessageView view;
+    private ByteBuffer readBuffer;
+
+    /**
+     * Creates a new stream decoder forwarding all decoded messages to the given consumer.
+     *
+     * @param consumer receives all decoded messages
+     */
+    public CommandMessageStreamDecoder(Consumer<CommandMessage> consumer) {
+        this(new CommandMessageDecoder(), consumer);
+    }
+
+    /**
+     * Creates a new stream decoder using the given {@link CommandMessageDecoder}, forwarding all decoded messages to
+     * the given consumer. Messages the decoder is not interested in are skipped.
+     *
+     * @param decoder  used to decode framed messages
+     * @param consumer receives all decoded messages
+     */
+    public CommandMessageStreamDecoder(CommandMessageDecoder decoder, Consumer<CommandMessage> consumer) {
+        this.decoder = decoder;
+        this.consumer = consumer;
+        this.flyweightDecoder = null;
+        this.visitor = null;
+    }
+
+    /**
+     * Creates a new stream decoder dispatching all messages to the given visitor without allocating any objects in
+     * steady state.
+     *
+     * @param visitor receives all decoded messages
+     * @see FlyweightCommandMessageDecoder
+     */
+    public CommandMessageStreamDecoder(CommandMessageVisitor visitor) {
+        this.decoder = null;
+        this.consumer = null;
+        this.flyweightDecoder = new FlyweightCommandMessageDecoder();
+        this.visitor = visitor;
+    }
+
+    /**
+     * Sets the maximum length of a single message (in bytes, excluding the command separator). Longer messages are
+     * discarded. Defaults to {@value #DEFAULT_MAXIMUM_MESSAGE_LENGTH}.
+     *
+     * @param maximumMessageLength maximum length of a single message; must be positive
+     * @return same instance for method-chaining
+     */
+    public CommandMessageStreamDecoder setMaximumMessageLength(int maximumMessageLength) {
+        if (maximumMessageLength < 1) {
+            throw new IllegalArgumentException("maximum message length must be positive, got " + maximumMessageLength);
+        }
+
+        this.maximumMessageLength = maximumMessageLength;
+        return this;
+    }
+
+    /**
+     * Enables or disables the exception-free mode. When enabled, malformed messages are neither forwarded nor cause
+     * an exception; they are only counted on the {@link DecodeStatistics}, if set.
+     * <p>
+     * Messages handled by a {@link CommandMessageVisitor} or by any decoder registered with a
+     * {@link CommandMessageValidator} (such as all decoders provided by this library) are validated without throwing
+     * any exceptions internally. Each message is only parsed once; valid messages are decoded from the validated
+     * parse result.
+     * </p>
+     *
+     * @param tolerateErrors {@code true} to only count errors, {@code false} to throw exceptions (default)
+     * @return same instance for method-chaining
+     */
+    public CommandMessageStreamDecoder setTolerateErrors(boolean tolerateErrors) {
+        this.tolerateErrors = tolerateErrors;
+        return this;
+    }
+
+    /**
+     * Sets the {@link DecodeStatistics} to record the {@link DecodeResult} of every message on. Errors are only
+     * categorized if {@link #setTolerateErrors(boolean) tolerated}, otherwise the exception is passed on without being
+     * counted (except for {@link DecodeResult#MESSAGE_TOO_LONG}).
+     *
+     * @param statistics statistics to record results on; {@code null} to disable
+     * @return same instance for method-chaining
+     */
+    public CommandMessageStreamDecoder setStatistics(DecodeStatistics statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
+    /**
+     * Consumes all remaining bytes of the given buffer. Every message completed by this chunk is decoded and forwarded
+     * before this method returns.
+     * <p>
+     * Unless errors are tolerated, the exception of a failed message is passed on to the caller. The buffer's position
+     * is left just after the failed message in that case, so calling this method again continues with the next
+     * message.
+     * </p>
+     *
+     * @param buffer chunk of raw data; position will be advanced
+     * @throws IllegalArgumentException if a message fails to decode and errors are not tolerated
+     */
+    public void decode(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            // MobiFlight protocol is plain ASCII, so unsigned bytes map directly to chars
+            char ch = (char) (buffer.get() & 0xFF);
+
+            if (inEscape) {
+                inEscape = false;
+            } else if (ch == ESCAPE_CHARACTER) {
+                inEscape = true;
+            } else if (ch == COMMAND_SEPARATOR) {
+                if (discarding) {
+                    // resynchronized after an overlong message
+                    discarding = false;
+                } else {
+                    emitFrame();
+                }
+                continue;
+            }
+
+            if (discarding) {
+                continue;
+            }
+
+            if (frame.length() >= maximumMessageLength) {
+                frame.setLength(0);
+                discarding = true;
+                record(DecodeResult.MESSAGE_TOO_LONG);
+
+                if (!tolerateErrors) {
+                    throw new IllegalArgumentException("Message exceeds maximum length of " + maximumMessageLength + ", discarding until next command separator");
+                }
+
+                continue;
+            }
+
+            frame.append(ch);
+        }
+    }
+
+    /**
+     * Reads once from the given channel and decodes all messages completed by the data read.
+     *
+     * @param channel channel to read from
+     * @return number of bytes read, possibly zero; -1 if the channel has reached end-of-stream
+     * @throws IOException              if reading from the channel fails
+     * @throws IllegalArgumentException if a message fails to decode and errors are not tolerated; remaining data will
+     *                                  be decoded on next call
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocate(DEFAULT_READ_BUFFER_SIZE);
+            readBuffer.flip();
+        }
+
+        if (readBuffer.hasRemaining()) {
+            // previous call failed on a message, continue with remaining data first
+            decode(readBuffer);
+        }
+
+        readBuffer.clear();
+        int read = channel.read(readBuffer);
+        readBuffer.flip();
+
+        decode(readBuffer);
+
+        return read;
+    }
+
+    /**
+     * Indicates whether a partial message is currently being held while waiting for more data.
+     *
+     * @return {@code true} if a message has been started but not completed yet, {@code false} if not
+     */
+    public boolean hasPartialMessage() {
+        return inEscape || discarding || (frame.length() > 0);
+    }
+
+    /**
+     * Discards any partially received message, for example after a connection has been reset.
+     */
+    public void reset() {
+        frame.setLength(0);
+        inEscape = false;
+        discarding = false;
+    }
+
+    private void emitFrame() {
+        if (frame.length() == 0) {
+            // stray separators do not carry any message
+            return;
+        }
+
+        try {
+            if (visitor != null) {
+                record(decodeToVisitor());
+            } else {
+                record(decodeToConsumer());
+            }
+        } finally {
+            frame.setLength(0);
+        }
+    }
+
+    private DecodeResult decodeToVisitor() {
+        if (tolerateErrors) {
+            return flyweightDecoder.tryDecode(frame, visitor);
+        }
+
+        flyweightDecoder.decode(frame, visitor);
+
+        return DecodeResult.SUCCESS;
+    }
+
+    private DecodeResult decodeToConsumer() {
+        if (!decoder.isInterestedIn(frame)) {
+            return DecodeResult.SKIPPED;
+        }
+
+        if (!tolerateErrors) {
+            consumer.accept(decoder.deserialize(frame.toString()));
+            return DecodeResult.SUCCESS;
+        }
+
+        // validate first so no exception needs to be thrown by any decoder registered with a validator
+        if (view == null) {
+            view = new CommandMessageView();
+        }
+
+        DecodeResult result = view.tryParse(frame);
+        if (result == DecodeResult.SUCCESS) {
+            result = decoder.validate(view);
+        }
+        if (result != DecodeResult.SUCCESS) {
+            return result;
+        }
+
+        CommandMessage msg;
+        try {
+            msg = decoder.decode(view);
+        } catch (IllegalArgumentException ex) {
+            // only expected for decoders registered without a validator
+            return DecodeResult.MALFORMED_PAYLOAD;
+        }
+
+        consumer.accept(msg);
+
+        return DecodeResult.SUCCESS;
+    }
+
+    private void record(DecodeResult result) {
+        if (statistics != null) {
+            statistics.record(result);
+        }
+    }
+}
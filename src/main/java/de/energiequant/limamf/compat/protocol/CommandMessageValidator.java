@@ -0,0 +1,21 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Checks if a message can be decoded by a specialized decoder without causing an exception, so malformed messages can
+ * be rejected without throwing any exceptions.
+ *
+ * @see CommandDecoderRegistry#register(int, UnaryOperator, CommandMessageValidator)
+ */
+@FunctionalInterface
+public interface CommandMessageValidator {
+    /**
+     * Checks if the message held by the given view can be decoded without causing an exception. Implementations must
+     * neither throw exceptions nor retain the view.
+     *
+     * @param view successfully parsed message to check
+     * @return {@link DecodeResult#SUCCESS} if valid, otherwise the category of error
+     */
+    DecodeResult validate(CommandMessageView view);
+}
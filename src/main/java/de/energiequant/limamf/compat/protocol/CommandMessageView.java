@@ -0,0 +1,301 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.protocol.CommandMessage.ESCAPE_CHARACTER;
+import static de.energiequant.limamf.compat.protocol.CommandMessage.FIELD_SEPARATOR;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import de.energiequant.limamf.compat.utils.Numbers;
+
+/**
+ * Reusable, mutable view of a single raw protocol message.
+ * <p>
+ * Parsing a message into a view only records the type ID and the offset/length of each field within an internal
+ * character buffer which already has all escapes resolved. No objects are allocated in steady state, i.e. once the
+ * internal buffers have grown large enough for the messages being handled.
+ * </p>
+ * <p>
+ * <strong>All information, including any {@link CharSequence} returned by {@link #getField(int)}, is only valid
+ * until the view is reused to parse the next message.</strong> Use {@link #toCommandMessage()} or
+ * {@link CharSequence#toString()} to retain any information beyond that.
+ * </p>
+ *
+ * @see FlyweightCommandMessageDecoder
+ */
+public class CommandMessageView {
+    private static final int INITIAL_BUFFER_SIZE = 64;
+    private static final int INITIAL_MAX_FIELDS = 8;
+
+    private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+    private CharBuffer wrappedBuffer = CharBuffer.wrap(buffer);
+    private int[] fieldOffsets = new int[INITIAL_MAX_FIELDS];
+    private int[] fieldLengths = new int[INITIAL_MAX_FIELDS];
+    private FieldView[] fieldViews = new FieldView[INITIAL_MAX_FIELDS];
+
+    private int typeId = -1;
+    private int fieldCount = 0;
+
+    /**
+     * Parses the given raw protocol message (without command separator) into this view, replacing all previously held
+     * information.
+     *
+     * @param s raw protocol message to parse
+     * @throws IllegalArgumentException if the message is malformed
+     * @see #tryParse(CharSequence)
+     */
+    public void parse(CharSequence s) {
+        DecodeResult result = tryParse(s);
+        switch (result) {
+            case SUCCESS:
+                return;
+
+            case OPEN_ESCAPE:
+                throw new IllegalArgumentException("Open escape on command message: \"" + s + "\"");
+
+            case MISSING_TYPE:
+                throw new IllegalArgumentException("Missing type on command message: \"" + s + "\"");
+
+            case MALFORMED_TYPE:
+                throw new IllegalArgumentException("Failed to parse type from command message (not an integer): \"" + s + "\"");
+
+            case TYPE_OUT_OF_RANGE:
+                throw new IllegalArgumentException("Failed to parse type from command message (out of range): \"" + s + "\"");
+
+            default:
+                throw new IllegalArgumentException("Failed to parse command message (" + result + "): \"" + s + "\"");
+        }
+    }
+
+    /**
+     * Parses the given raw protocol message (without command separator) into this view, replacing all previously held
+     * information. Instead of throwing an exception, the result of parsing is returned. If parsing fails, the view is
+     * left empty.
+     *
+     * @param s raw protocol message to parse
+     * @return {@link DecodeResult#SUCCESS} if parsed, otherwise the category of error
+     */
+    public DecodeResult tryParse(CharSequence s) {
+        typeId = -1;
+        fieldCount = 0;
+
+        int length = s.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            wrappedBuffer = CharBuffer.wrap(buffer);
+        }
+
+        // index -1 describes the type ID, all further indices are actual fields
+        int fieldIndex = -1;
+        int fieldStart = 0;
+        int typeEnd = -1;
+        int written = 0;
+
+        boolean inEscape = false;
+        for (int i = 0; i < length; i++) {
+            char ch = s.charAt(i);
+            if (inEscape) {
+                buffer[written++] = ch;
+                inEscape = false;
+            } else if (ch == ESCAPE_CHARACTER) {
+                inEscape = true;
+            } else if (ch == FIELD_SEPARATOR) {
+                if (fieldIndex < 0) {
+                    typeEnd = written;
+                } else {
+                    recordField(fieldIndex, fieldStart, written);
+                }
+                fieldIndex++;
+                fieldStart = written;
+            } else {
+                buffer[written++] = ch;
+            }
+        }
+        if (inEscape) {
+            return DecodeResult.OPEN_ESCAPE;
+        }
+        if (fieldIndex < 0) {
+            typeEnd = written;
+        } else {
+            recordField(fieldIndex, fieldStart, written);
+        }
+
+        if (typeEnd == 0) {
+            return DecodeResult.MISSING_TYPE;
+        }
+
+        int parsedTypeId = Numbers.tryParseUnsignedInt(wrappedBuffer, 0, typeEnd);
+        if (parsedTypeId < 0) {
+            return DecodeResult.MALFORMED_TYPE;
+        }
+        if (parsedTypeId > 255) {
+            return DecodeResult.TYPE_OUT_OF_RANGE;
+        }
+
+        typeId = parsedTypeId;
+        fieldCount = fieldIndex + 1;
+
+        return DecodeResult.SUCCESS;
+    }
+
+    private void recordField(int index, int start, int end) {
+        if (index >= fieldOffsets.length) {
+            int newSize = fieldOffsets.length * 2;
+            fieldOffsets = Arrays.copyOf(fieldOffsets, newSize);
+            fieldLengths = Arrays.copyOf(fieldLengths, newSize);
+            fieldViews = Arrays.copyOf(fieldViews, newSize);
+        }
+
+        fieldOffsets[index] = start;
+        fieldLengths[index] = end - start;
+    }
+
+    /**
+     * Returns the raw message type ID of the last parsed message.
+     *
+     * @return raw message type ID
+     */
+    public int getTypeId() {
+        return typeId;
+    }
+
+    /**
+     * Returns the message type of the last parsed message, if known.
+     *
+     * @return known message type
+     */
+    public Optional<CommandType> getType() {
+        return CommandType.fromFirmwareEncoding(typeId);
+    }
+
+    /**
+     * Returns the number of fields of the last parsed message.
+     *
+     * @return number of fields
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the unescaped value of the specified field. The returned {@link CharSequence} is reused and only valid
+     * until the next message gets parsed; call {@link CharSequence#toString()} if the value needs to be retained.
+     *
+     * @param index index of field to return
+     * @return field value, only valid until the next message gets parsed
+     */
+    public CharSequence getField(int index) {
+        checkFieldIndex(index);
+
+        FieldView view = fieldViews[index];
+        if (view == null) {
+            view = new FieldView(index);
+            fieldViews[index] = view;
+        }
+
+        return view;
+    }
+
+    /**
+     * Parses the specified field as an unsigned decimal integer without allocating any objects.
+     *
+     * @param index index of field to parse
+     * @return parsed value; -1 if the field does not hold an unsigned integer
+     */
+    public int getUnsignedIntField(int index) {
+        checkFieldIndex(index);
+
+        int offset = fieldOffsets[index];
+        return Numbers.tryParseUnsignedInt(wrappedBuffer, offset, offset + fieldLengths[index]);
+    }
+
+    /**
+     * Checks if the specified field's unescaped value equals the given {@link CharSequence}.
+     *
+     * @param index index of field to compare
+     * @param other value to compare to
+     * @return {@code true} if the field holds exactly the same characters, {@code false} if not
+     */
+    public boolean fieldEquals(int index, CharSequence other) {
+        checkFieldIndex(index);
+
+        int length = fieldLengths[index];
+        if (other.length() != length) {
+            return false;
+        }
+
+        int offset = fieldOffsets[index];
+        for (int i = 0; i < length; i++) {
+            if (buffer[offset + i] != other.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Materializes the last parsed message to a generic {@link CommandMessage}. Contrary to the view, the returned
+     * message can be retained. No specialized decoding is applied.
+     *
+     * @return generic {@link CommandMessage} holding a copy of the last parsed message
+     */
+    public CommandMessage toCommandMessage() {
+        List<String> fields = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            fields.add(new String(buffer, fieldOffsets[i], fieldLengths[i]));
+        }
+
+        return new CommandMessage(typeId, fields);
+    }
+
+    private void checkFieldIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("field index " + index + " out of range, message has " + fieldCount + " fields");
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (typeId < 0) {
+            return "CommandMessageView(empty)";
+        }
+
+        return "CommandMessageView(" + toCommandMessage() + ")";
+    }
+
+    private class FieldView implements CharSequence {
+        private final int index;
+
+        private FieldView(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return fieldLengths[index];
+        }
+
+        @Override
+        public char charAt(int i) {
+            if (i < 0 || i >= fieldLengths[index]) {
+                throw new IndexOutOfBoundsException("index " + i + " out of range for field of length " + fieldLengths[index]);
+            }
+
+            return buffer[fieldOffsets[index] + i];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, fieldOffsets[index], fieldLengths[index]);
+        }
+    }
+}
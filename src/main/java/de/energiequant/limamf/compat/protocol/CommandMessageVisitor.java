@@ -0,0 +1,46 @@
+package de.energiequant.limamf.compat.protocol;
+
+/**
+ * Receives messages decoded by a {@link FlyweightCommandMessageDecoder}.
+ * <p>
+ * All methods are called synchronously while decoding. Any {@link CharSequence} or {@link CommandMessageView} passed
+ * to a method is reused by the decoder and <strong>only valid until the method returns</strong>. Call
+ * {@link CharSequence#toString()} or {@link CommandMessageView#toCommandMessage()} if information needs to be retained.
+ * </p>
+ * <p>
+ * All methods do nothing by default, so implementations only need to override the callbacks they are interested in.
+ * </p>
+ */
+public interface CommandMessageVisitor {
+    /**
+     * Called for each decoded {@link CommandType#ENCODER_CHANGE} message.
+     *
+     * @param name  name of the encoder input producing the event; only valid until the method returns
+     * @param event encoder event, specifying direction and speed
+     * @see EncoderChangeMessage
+     */
+    default void onEncoderChange(CharSequence name, EncoderChangeMessage.Event event) {
+        // ignore by default
+    }
+
+    /**
+     * Called for each decoded {@link CommandType#DIG_IN_MUX_CHANGE} message.
+     *
+     * @param name    name of the multiplexer producing the event; only valid until the method returns
+     * @param channel channel ID of the multiplexer producing the event
+     * @param event   digital event
+     * @see DigitalInputMultiplexerChangeMessage
+     */
+    default void onDigitalInputMultiplexerChange(CharSequence name, int channel, DigitalInputMultiplexerChangeMessage.Event event) {
+        // ignore by default
+    }
+
+    /**
+     * Called for all messages which are not handled by a more specific method.
+     *
+     * @param message view of the message; only valid until the method returns
+     */
+    default void onOtherMessage(CommandMessageView message) {
+        // ignore by default
+    }
+}
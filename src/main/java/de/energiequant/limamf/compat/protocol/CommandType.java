@@ -1,7 +1,6 @@
 package de.energiequant.limamf.compat.protocol;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Optional;
 
 /**
@@ -45,23 +44,32 @@ public enum CommandType {
 
     private final int firmwareEncoding;
 
-    private static final Map<Integer, CommandType> BY_FIRMWARE_ENCODING = new HashMap<>();
+    private static final int MAX_FIRMWARE_ENCODING = 255;
+
+    // all possible encodings are resolved in advance so lookups neither need boxing nor allocate any Optional;
+    // generic arrays cannot be created directly, hence the raw array
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Optional<CommandType>[] BY_FIRMWARE_ENCODING = new Optional[MAX_FIRMWARE_ENCODING + 1];
 
     static {
+        Arrays.fill(BY_FIRMWARE_ENCODING, Optional.empty());
+
         for (CommandType type : values()) {
-            CommandType previous = BY_FIRMWARE_ENCODING.put(type.firmwareEncoding, type);
-            if (previous != null) {
+            Optional<CommandType> previous = BY_FIRMWARE_ENCODING[type.firmwareEncoding];
+            if (previous.isPresent()) {
                 throw new IllegalArgumentException(
                     "duplicate encoding " + type.firmwareEncoding
-                        + " for " + previous
+                        + " for " + previous.get()
                         + " and " + type
                 );
             }
+
+            BY_FIRMWARE_ENCODING[type.firmwareEncoding] = Optional.of(type);
         }
     }
 
     CommandType(int firmwareEncoding) {
-        if (firmwareEncoding < 0 || firmwareEncoding > 255) {
+        if (firmwareEncoding < 0 || firmwareEncoding > MAX_FIRMWARE_ENCODING) {
             throw new IllegalArgumentException("firmware encoding is supposed to be an unsigned byte, got " + firmwareEncoding);
         }
 
@@ -84,6 +92,10 @@ public enum CommandType {
      * @return corresponding {@link CommandType} enum, if known
      */
     public static Optional<CommandType> fromFirmwareEncoding(int encoding) {
-        return Optional.ofNullable(BY_FIRMWARE_ENCODING.get(encoding));
+        if (encoding < 0 || encoding > MAX_FIRMWARE_ENCODING) {
+            return Optional.empty();
+        }
+
+        return BY_FIRMWARE_ENCODING[encoding];
     }
 }
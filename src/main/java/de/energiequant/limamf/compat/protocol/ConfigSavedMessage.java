@@ -0,0 +1,57 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.List;
+
+/**
+ * Confirms that the configuration of a module has been persisted to EEPROM.
+ *
+ * @see SaveConfigMessage
+ */
+public class ConfigSavedMessage extends CommandMessage {
+    private final String value;
+
+    /**
+     * Parses the given {@link CommandMessage} to a {@link ConfigSavedMessage}.
+     *
+     * @param msg message to parse
+     */
+    public ConfigSavedMessage(CommandMessage msg) {
+        super(msg);
+
+        List<String> fields = msg.getFields();
+        if (fields.size() > 1) {
+            throw new IllegalArgumentException("Unexpected number of fields, got " + fields.size());
+        }
+
+        this.value = fields.isEmpty() ? "" : fields.get(0);
+    }
+
+    /**
+     * Checks if the message held by the given view can be decoded to a {@link ConfigSavedMessage} without causing an
+     * exception.
+     *
+     * @param view successfully parsed message to check
+     * @return {@link DecodeResult#SUCCESS} if valid, otherwise the category of error
+     */
+    static DecodeResult validate(CommandMessageView view) {
+        if (view.getFieldCount() > 1) {
+            return DecodeResult.UNEXPECTED_FIELD_COUNT;
+        }
+
+        return DecodeResult.SUCCESS;
+    }
+
+    /**
+     * Returns the raw value sent along with the confirmation ({@code OK} on current firmware versions).
+     *
+     * @return confirmation value; empty if none was sent
+     */
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigSavedMessage(\"" + value + "\")";
+    }
+}
@@ -6,6 +6,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfigurationCache;
+import de.energiequant.limamf.compat.config.devices.LazyInterfaceConfiguration;
 
 /**
  * Configuration returned from a device upon {@link GetConfigMessage}.
@@ -16,10 +18,17 @@ public class ConfigurationInfoMessage extends InfoMessage {
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationInfoMessage.class);
 
     private final String rawConfiguration;
-    private final InterfaceConfiguration configuration;
+
+    private LazyInterfaceConfiguration lazyConfiguration;
+    private boolean indexed = false;
+    private InterfaceConfiguration configuration;
+    private boolean parsed = false;
 
     /**
      * Parses the given {@link CommandMessage} to a {@link ConfigurationInfoMessage}.
+     * <p>
+     * The configuration itself is only decoded on first access, see {@link #getConfiguration()}.
+     * </p>
      *
      * @param msg message to parse
      */
@@ -32,14 +41,6 @@ public class ConfigurationInfoMessage extends InfoMessage {
         }
 
         rawConfiguration = fields.get(0);
-
-        InterfaceConfiguration parsed = null;
-        try {
-            parsed = InterfaceConfiguration.parseFirmwareFormat(rawConfiguration);
-        } catch (IllegalArgumentException ex) {
-            LOGGER.warn("failed to parse interface configuration", ex);
-        }
-        configuration = parsed;
     }
 
     /**
@@ -55,16 +56,63 @@ public class ConfigurationInfoMessage extends InfoMessage {
     }
 
     /**
-     * Returns the {@link InterfaceConfiguration} active on the module at time of reception.
+     * Returns a lazily decoded view of the configuration active on the module at time of reception, which only
+     * decodes devices as they are accessed. Indexed on first call.
      *
-     * @return {@link InterfaceConfiguration} active on module
+     * @return lazily decoded configuration; null if entry boundaries are malformed
+     */
+    public synchronized LazyInterfaceConfiguration getLazyConfiguration() {
+        if (!indexed) {
+            try {
+                lazyConfiguration = LazyInterfaceConfiguration.index(rawConfiguration);
+            } catch (IllegalArgumentException ex) {
+                LOGGER.warn("failed to index interface configuration", ex);
+            }
+            indexed = true;
+        }
+
+        return lazyConfiguration;
+    }
+
+    /**
+     * Returns the {@link InterfaceConfiguration} active on the module at time of reception. Decoded on first call
+     * through the {@link InterfaceConfigurationCache#getDefault() default cache}, so identical configurations share a
+     * single instance.
+     * <p>
+     * Configurations containing devices of unknown or unsupported types cannot be represented completely and thus are
+     * not returned; use {@link #getLazyConfiguration()} to access the supported devices of such configurations.
+     * </p>
+     *
+     * @return {@link InterfaceConfiguration} active on module; null if malformed or incomplete
      */
     public InterfaceConfiguration getConfiguration() {
+        return getConfiguration(InterfaceConfigurationCache.getDefault());
+    }
+
+    /**
+     * Returns the {@link InterfaceConfiguration} active on the module at time of reception. Decoded on first call
+     * through the given cache.
+     *
+     * @param cache cache to decode through
+     * @return {@link InterfaceConfiguration} active on module; null if malformed or incomplete
+     * @see #getConfiguration()
+     */
+    public synchronized InterfaceConfiguration getConfiguration(InterfaceConfigurationCache cache) {
+        if (!parsed) {
+            try {
+                configuration = cache.get(rawConfiguration);
+            } catch (IllegalArgumentException ex) {
+                LOGGER.warn("failed to parse interface configuration", ex);
+            }
+            parsed = true;
+        }
+
         return configuration;
     }
 
     @Override
     public String toString() {
+        InterfaceConfiguration configuration = getConfiguration();
         if (configuration != null) {
             return "ConfigurationInfoMessage(" + configuration + ")";
         } else {
@@ -0,0 +1,70 @@
+package de.energiequant.limamf.compat.protocol;
+
+/**
+ * Result of an exception-free decoding attempt.
+ *
+ * @see FlyweightCommandMessageDecoder#tryDecode(CharSequence, CommandMessageVisitor)
+ * @see CommandMessageStreamDecoder#setTolerateErrors(boolean)
+ * @see DecodeStatistics
+ */
+public enum DecodeResult {
+    /**
+     * The message has been decoded successfully.
+     */
+    SUCCESS(false),
+    /**
+     * The message was skipped as it was not of interest.
+     */
+    SKIPPED(false),
+    /**
+     * The message ended on an escape character.
+     */
+    OPEN_ESCAPE(true),
+    /**
+     * The message did not start with a type ID.
+     */
+    MISSING_TYPE(true),
+    /**
+     * The message type ID is not an unsigned integer.
+     */
+    MALFORMED_TYPE(true),
+    /**
+     * The message type ID exceeds the permitted range of an unsigned byte.
+     */
+    TYPE_OUT_OF_RANGE(true),
+    /**
+     * The number of fields does not match what is expected for the message type.
+     */
+    UNEXPECTED_FIELD_COUNT(true),
+    /**
+     * A field could not be parsed as required for the message type (e.g. not numeric).
+     */
+    MALFORMED_FIELD(true),
+    /**
+     * A field was parsed but holds a value which is not supported (e.g. an unknown event or out of range).
+     */
+    UNSUPPORTED_VALUE(true),
+    /**
+     * A specialized decoder rejected the message for other reasons.
+     */
+    MALFORMED_PAYLOAD(true),
+    /**
+     * The message exceeded the maximum permitted length and has been discarded.
+     */
+    MESSAGE_TOO_LONG(true);
+
+    private final boolean error;
+
+    DecodeResult(boolean error) {
+        this.error = error;
+    }
+
+    /**
+     * Indicates whether the result describes an error.
+     *
+     * @return {@code true} if an error occurred, {@code false} if the message has been handled as intended
+     */
+    public boolean isError() {
+        return error;
+    }
+}
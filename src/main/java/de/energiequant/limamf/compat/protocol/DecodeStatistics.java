@@ -0,0 +1,86 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts {@link DecodeResult}s, for example to monitor the health of a connection.
+ * <p>
+ * Counters are updated atomically without allocating any objects, so the same instance can be shared between
+ * multiple decoders and read from other threads.
+ * </p>
+ */
+public class DecodeStatistics {
+    private static final DecodeResult[] RESULTS = DecodeResult.values();
+
+    private final AtomicLongArray counters = new AtomicLongArray(RESULTS.length);
+
+    /**
+     * Records a single occurrence of the given result.
+     *
+     * @param result result to count
+     */
+    public void record(DecodeResult result) {
+        counters.incrementAndGet(result.ordinal());
+    }
+
+    /**
+     * Returns how often the given result has been recorded.
+     *
+     * @param result result to return count for
+     * @return number of recorded occurrences
+     */
+    public long getCount(DecodeResult result) {
+        return counters.get(result.ordinal());
+    }
+
+    /**
+     * Returns the total number of recorded errors, summed over all categories.
+     *
+     * @return total number of errors
+     * @see DecodeResult#isError()
+     */
+    public long getErrorCount() {
+        long sum = 0;
+        for (DecodeResult result : RESULTS) {
+            if (result.isError()) {
+                sum += counters.get(result.ordinal());
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        for (int i = 0; i < RESULTS.length; i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DecodeStatistics(");
+
+        boolean first = true;
+        for (DecodeResult result : RESULTS) {
+            long count = counters.get(result.ordinal());
+            if (count == 0) {
+                continue;
+            }
+
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+
+            sb.append(result);
+            sb.append("=");
+            sb.append(count);
+        }
+
+        sb.append(")");
+
+        return sb.toString();
+    }
+}
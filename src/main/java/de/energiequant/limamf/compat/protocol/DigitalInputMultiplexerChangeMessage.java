@@ -35,6 +35,8 @@ public class DigitalInputMultiplexerChangeMessage extends CommandMessage {
         private final int encoding;
         private final boolean state;
 
+        private static final Event[] BY_ENCODING = indexByEncoding();
+
         Event(int encoding, boolean state) {
             this.encoding = encoding;
             this.state = state;
@@ -49,18 +51,45 @@ public class DigitalInputMultiplexerChangeMessage extends CommandMessage {
             return state;
         }
 
+        private static Event[] indexByEncoding() {
+            int maxEncoding = 0;
+            for (Event event : values()) {
+                maxEncoding = Math.max(maxEncoding, event.encoding);
+            }
+
+            Event[] out = new Event[maxEncoding + 1];
+            for (Event event : values()) {
+                out[event.encoding] = event;
+            }
+
+            return out;
+        }
+
         private static Event decode(String encoding) {
             return decode(Integer.parseInt(encoding));
         }
 
-        private static Event decode(int encoding) {
-            for (Event event : values()) {
-                if (event.encoding == encoding) {
-                    return event;
-                }
+        static Event decode(int encoding) {
+            Event event = fromEncoding(encoding);
+            if (event == null) {
+                throw new IllegalArgumentException("Unsupported encoding: " + encoding);
             }
 
-            throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+            return event;
+        }
+
+        /**
+         * Resolves the given encoding without throwing an exception.
+         *
+         * @param encoding encoding to resolve
+         * @return resolved event; null if unsupported
+         */
+        static Event fromEncoding(int encoding) {
+            if (encoding < 0 || encoding >= BY_ENCODING.length) {
+                return null;
+            }
+
+            return BY_ENCODING[encoding];
         }
     }
 
@@ -82,6 +111,30 @@ public class DigitalInputMultiplexerChangeMessage extends CommandMessage {
         this.event = Event.decode(fields.get(2));
     }
 
+    /**
+     * Checks if the message held by the given view can be decoded to a {@link DigitalInputMultiplexerChangeMessage} without causing an
+     * exception.
+     *
+     * @param view successfully parsed message to check
+     * @return {@link DecodeResult#SUCCESS} if valid, otherwise the category of error
+     */
+    static DecodeResult validate(CommandMessageView view) {
+        if (view.getFieldCount() != 3) {
+            return DecodeResult.UNEXPECTED_FIELD_COUNT;
+        }
+
+        int channel = view.getUnsignedIntField(1);
+        int encodedEvent = view.getUnsignedIntField(2);
+        if (channel < 0 || encodedEvent < 0) {
+            return DecodeResult.MALFORMED_FIELD;
+        }
+        if (channel > 255 || Event.fromEncoding(encodedEvent) == null) {
+            return DecodeResult.UNSUPPORTED_VALUE;
+        }
+
+        return DecodeResult.SUCCESS;
+    }
+
     /**
      * Returns the name of the multiplexer producing the event.
      *
@@ -31,6 +31,8 @@ public class EncoderChangeMessage extends CommandMessage {
         private final boolean clockwise;
         private final boolean fast;
 
+        private static final Event[] BY_ENCODING = indexByEncoding();
+
         Event(int encoding, boolean clockwise, boolean fast) {
             this.encoding = encoding;
             this.clockwise = clockwise;
@@ -55,18 +57,45 @@ public class EncoderChangeMessage extends CommandMessage {
             return fast;
         }
 
+        private static Event[] indexByEncoding() {
+            int maxEncoding = 0;
+            for (Event event : values()) {
+                maxEncoding = Math.max(maxEncoding, event.encoding);
+            }
+
+            Event[] out = new Event[maxEncoding + 1];
+            for (Event event : values()) {
+                out[event.encoding] = event;
+            }
+
+            return out;
+        }
+
         private static Event decode(String encoding) {
             return decode(Integer.parseInt(encoding));
         }
 
-        private static Event decode(int encoding) {
-            for (Event event : values()) {
-                if (event.encoding == encoding) {
-                    return event;
-                }
+        static Event decode(int encoding) {
+            Event event = fromEncoding(encoding);
+            if (event == null) {
+                throw new IllegalArgumentException("Unsupported encoding: " + encoding);
             }
 
-            throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+            return event;
+        }
+
+        /**
+         * Resolves the given encoding without throwing an exception.
+         *
+         * @param encoding encoding to resolve
+         * @return resolved event; null if unsupported
+         */
+        static Event fromEncoding(int encoding) {
+            if (encoding < 0 || encoding >= BY_ENCODING.length) {
+                return null;
+            }
+
+            return BY_ENCODING[encoding];
         }
     }
 
@@ -90,6 +119,29 @@ public class EncoderChangeMessage extends CommandMessage {
         this.event = Event.decode(fields.get(1));
     }
 
+    /**
+     * Checks if the message held by the given view can be decoded to a {@link EncoderChangeMessage} without causing an
+     * exception.
+     *
+     * @param view successfully parsed message to check
+     * @return {@link DecodeResult#SUCCESS} if valid, otherwise the category of error
+     */
+    static DecodeResult validate(CommandMessageView view) {
+        if (view.getFieldCount() != 2) {
+            return DecodeResult.UNEXPECTED_FIELD_COUNT;
+        }
+
+        int encodedEvent = view.getUnsignedIntField(1);
+        if (encodedEvent < 0) {
+            return DecodeResult.MALFORMED_FIELD;
+        }
+        if (Event.fromEncoding(encodedEvent) == null) {
+            return DecodeResult.UNSUPPORTED_VALUE;
+        }
+
+        return DecodeResult.SUCCESS;
+    }
+
     /**
      * Returns the name of the encoder input producing the event.
      *
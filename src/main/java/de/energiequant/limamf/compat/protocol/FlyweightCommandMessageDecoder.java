@@ -0,0 +1,101 @@
+package de.energiequant.limamf.compat.protocol;
+
+/**
+ * Decodes raw protocol messages without allocating any objects in steady state and dispatches them to a
+ * {@link CommandMessageVisitor}.
+ * <p>
+ * This is an alternative to {@link CommandMessageDecoder} for hot paths such as input handling: Instead of
+ * instantiating a {@link CommandMessage} per message, each message is parsed into a reused {@link CommandMessageView}
+ * and supported messages are passed to the visitor as plain values.
+ * </p>
+ * <p>
+ * Malformed input can either be rejected by exceptions ({@link #decode(CharSequence, CommandMessageVisitor)}) or be
+ * reported as a {@link DecodeResult} ({@link #tryDecode(CharSequence, CommandMessageVisitor)}). The latter neither
+ * throws nor allocates anything, which is preferable on noisy connections.
+ * </p>
+ * <p>
+ * Instances hold mutable state and thus are not thread-safe. Use one instance per thread/stream.
+ * </p>
+ */
+public class FlyweightCommandMessageDecoder {
+    private static final int TYPE_ID_ENCODER_CHANGE = CommandType.ENCODER_CHANGE.getFirmwareEncoding();
+    private static final int TYPE_ID_DIG_IN_MUX_CHANGE = CommandType.DIG_IN_MUX_CHANGE.getFirmwareEncoding();
+    private static final int TYPE_ID_INFO = CommandType.INFO.getFirmwareEncoding();
+
+    private final CommandMessageView view = new CommandMessageView();
+
+    /**
+     * Decodes a single raw protocol message (without command separator) and dispatches it to the given visitor.
+     *
+     * @param s       raw protocol message to decode
+     * @param visitor receives the decoded message
+     * @throws IllegalArgumentException if the message is malformed
+     * @see #tryDecode(CharSequence, CommandMessageVisitor)
+     */
+    public void decode(CharSequence s, CommandMessageVisitor visitor) {
+        view.parse(s);
+
+        DecodeResult result = validatePayload(view);
+        if (result != DecodeResult.SUCCESS) {
+            throw new IllegalArgumentException("Failed to decode command message (" + result + "): \"" + s + "\"");
+        }
+
+        dispatch(visitor);
+    }
+
+    /**
+     * Decodes a single raw protocol message (without command separator) and dispatches it to the given visitor.
+     * Malformed messages are not dispatched; instead of throwing an exception the category of error is returned.
+     *
+     * @param s       raw protocol message to decode
+     * @param visitor receives the decoded message
+     * @return {@link DecodeResult#SUCCESS} if the message was dispatched, otherwise the category of error
+     */
+    public DecodeResult tryDecode(CharSequence s, CommandMessageVisitor visitor) {
+        DecodeResult result = view.tryParse(s);
+        if (result != DecodeResult.SUCCESS) {
+            return result;
+        }
+
+        result = validatePayload(view);
+        if (result != DecodeResult.SUCCESS) {
+            return result;
+        }
+
+        dispatch(visitor);
+
+        return DecodeResult.SUCCESS;
+    }
+
+    private void dispatch(CommandMessageVisitor visitor) {
+        int typeId = view.getTypeId();
+        if (typeId == TYPE_ID_ENCODER_CHANGE) {
+            visitor.onEncoderChange(
+                view.getField(0),
+                EncoderChangeMessage.Event.fromEncoding(view.getUnsignedIntField(1))
+            );
+        } else if (typeId == TYPE_ID_DIG_IN_MUX_CHANGE) {
+            visitor.onDigitalInputMultiplexerChange(
+                view.getField(0),
+                view.getUnsignedIntField(1),
+                DigitalInputMultiplexerChangeMessage.Event.fromEncoding(view.getUnsignedIntField(2))
+            );
+        } else {
+            visitor.onOtherMessage(view);
+        }
+    }
+
+    private static DecodeResult validatePayload(CommandMessageView view) {
+        // dispatched events need to be valid regardless of any registered decoders
+        int typeId = view.getTypeId();
+        if (typeId == TYPE_ID_ENCODER_CHANGE) {
+            return EncoderChangeMessage.validate(view);
+        } else if (typeId == TYPE_ID_DIG_IN_MUX_CHANGE) {
+            return DigitalInputMultiplexerChangeMessage.validate(view);
+        } else if (typeId == TYPE_ID_INFO) {
+            return InfoMessage.validate(view);
+        }
+
+        return DecodeResult.SUCCESS;
+    }
+}
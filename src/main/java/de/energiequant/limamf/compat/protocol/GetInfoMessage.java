@@ -15,6 +15,11 @@ public class GetInfoMessage extends CommandMessage {
         "2.5.1"
     ));
 
+    private static final GetInfoMessage INSTANCE = new GetInfoMessage();
+
+    // the message does not hold any parameters, so all instances share the same encoding
+    private static final byte[] ENCODED = INSTANCE.encode();
+
     /**
      * Creates a new message requesting device identification.
      *
@@ -24,6 +29,22 @@ public class GetInfoMessage extends CommandMessage {
         super(CommandType.GET_INFO, Collections.emptyList());
     }
 
+    /**
+     * Returns a shared instance which has already been encoded for transmission, so it can be written repeatedly
+     * without any formatting or allocation. As the message does not hold any parameters, it is equivalent to creating
+     * a new instance.
+     *
+     * @return shared instance
+     */
+    public static GetInfoMessage getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    byte[] getPreEncoded() {
+        return ENCODED;
+    }
+
     @Override
     public boolean isCriticalOperation() {
         return false;
@@ -37,4 +37,28 @@ public abstract class InfoMessage extends CommandMessage {
             return new ConfigurationInfoMessage(msg);
         }
     }
+
+    /**
+     * Checks if the message held by the given view can be decoded by {@link #decode(CommandMessage)} without causing
+     * an exception.
+     *
+     * @param view successfully parsed message to check
+     * @return {@link DecodeResult#SUCCESS} if valid, otherwise the category of error
+     */
+    static DecodeResult validate(CommandMessageView view) {
+        int numFields = view.getFieldCount();
+        if (numFields == 0) {
+            return DecodeResult.UNEXPECTED_FIELD_COUNT;
+        }
+
+        // same heuristic as decode
+        CharSequence firstField = view.getField(0);
+        boolean isIdentification = (firstField.length() > 0) && !Character.isDigit(firstField.charAt(0));
+        int expectedFields = isIdentification ? 5 : 1;
+        if (numFields != expectedFields) {
+            return DecodeResult.UNEXPECTED_FIELD_COUNT;
+        }
+
+        return DecodeResult.SUCCESS;
+    }
 }
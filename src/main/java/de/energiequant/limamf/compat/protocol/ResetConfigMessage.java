@@ -0,0 +1,53 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.Collections;
+
+/**
+ * Clears the configuration buffer of a module (acknowledged by a {@link StatusMessage}), so a new configuration can
+ * be uploaded using {@link SetConfigMessage}s.
+ */
+public class ResetConfigMessage extends CommandMessage {
+    private static final ResetConfigMessage INSTANCE = new ResetConfigMessage();
+
+    // the message does not hold any parameters, so all instances share the same encoding
+    private static final byte[] ENCODED = INSTANCE.encode();
+
+    /**
+     * Creates a new message clearing the configuration buffer of a module.
+     */
+    public ResetConfigMessage() {
+        super(CommandType.RESET_CONFIG, Collections.emptyList());
+    }
+
+    /**
+     * Returns a shared instance which has already been encoded for transmission, so it can be written repeatedly
+     * without any formatting or allocation. As the message does not hold any parameters, it is equivalent to creating
+     * a new instance.
+     *
+     * @return shared instance
+     */
+    public static ResetConfigMessage getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    byte[] getPreEncoded() {
+        return ENCODED;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // configuration held by the module is lost unless uploaded again
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "ResetConfigMessage()";
+    }
+}
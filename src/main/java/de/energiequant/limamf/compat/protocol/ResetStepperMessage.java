@@ -0,0 +1,121 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.Collections;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.StepperConfiguration;
+
+/**
+ * Moves a stepper motor ({@link StepperConfiguration}) back to its zero position by homing, if supported by the hardware.
+ */
+public class ResetStepperMessage extends CommandMessage {
+    private final int stepperIndex;
+
+    private ResetStepperMessage(int stepperIndex) {
+        super(CommandType.RESET_STEPPER, Collections.singletonList(Integer.toString(stepperIndex)));
+
+        this.stepperIndex = stepperIndex;
+    }
+
+    /**
+     * Returns the index of the manipulated stepper among all {@link StepperConfiguration}s of the module.
+     *
+     * @return index of stepper
+     */
+    public int getStepperIndex() {
+        return stepperIndex;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        return stepperIndex;
+    }
+
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.STEPPER;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        // triggers homing which must not be skipped
+        return false;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // command physically moves a motor
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "ResetStepperMessage(stepper=" + stepperIndex + ")";
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link ResetStepperMessage}s.
+     *
+     * @return {@link Builder} for {@link ResetStepperMessage}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder creating {@link ResetStepperMessage}s.
+     */
+    public static class Builder {
+        private Integer stepperIndex;
+
+        /**
+         * Sets the index of the stepper to manipulate among all {@link StepperConfiguration}s of the module. Consider
+         * using {@link #manipulating(InterfaceConfiguration, StepperConfiguration)} instead to avoid mistakes.
+         *
+         * @param stepperIndex index of stepper
+         * @return same instance for method-chaining
+         */
+        public Builder manipulatingStepper(int stepperIndex) {
+            this.stepperIndex = requireUint8(stepperIndex);
+            return this;
+        }
+
+        /**
+         * Sets the stepper to manipulate.
+         *
+         * @param interfaceConfiguration configuration of the module holding the stepper
+         * @param stepper                stepper to manipulate
+         * @return same instance for method-chaining
+         * @throws IllegalArgumentException if the stepper is not part of the module configuration
+         */
+        public Builder manipulating(InterfaceConfiguration interfaceConfiguration, StepperConfiguration stepper) {
+            return manipulatingStepper(interfaceConfiguration.getIndexWithinType(stepper));
+        }
+
+        /**
+         * Builds the {@link ResetStepperMessage}.
+         *
+         * @return {@link ResetStepperMessage}
+         */
+        public ResetStepperMessage build() {
+            if (stepperIndex == null) {
+                throw new IllegalArgumentException("stepper must be defined");
+            }
+
+            return new ResetStepperMessage(stepperIndex);
+        }
+    }
+}
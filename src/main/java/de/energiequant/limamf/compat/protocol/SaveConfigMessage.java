@@ -0,0 +1,56 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.Collections;
+
+/**
+ * Persists the configuration buffer of a module to its EEPROM (replied to with {@link ConfigSavedMessage}).
+ *
+ * @see SetConfigMessage
+ */
+public class SaveConfigMessage extends CommandMessage {
+    private static final SaveConfigMessage INSTANCE = new SaveConfigMessage();
+
+    // the message does not hold any parameters, so all instances share the same encoding
+    private static final byte[] ENCODED = INSTANCE.encode();
+
+    /**
+     * Creates a new message persisting the configuration buffer of a module.
+     *
+     * @see ConfigSavedMessage
+     */
+    public SaveConfigMessage() {
+        super(CommandType.SAVE_CONFIG, Collections.emptyList());
+    }
+
+    /**
+     * Returns a shared instance which has already been encoded for transmission, so it can be written repeatedly
+     * without any formatting or allocation. As the message does not hold any parameters, it is equivalent to creating
+     * a new instance.
+     *
+     * @return shared instance
+     */
+    public static SaveConfigMessage getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    byte[] getPreEncoded() {
+        return ENCODED;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // overwrites the configuration persisted on the module
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SaveConfigMessage()";
+    }
+}
@@ -0,0 +1,147 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+
+/**
+ * Appends a chunk of an encoded {@link InterfaceConfiguration} to the configuration buffer of a module.
+ * <p>
+ * MobiFlight firmware simply concatenates all received chunks; the configuration only takes effect after it has been
+ * saved ({@link SaveConfigMessage}) and activated ({@link ActivateConfigMessage}). Each chunk is acknowledged by the
+ * module with a {@link StatusMessage} holding the total length of the buffered configuration, or -1 if the chunk did
+ * not fit into memory. The buffer should be cleared by a {@link ResetConfigMessage} before uploading a new
+ * configuration.
+ * </p>
+ * <p>
+ * Since MobiFlight firmware only accepts messages up to a limited length, a full configuration usually needs to be
+ * split into multiple messages using {@link #split(String, int)}.
+ * </p>
+ */
+public class SetConfigMessage extends CommandMessage {
+    /**
+     * Default maximum length of an encoded message (including command separator), see {@link #split(String, int)}.
+     * Chosen to fit the 96 character command buffer of MobiFlight firmware, leaving one character for string
+     * termination.
+     */
+    public static final int DEFAULT_MAXIMUM_ENCODED_LENGTH = SetShiftRegisterPinsMessage.DEFAULT_MAXIMUM_ENCODED_LENGTH;
+
+    private static final char DEVICE_TERMINATOR = ':';
+
+    // type ID, field separator and command separator
+    private static final int ENCODING_OVERHEAD = Integer.toString(CommandType.SET_CONFIG.getFirmwareEncoding()).length() + 2;
+
+    private final String chunk;
+
+    /**
+     * Creates a new message appending the given chunk to the configuration buffer of a module.
+     *
+     * @param chunk part of the protocol encoding used by MobiFlight firmware, see
+     *              {@link InterfaceConfiguration#toFirmwareFormat()}
+     */
+    public SetConfigMessage(String chunk) {
+        super(CommandType.SET_CONFIG, Collections.singletonList(chunk));
+
+        this.chunk = chunk;
+    }
+
+    /**
+     * Returns the chunk of encoded configuration to append.
+     *
+     * @return configuration chunk
+     */
+    public String getChunk() {
+        return chunk;
+    }
+
+    /**
+     * Splits the given configuration into as few messages as possible, using the
+     * {@link #DEFAULT_MAXIMUM_ENCODED_LENGTH}.
+     *
+     * @param firmwareFormat full configuration in protocol encoding used by MobiFlight firmware
+     * @return messages to be sent in order
+     * @see #split(String, int)
+     */
+    public static List<SetConfigMessage> split(String firmwareFormat) {
+        return split(firmwareFormat, DEFAULT_MAXIMUM_ENCODED_LENGTH);
+    }
+
+    /**
+     * Splits the given configuration into as few messages as possible, none of them exceeding the given encoded length
+     * (including command separator).
+     * <p>
+     * Chunks end on device boundaries whenever possible. Only devices whose encoding exceeds a message on its own are
+     * split within their entry, which the firmware is able to handle as chunks are concatenated as-is.
+     * </p>
+     *
+     * @param firmwareFormat       full configuration in protocol encoding used by MobiFlight firmware
+     * @param maximumEncodedLength maximum length of each message
+     * @return messages to be sent in order
+     */
+    public static List<SetConfigMessage> split(String firmwareFormat, int maximumEncodedLength) {
+        // escaped characters take 2 bytes, so at least that much needs to fit beside the overhead
+        int maximumChunkLength = maximumEncodedLength - ENCODING_OVERHEAD;
+        if (maximumChunkLength < 2) {
+            throw new IllegalArgumentException("maximum encoded length " + maximumEncodedLength + " is too short to transport any configuration");
+        }
+
+        List<SetConfigMessage> out = new ArrayList<>();
+
+        int length = firmwareFormat.length();
+        int chunkStart = 0;
+        int chunkEncodedLength = 0;
+        int lastDeviceEnd = -1;
+
+        for (int i = 0; i < length; i++) {
+            char ch = firmwareFormat.charAt(i);
+            int charEncodedLength = isEscapable(ch) ? 2 : 1;
+
+            if (chunkEncodedLength + charEncodedLength > maximumChunkLength) {
+                // prefer to cut after the last complete device, otherwise directly before the current character
+                int chunkEnd = (lastDeviceEnd > chunkStart) ? lastDeviceEnd : i;
+                out.add(new SetConfigMessage(firmwareFormat.substring(chunkStart, chunkEnd)));
+
+                chunkStart = chunkEnd;
+                chunkEncodedLength = encodedLength(firmwareFormat, chunkStart, i);
+            }
+
+            chunkEncodedLength += charEncodedLength;
+
+            if (ch == DEVICE_TERMINATOR) {
+                lastDeviceEnd = i + 1;
+            }
+        }
+
+        if (chunkStart < length) {
+            out.add(new SetConfigMessage(firmwareFormat.substring(chunkStart)));
+        }
+
+        return out;
+    }
+
+    private static int encodedLength(String s, int start, int end) {
+        int encodedLength = 0;
+        for (int i = start; i < end; i++) {
+            encodedLength += isEscapable(s.charAt(i)) ? 2 : 1;
+        }
+        return encodedLength;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // only fills a buffer but may overwrite configuration persisted on the module if followed by SAVE_CONFIG
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SetConfigMessage(\"" + chunk + "\")";
+    }
+}
@@ -0,0 +1,163 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.LcdDisplayConfiguration;
+
+/**
+ * Writes text to a character LCD connected via I2C ({@link LcdDisplayConfiguration}).
+ * <p>
+ * MobiFlight firmware always rewrites the full screen: the text is split into lines of
+ * {@link LcdDisplayConfiguration#getColumns()} characters each, so it should contain exactly
+ * <code>columns * lines</code> characters (padded with spaces) to avoid garbage being displayed.
+ * </p>
+ */
+public class SetLcdDisplayI2CMessage extends CommandMessage {
+    private final int displayIndex;
+    private final String text;
+
+    private SetLcdDisplayI2CMessage(int displayIndex, String text) {
+        super(CommandType.SET_LCD_DISPLAY_I2C, encodeFields(displayIndex, text));
+
+        this.displayIndex = displayIndex;
+        this.text = text;
+    }
+
+    private static List<String> encodeFields(int displayIndex, String text) {
+        List<String> fields = new ArrayList<>();
+
+        fields.add(Integer.toString(displayIndex));
+        fields.add(text);
+
+        return fields;
+    }
+
+    /**
+     * Returns the index of the manipulated display among all {@link LcdDisplayConfiguration}s of the module.
+     *
+     * @return index of LCD
+     */
+    public int getDisplayIndex() {
+        return displayIndex;
+    }
+
+    /**
+     * Returns the text to be written, all lines concatenated.
+     *
+     * @return text to write
+     */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        // each message rewrites the full screen, so later messages fully supersede earlier ones
+        return displayIndex;
+    }
+
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.LCD_DISPLAY_I2C;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        return true;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // only changes what is being displayed, but electrical state of outputs is altered nevertheless
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SetLcdDisplayI2CMessage(display=" + displayIndex + ", text=\"" + text + "\")";
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link SetLcdDisplayI2CMessage}s.
+     *
+     * @return {@link Builder} for {@link SetLcdDisplayI2CMessage}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder creating {@link SetLcdDisplayI2CMessage}s.
+     */
+    public static class Builder {
+        private Integer displayIndex;
+        private String text;
+
+        /**
+         * Sets the index of the LCD to manipulate among all {@link LcdDisplayConfiguration}s of the module. Consider
+         * using {@link #manipulating(InterfaceConfiguration, LcdDisplayConfiguration)} instead to avoid mistakes.
+         *
+         * @param displayIndex index of LCD
+         * @return same instance for method-chaining
+         */
+        public Builder manipulatingDisplay(int displayIndex) {
+            this.displayIndex = requireUint8(displayIndex);
+            return this;
+        }
+
+        /**
+         * Sets the LCD to manipulate.
+         *
+         * @param interfaceConfiguration configuration of the module holding the display
+         * @param display                LCD to manipulate
+         * @return same instance for method-chaining
+         * @throws IllegalArgumentException if the display is not part of the module configuration
+         */
+        public Builder manipulating(InterfaceConfiguration interfaceConfiguration, LcdDisplayConfiguration display) {
+            return manipulatingDisplay(interfaceConfiguration.getIndexWithinType(display));
+        }
+
+        /**
+         * Sets the text to write, all lines concatenated.
+         *
+         * @param text text to write
+         * @return same instance for method-chaining
+         */
+        public Builder showing(String text) {
+            this.text = text;
+            return this;
+        }
+
+        /**
+         * Builds the {@link SetLcdDisplayI2CMessage}.
+         *
+         * @return {@link SetLcdDisplayI2CMessage}
+         */
+        public SetLcdDisplayI2CMessage build() {
+            if (displayIndex == null) {
+                throw new IllegalArgumentException("display must be defined");
+            }
+
+            if (text == null) {
+                throw new IllegalArgumentException("text must be defined");
+            }
+
+            return new SetLcdDisplayI2CMessage(displayIndex, text);
+        }
+    }
+}
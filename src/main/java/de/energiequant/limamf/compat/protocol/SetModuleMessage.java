@@ -0,0 +1,254 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.energiequant.limamf.compat.config.connector.LedModuleDisplay;
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.LedSegmentConfiguration;
+
+/**
+ * Sets selected digits of an LED 7-segment display sub-module ({@link LedSegmentConfiguration}).
+ * <p>
+ * Digits are selected by a bit mask where bit 0 represents digit position 0 (the right-most digit). The value holds
+ * exactly one character for each selected digit, ordered from the highest selected position to the lowest (i.e. as read
+ * from left to right). Unselected digits are left unchanged by the firmware, so partial updates are possible.
+ * Decimal points are set by another bit mask using the same positions, only affecting selected digits.
+ * </p>
+ */
+public class SetModuleMessage extends CommandMessage {
+    private static final int ALL_DIGITS_MASK = (1 << LedSegmentConfiguration.MAX_DIGITS_PER_SUB_MODULE) - 1;
+
+    private final int moduleIndex;
+    private final int subModuleIndex;
+    private final String value;
+    private final int decimalPointMask;
+    private final int digitMask;
+
+    private SetModuleMessage(int moduleIndex, int subModuleIndex, String value, int decimalPointMask, int digitMask) {
+        super(CommandType.SET_MODULE, encodeFields(moduleIndex, subModuleIndex, value, decimalPointMask, digitMask));
+
+        this.moduleIndex = moduleIndex;
+        this.subModuleIndex = subModuleIndex;
+        this.value = value;
+        this.decimalPointMask = decimalPointMask;
+        this.digitMask = digitMask;
+    }
+
+    private static List<String> encodeFields(int moduleIndex, int subModuleIndex, String value, int decimalPointMask, int digitMask) {
+        List<String> fields = new ArrayList<>();
+
+        fields.add(Integer.toString(moduleIndex));
+        fields.add(Integer.toString(subModuleIndex));
+        fields.add(value);
+        fields.add(Integer.toString(decimalPointMask));
+        fields.add(Integer.toString(digitMask));
+
+        return fields;
+    }
+
+    /**
+     * Returns the index of the manipulated display among all {@link LedSegmentConfiguration}s of the module.
+     *
+     * @return index of LED segment display
+     */
+    public int getModuleIndex() {
+        return moduleIndex;
+    }
+
+    /**
+     * Returns the 0-based index of the manipulated sub-module.
+     *
+     * @return index of sub-module
+     */
+    public int getSubModuleIndex() {
+        return subModuleIndex;
+    }
+
+    /**
+     * Returns the characters to be shown on all selected digits, ordered from highest to lowest position.
+     *
+     * @return characters to show
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the bit mask of selected digits whose decimal point should be lit.
+     *
+     * @return decimal point bit mask
+     */
+    public int getDecimalPointMask() {
+        return decimalPointMask;
+    }
+
+    /**
+     * Returns the bit mask of digits to be set.
+     *
+     * @return digit bit mask
+     */
+    public int getDigitMask() {
+        return digitMask;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        return moduleIndex;
+    }
+
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.LED_SEGMENT_MULTI;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        // only updates some digits of a single sub-module, so other messages for the same module are still needed
+        return false;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // only changes what is being displayed, but electrical state of outputs is altered nevertheless
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SetModuleMessage(module=" + moduleIndex
+            + ", subModule=" + subModuleIndex
+            + ", value=\"" + value
+            + "\", points=" + Integer.toBinaryString(decimalPointMask)
+            + ", mask=" + Integer.toBinaryString(digitMask)
+            + ")";
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link SetModuleMessage}s.
+     *
+     * @return {@link Builder} for {@link SetModuleMessage}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder creating {@link SetModuleMessage}s.
+     */
+    public static class Builder {
+        private Integer moduleIndex;
+        private Integer subModuleIndex;
+        private String value;
+        private int digitMask;
+        private int decimalPointMask = 0;
+
+        /**
+         * Sets the index of the LED segment display to manipulate among all {@link LedSegmentConfiguration}s of the
+         * module. Consider using {@link #manipulating(InterfaceConfiguration, LedSegmentConfiguration)} instead to
+         * avoid mistakes.
+         *
+         * @param moduleIndex index of LED segment display
+         * @return same instance for method-chaining
+         */
+        public Builder manipulatingModule(int moduleIndex) {
+            this.moduleIndex = requireUint8(moduleIndex);
+            return this;
+        }
+
+        /**
+         * Sets the LED segment display to manipulate.
+         *
+         * @param interfaceConfiguration configuration of the module holding the display
+         * @param display                LED segment display to manipulate
+         * @return same instance for method-chaining
+         * @throws IllegalArgumentException if the display is not part of the module configuration
+         */
+        public Builder manipulating(InterfaceConfiguration interfaceConfiguration, LedSegmentConfiguration display) {
+            return manipulatingModule(interfaceConfiguration.getIndexWithinType(display));
+        }
+
+        /**
+         * Sets the 0-based index of the sub-module to manipulate.
+         *
+         * @param subModuleIndex index of sub-module
+         * @return same instance for method-chaining
+         * @see LedModuleDisplay#getSubModuleIndex()
+         */
+        public Builder onSubModule(int subModuleIndex) {
+            this.subModuleIndex = requireUint8(subModuleIndex);
+            return this;
+        }
+
+        /**
+         * Sets the characters to show on the selected digits.
+         *
+         * @param value     one character per selected digit, ordered from highest to lowest position
+         * @param digitMask bit mask of digits to set
+         * @return same instance for method-chaining
+         */
+        public Builder showing(String value, int digitMask) {
+            if ((digitMask & ~ALL_DIGITS_MASK) != 0) {
+                throw new IllegalArgumentException("digit mask exceeds " + LedSegmentConfiguration.MAX_DIGITS_PER_SUB_MODULE + " digits: " + Integer.toBinaryString(digitMask));
+            }
+
+            if (value.length() != Integer.bitCount(digitMask)) {
+                throw new IllegalArgumentException("value \"" + value + "\" does not match " + Integer.bitCount(digitMask) + " selected digits");
+            }
+
+            this.value = value;
+            this.digitMask = digitMask;
+
+            return this;
+        }
+
+        /**
+         * Sets the decimal points to light on selected digits. Defaults to none.
+         *
+         * @param decimalPointMask bit mask of decimal points to light
+         * @return same instance for method-chaining
+         */
+        public Builder withDecimalPoints(int decimalPointMask) {
+            if ((decimalPointMask & ~ALL_DIGITS_MASK) != 0) {
+                throw new IllegalArgumentException("decimal point mask exceeds " + LedSegmentConfiguration.MAX_DIGITS_PER_SUB_MODULE + " digits: " + Integer.toBinaryString(decimalPointMask));
+            }
+
+            this.decimalPointMask = decimalPointMask;
+            return this;
+        }
+
+        /**
+         * Builds the {@link SetModuleMessage}.
+         *
+         * @return {@link SetModuleMessage}
+         */
+        public SetModuleMessage build() {
+            if (moduleIndex == null) {
+                throw new IllegalArgumentException("module must be defined");
+            }
+
+            if (subModuleIndex == null) {
+                throw new IllegalArgumentException("sub-module must be defined");
+            }
+
+            if (value == null) {
+                throw new IllegalArgumentException("value must be defined");
+            }
+
+            return new SetModuleMessage(moduleIndex, subModuleIndex, value, decimalPointMask & digitMask, digitMask);
+        }
+    }
+}
@@ -8,9 +8,11 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import de.energiequant.limamf.compat.config.connector.OutputDisplay;
 import de.energiequant.limamf.compat.config.devices.DeviceConfiguration;
+import de.energiequant.limamf.compat.config.devices.DeviceType;
 import de.energiequant.limamf.compat.config.devices.OutputConfiguration;
 import de.energiequant.limamf.compat.utils.Numbers;
 
@@ -18,23 +20,48 @@ import de.energiequant.limamf.compat.utils.Numbers;
  * Changes the state of a physical output pin. {@link #STATE_DIGITAL_ON} and {@link #STATE_DIGITAL_OFF} trigger
  * a digital (constant) on/off state while any other value causes PWM to be used. Negative values are technically
  * possible but may yield unwanted results, value range should probably be restricted to 0..255.
+ * <p>
+ * Messages are immutable; all messages with a state in unsigned 8-bit range are cached and shared, already encoded
+ * for transmission. {@link #of(int, int)} returns such messages directly, so repeatedly obtaining and writing them does
+ * not cause any formatting or allocation after their first use. {@link Builder}s provide the same shared instances but
+ * require allocating the builder itself.
+ * </p>
  */
 public class SetPinMessage extends CommandMessage {
     private static final Set<String> TESTED_FIRMWARE_VERSIONS = new HashSet<>(Arrays.asList(
         "2.5.1"
     ));
 
-    private static final int STATE_DIGITAL_ON = 0xFF;
-    private static final int STATE_DIGITAL_OFF = 0x00;
+    /**
+     * State enabling the output pin digitally (fully on, no PWM).
+     */
+    public static final int STATE_DIGITAL_ON = 0xFF;
+
+    /**
+     * State disabling the output pin digitally (fully off, no PWM).
+     */
+    public static final int STATE_DIGITAL_OFF = 0x00;
+
+    private static final int NUM_CACHED_PINS = 256;
+    private static final int NUM_CACHED_STATES = 256;
+
+    // lazily populated: pin => state => message
+    private static final AtomicReferenceArray<AtomicReferenceArray<SetPinMessage>> CACHE = new AtomicReferenceArray<>(NUM_CACHED_PINS);
 
     private final int pin;
     private final int state;
 
-    private SetPinMessage(int pin, int state) {
+    // only held by cached instances
+    private final byte[] preEncoded;
+
+    private SetPinMessage(int pin, int state, boolean cached) {
         super(CommandType.SET_PIN, encodeFields(pin, state));
 
         this.pin = pin;
         this.state = state;
+
+        // encode in advance so the shared instance is ready to be written
+        this.preEncoded = cached ? encode() : null;
     }
 
     private static List<String> encodeFields(int pin, int state) {
@@ -46,11 +73,100 @@ public class SetPinMessage extends CommandMessage {
         return fields;
     }
 
+    private static SetPinMessage getCached(int pin, int state) {
+        AtomicReferenceArray<SetPinMessage> byState = CACHE.get(pin);
+        if (byState == null) {
+            CACHE.compareAndSet(pin, null, new AtomicReferenceArray<>(NUM_CACHED_STATES));
+            byState = CACHE.get(pin);
+        }
+
+        SetPinMessage msg = byState.get(state);
+        if (msg == null) {
+            SetPinMessage created = new SetPinMessage(pin, state, true);
+
+            if (byState.compareAndSet(state, null, created)) {
+                msg = created;
+            } else {
+                msg = byState.get(state);
+            }
+        }
+
+        return msg;
+    }
+
+    /**
+     * Returns a message setting the given pin to the given state/duty cycle value. Messages with a state in unsigned
+     * 8-bit range are shared instances, already encoded for transmission; unlike {@link #builder()}, no allocation is
+     * needed to obtain them after their first use.
+     * <p>
+     * The same cautions as described for {@link Builder#setPwmDutyCycleValue(int)} apply.
+     * </p>
+     *
+     * @param pin   pin ID, unsigned 8-bit range
+     * @param state state/duty cycle value, signed 16-bit range; see {@link #isDigitalState(int)}
+     * @return {@link SetPinMessage} for given pin and state
+     * @throws IllegalArgumentException if pin or state are out of range
+     */
+    public static SetPinMessage of(int pin, int state) {
+        requireUint8(pin);
+        requireInt16(state);
+
+        if (state >= 0 && state < NUM_CACHED_STATES) {
+            return getCached(pin, state);
+        }
+
+        return new SetPinMessage(pin, state, false);
+    }
+
+    /**
+     * Returns the ID of the hardware pin manipulated by this message.
+     *
+     * @return pin ID
+     */
+    public int getPin() {
+        return pin;
+    }
+
+    /**
+     * Returns the state/duty cycle value the pin is set to.
+     *
+     * @return pin state/duty cycle value
+     * @see #isDigitalState(int)
+     */
+    public int getState() {
+        return state;
+    }
+
+    @Override
+    byte[] getPreEncoded() {
+        return preEncoded;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        return pin;
+    }
+
     @Override
     public boolean isTestedVersion(String version) {
         return TESTED_FIRMWARE_VERSIONS.contains(version);
     }
 
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.OUTPUT;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        return true;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
     @Override
     public boolean isCriticalOperation() {
         // command alters electrical state and timings on arbitrary pins without any safety checks in firmware
@@ -210,7 +326,8 @@ public class SetPinMessage extends CommandMessage {
         }
 
         /**
-         * Constructs a {@link SetPinMessage} as configured.
+         * Constructs a {@link SetPinMessage} as configured. Messages with a state in unsigned 8-bit range are shared
+         * instances, already encoded for transmission.
          *
          * @return {@link SetPinMessage} according to configuration
          */
@@ -223,7 +340,7 @@ public class SetPinMessage extends CommandMessage {
                 throw new IllegalArgumentException("state/duty cycle must be defined");
             }
 
-            return new SetPinMessage(pin, state);
+            return of(pin, state);
         }
     }
 }
@@ -0,0 +1,158 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireInt16;
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.ServoConfiguration;
+
+/**
+ * Moves a servo motor ({@link ServoConfiguration}) to the given position.
+ */
+public class SetServoMessage extends CommandMessage {
+    private final int servoIndex;
+    private final int position;
+
+    private SetServoMessage(int servoIndex, int position) {
+        super(CommandType.SET_SERVO, encodeFields(servoIndex, position));
+
+        this.servoIndex = servoIndex;
+        this.position = position;
+    }
+
+    private static List<String> encodeFields(int servoIndex, int position) {
+        List<String> fields = new ArrayList<>();
+
+        fields.add(Integer.toString(servoIndex));
+        fields.add(Integer.toString(position));
+
+        return fields;
+    }
+
+    /**
+     * Returns the index of the manipulated servo among all {@link ServoConfiguration}s of the module.
+     *
+     * @return index of servo
+     */
+    public int getServoIndex() {
+        return servoIndex;
+    }
+
+    /**
+     * Returns the position to move the servo to.
+     *
+     * @return target position
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        return servoIndex;
+    }
+
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.SERVO;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        return true;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // command physically moves a motor
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SetServoMessage(servo=" + servoIndex + ", position=" + position + ")";
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link SetServoMessage}s.
+     *
+     * @return {@link Builder} for {@link SetServoMessage}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder creating {@link SetServoMessage}s.
+     */
+    public static class Builder {
+        private Integer servoIndex;
+        private Integer position;
+
+        /**
+         * Sets the index of the servo to move among all {@link ServoConfiguration}s of the module. Consider using
+         * {@link #manipulating(InterfaceConfiguration, ServoConfiguration)} instead to avoid mistakes.
+         *
+         * @param servoIndex index of servo
+         * @return same instance for method-chaining
+         */
+        public Builder manipulatingServo(int servoIndex) {
+            this.servoIndex = requireUint8(servoIndex);
+            return this;
+        }
+
+        /**
+         * Sets the servo to move.
+         *
+         * @param interfaceConfiguration configuration of the module holding the servo
+         * @param servo                  servo to move
+         * @return same instance for method-chaining
+         * @throws IllegalArgumentException if the servo is not part of the module configuration
+         */
+        public Builder manipulating(InterfaceConfiguration interfaceConfiguration, ServoConfiguration servo) {
+            return manipulatingServo(interfaceConfiguration.getIndexWithinType(servo));
+        }
+
+        /**
+         * Sets the position to move the servo to.
+         *
+         * @param position target position
+         * @return same instance for method-chaining
+         */
+        public Builder movingTo(int position) {
+            this.position = requireInt16(position);
+            return this;
+        }
+
+        /**
+         * Builds the {@link SetServoMessage}.
+         *
+         * @return {@link SetServoMessage}
+         */
+        public SetServoMessage build() {
+            if (servoIndex == null) {
+                throw new IllegalArgumentException("servo must be defined");
+            }
+
+            if (position == null) {
+                throw new IllegalArgumentException("position must be defined");
+            }
+
+            return new SetServoMessage(servoIndex, position);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.OutputShifterConfiguration;
+
+/**
+ * Sets multiple pins of an output shift register chain ({@link OutputShifterConfiguration}) to the same state.
+ * Pins are numbered consecutively across all registers of a chain, starting at 0.
+ * <p>
+ * Shift registers do not support PWM; pins are either fully enabled or disabled.
+ * </p>
+ * <p>
+ * Since MobiFlight firmware only accepts messages up to a limited length, a {@link Builder} may need to split pin
+ * changes into multiple messages. Pin changes are packed into as few messages as possible; all messages built at once
+ * should be sent together.
+ * </p>
+ */
+public class SetShiftRegisterPinsMessage extends CommandMessage {
+    /**
+     * Default maximum length of an encoded message (including command separator), see
+     * {@link Builder#limitEncodedLength(int)}. Chosen to fit the 96 character command buffer of MobiFlight firmware,
+     * leaving one character for string termination.
+     */
+    public static final int DEFAULT_MAXIMUM_ENCODED_LENGTH = 95;
+
+    private static final char PIN_DELIMITER = '|';
+
+    private static final int STATE_ENABLED = 0xFF;
+    private static final int STATE_DISABLED = 0x00;
+
+    private final int shifterIndex;
+    private final int[] pins;
+    private final boolean enable;
+
+    private SetShiftRegisterPinsMessage(int shifterIndex, String encodedPins, int[] pins, boolean enable) {
+        super(CommandType.SET_SHIFT_REGISTER_PINS, encodeFields(shifterIndex, encodedPins, enable));
+
+        this.shifterIndex = shifterIndex;
+        this.pins = pins;
+        this.enable = enable;
+    }
+
+    private static List<String> encodeFields(int shifterIndex, String encodedPins, boolean enable) {
+        List<String> fields = new ArrayList<>();
+
+        fields.add(Integer.toString(shifterIndex));
+        fields.add(encodedPins);
+        fields.add(Integer.toString(enable ? STATE_ENABLED : STATE_DISABLED));
+
+        return fields;
+    }
+
+    /**
+     * Returns the index of the manipulated shift register chain among all {@link OutputShifterConfiguration}s of the
+     * module.
+     *
+     * @return index of shift register chain
+     */
+    public int getShifterIndex() {
+        return shifterIndex;
+    }
+
+    /**
+     * Returns the IDs of all pins manipulated by this message, in ascending order.
+     *
+     * @return manipulated pin IDs
+     */
+    public int[] getPins() {
+        return Arrays.copyOf(pins, pins.length);
+    }
+
+    /**
+     * Indicates whether the pins are enabled or disabled.
+     *
+     * @return {@code true} if all pins are enabled, {@code false} if all pins are disabled
+     */
+    public boolean isEnabling() {
+        return enable;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        return shifterIndex;
+    }
+
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.OUTPUT_SHIFTER;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        // only updates some pins of the shift register chain, so other messages for the same chain are still needed
+        return false;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // command alters electrical state of outputs
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SetShiftRegisterPinsMessage(shifter=" + shifterIndex + ", pins=" + Arrays.toString(pins) + ", enable=" + enable + ")";
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link SetShiftRegisterPinsMessage}s.
+     *
+     * @return {@link Builder} for {@link SetShiftRegisterPinsMessage}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder collecting pin changes of a single shift register chain and packing them into as few
+     * {@link SetShiftRegisterPinsMessage}s as possible.
+     */
+    public static class Builder {
+        private Integer shifterIndex;
+        private final BitSet enabledPins = new BitSet();
+        private final BitSet disabledPins = new BitSet();
+        private int maximumEncodedLength = DEFAULT_MAXIMUM_ENCODED_LENGTH;
+
+        /**
+         * Sets the index of the shift register chain to manipulate among all {@link OutputShifterConfiguration}s of the
+         * module. Consider using {@link #manipulating(InterfaceConfiguration, OutputShifterConfiguration)} instead to
+         * avoid mistakes.
+         *
+         * @param shifterIndex index of shift register chain
+         * @return same instance for method-chaining
+         */
+        public Builder manipulatingShifter(int shifterIndex) {
+            this.shifterIndex = requireUint8(shifterIndex);
+            return this;
+        }
+
+        /**
+         * Sets the shift register chain to manipulate.
+         *
+         * @param interfaceConfiguration configuration of the module holding the shift register chain
+         * @param shifter                shift register chain to manipulate
+         * @return same instance for method-chaining
+         * @throws IllegalArgumentException if the shift register chain is not part of the module configuration
+         */
+        public Builder manipulating(InterfaceConfiguration interfaceConfiguration, OutputShifterConfiguration shifter) {
+            return manipulatingShifter(interfaceConfiguration.getIndexWithinType(shifter));
+        }
+
+        /**
+         * Sets the maximum length of each encoded message (including the command separator). Defaults to
+         * {@value #DEFAULT_MAXIMUM_ENCODED_LENGTH}.
+         *
+         * @param maximumEncodedLength maximum length of each message
+         * @return same instance for method-chaining
+         */
+        public Builder limitEncodedLength(int maximumEncodedLength) {
+            this.maximumEncodedLength = maximumEncodedLength;
+            return this;
+        }
+
+        /**
+         * Sets the given pin to be enabled. Replaces any previous change of the same pin.
+         *
+         * @param pin pin ID
+         * @return same instance for method-chaining
+         */
+        public Builder enable(int pin) {
+            return set(pin, true);
+        }
+
+        /**
+         * Sets the given pin to be disabled. Replaces any previous change of the same pin.
+         *
+         * @param pin pin ID
+         * @return same instance for method-chaining
+         */
+        public Builder disable(int pin) {
+            return set(pin, false);
+        }
+
+        /**
+         * Sets the given pin to be enabled or disabled. Replaces any previous change of the same pin.
+         *
+         * @param pin    pin ID
+         * @param enable {@code true} to enable, {@code false} to disable
+         * @return same instance for method-chaining
+         */
+        public Builder set(int pin, boolean enable) {
+            if (pin < 0) {
+                throw new IllegalArgumentException("pin must not be negative, got " + pin);
+            }
+
+            enabledPins.set(pin, enable);
+            disabledPins.set(pin, !enable);
+
+            return this;
+        }
+
+        /**
+         * Indicates whether any pin changes have been recorded.
+         *
+         * @return {@code true} if no pin changes have been recorded, {@code false} if messages would be built
+         */
+        public boolean isEmpty() {
+            return enabledPins.isEmpty() && disabledPins.isEmpty();
+        }
+
+        /**
+         * Builds as few messages as possible to apply all recorded pin changes.
+         *
+         * @return messages applying all pin changes; empty if no pins have been changed
+         * @throws IllegalArgumentException if no shift register chain has been set or not even a single pin fits the
+         *                                  maximum encoded length
+         */
+        public List<SetShiftRegisterPinsMessage> build() {
+            if (shifterIndex == null) {
+                throw new IllegalArgumentException("shift register chain must be defined");
+            }
+
+            if (isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            List<SetShiftRegisterPinsMessage> out = new ArrayList<>();
+            pack(enabledPins, true, out);
+            pack(disabledPins, false, out);
+
+            return out;
+        }
+
+        private void pack(BitSet pins, boolean enable, List<SetShiftRegisterPinsMessage> out) {
+            // type ID, shifter index, state and separators are fixed; only the pins vary in length
+            int fixedLength = Integer.toString(CommandType.SET_SHIFT_REGISTER_PINS.getFirmwareEncoding()).length()
+                + 1 + Integer.toString(shifterIndex).length()
+                + 1
+                + 1 + Integer.toString(enable ? STATE_ENABLED : STATE_DISABLED).length()
+                + 1;
+            int maxPinsLength = maximumEncodedLength - fixedLength;
+
+            StringBuilder sb = new StringBuilder();
+            int[] chunk = new int[pins.cardinality()];
+            int chunkSize = 0;
+
+            for (int pin = pins.nextSetBit(0); pin >= 0; pin = pins.nextSetBit(pin + 1)) {
+                String encodedPin = Integer.toString(pin);
+
+                if ((chunkSize > 0) && (sb.length() + 1 + encodedPin.length() > maxPinsLength)) {
+                    out.add(new SetShiftRegisterPinsMessage(shifterIndex, sb.toString(), Arrays.copyOf(chunk, chunkSize), enable));
+                    sb.setLength(0);
+                    chunkSize = 0;
+                }
+
+                if (chunkSize > 0) {
+                    sb.append(PIN_DELIMITER);
+                } else if (encodedPin.length() > maxPinsLength) {
+                    throw new IllegalArgumentException("maximum encoded length of " + maximumEncodedLength + " is too small to fit pin " + pin);
+                }
+
+                sb.append(encodedPin);
+                chunk[chunkSize++] = pin;
+            }
+
+            if (chunkSize > 0) {
+                out.add(new SetShiftRegisterPinsMessage(shifterIndex, sb.toString(), Arrays.copyOf(chunk, chunkSize), enable));
+            }
+        }
+    }
+}
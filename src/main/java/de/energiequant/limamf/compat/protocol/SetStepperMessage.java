@@ -0,0 +1,158 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.StepperConfiguration;
+
+/**
+ * Moves a stepper motor ({@link StepperConfiguration}) to the given absolute position (in steps, relative to the zero
+ * position).
+ */
+public class SetStepperMessage extends CommandMessage {
+    private final int stepperIndex;
+    private final int position;
+
+    private SetStepperMessage(int stepperIndex, int position) {
+        super(CommandType.SET_STEPPER, encodeFields(stepperIndex, position));
+
+        this.stepperIndex = stepperIndex;
+        this.position = position;
+    }
+
+    private static List<String> encodeFields(int stepperIndex, int position) {
+        List<String> fields = new ArrayList<>();
+
+        fields.add(Integer.toString(stepperIndex));
+        fields.add(Integer.toString(position));
+
+        return fields;
+    }
+
+    /**
+     * Returns the index of the manipulated stepper among all {@link StepperConfiguration}s of the module.
+     *
+     * @return index of stepper
+     */
+    public int getStepperIndex() {
+        return stepperIndex;
+    }
+
+    /**
+     * Returns the absolute position to move the stepper to.
+     *
+     * @return target position in steps
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        return stepperIndex;
+    }
+
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.STEPPER;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        return true;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // command physically moves a motor
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SetStepperMessage(stepper=" + stepperIndex + ", position=" + position + ")";
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link SetStepperMessage}s.
+     *
+     * @return {@link Builder} for {@link SetStepperMessage}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder creating {@link SetStepperMessage}s.
+     */
+    public static class Builder {
+        private Integer stepperIndex;
+        private Integer position;
+
+        /**
+         * Sets the index of the stepper to move among all {@link StepperConfiguration}s of the module. Consider using
+         * {@link #manipulating(InterfaceConfiguration, StepperConfiguration)} instead to avoid mistakes.
+         *
+         * @param stepperIndex index of stepper
+         * @return same instance for method-chaining
+         */
+        public Builder manipulatingStepper(int stepperIndex) {
+            this.stepperIndex = requireUint8(stepperIndex);
+            return this;
+        }
+
+        /**
+         * Sets the stepper to move.
+         *
+         * @param interfaceConfiguration configuration of the module holding the stepper
+         * @param stepper                stepper to move
+         * @return same instance for method-chaining
+         * @throws IllegalArgumentException if the stepper is not part of the module configuration
+         */
+        public Builder manipulating(InterfaceConfiguration interfaceConfiguration, StepperConfiguration stepper) {
+            return manipulatingStepper(interfaceConfiguration.getIndexWithinType(stepper));
+        }
+
+        /**
+         * Sets the absolute position to move the stepper to.
+         *
+         * @param position target position in steps
+         * @return same instance for method-chaining
+         */
+        public Builder movingTo(int position) {
+            this.position = position;
+            return this;
+        }
+
+        /**
+         * Builds the {@link SetStepperMessage}.
+         *
+         * @return {@link SetStepperMessage}
+         */
+        public SetStepperMessage build() {
+            if (stepperIndex == null) {
+                throw new IllegalArgumentException("stepper must be defined");
+            }
+
+            if (position == null) {
+                throw new IllegalArgumentException("position must be defined");
+            }
+
+            return new SetStepperMessage(stepperIndex, position);
+        }
+    }
+}
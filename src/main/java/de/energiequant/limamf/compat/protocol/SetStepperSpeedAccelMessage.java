@@ -0,0 +1,193 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.StepperConfiguration;
+
+/**
+ * Configures maximum speed and acceleration of a stepper motor ({@link StepperConfiguration}).
+ */
+public class SetStepperSpeedAccelMessage extends CommandMessage {
+    private final int stepperIndex;
+    private final int maximumSpeed;
+    private final int acceleration;
+
+    private SetStepperSpeedAccelMessage(int stepperIndex, int maximumSpeed, int acceleration) {
+        super(CommandType.SET_STEPPER_SPEED_ACCEL, encodeFields(stepperIndex, maximumSpeed, acceleration));
+
+        this.stepperIndex = stepperIndex;
+        this.maximumSpeed = maximumSpeed;
+        this.acceleration = acceleration;
+    }
+
+    private static List<String> encodeFields(int stepperIndex, int maximumSpeed, int acceleration) {
+        List<String> fields = new ArrayList<>();
+
+        fields.add(Integer.toString(stepperIndex));
+        fields.add(Integer.toString(maximumSpeed));
+        fields.add(Integer.toString(acceleration));
+
+        return fields;
+    }
+
+    /**
+     * Returns the index of the configured stepper among all {@link StepperConfiguration}s of the module.
+     *
+     * @return index of stepper
+     */
+    public int getStepperIndex() {
+        return stepperIndex;
+    }
+
+    /**
+     * Returns the maximum speed.
+     *
+     * @return maximum speed in steps per second
+     */
+    public int getMaximumSpeed() {
+        return maximumSpeed;
+    }
+
+    /**
+     * Returns the acceleration.
+     *
+     * @return acceleration in steps per second squared
+     */
+    public int getAcceleration() {
+        return acceleration;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        return stepperIndex;
+    }
+
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.STEPPER;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        return true;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // command alters how a motor physically moves
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SetStepperSpeedAccelMessage(stepper=" + stepperIndex + ", maximumSpeed=" + maximumSpeed + ", acceleration=" + acceleration + ")";
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link SetStepperSpeedAccelMessage}s.
+     *
+     * @return {@link Builder} for {@link SetStepperSpeedAccelMessage}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder creating {@link SetStepperSpeedAccelMessage}s.
+     */
+    public static class Builder {
+        private Integer stepperIndex;
+        private Integer maximumSpeed;
+        private Integer acceleration;
+
+        /**
+         * Sets the index of the stepper to configure among all {@link StepperConfiguration}s of the module. Consider
+         * using {@link #manipulating(InterfaceConfiguration, StepperConfiguration)} instead to avoid mistakes.
+         *
+         * @param stepperIndex index of stepper
+         * @return same instance for method-chaining
+         */
+        public Builder manipulatingStepper(int stepperIndex) {
+            this.stepperIndex = requireUint8(stepperIndex);
+            return this;
+        }
+
+        /**
+         * Sets the stepper to configure.
+         *
+         * @param interfaceConfiguration configuration of the module holding the stepper
+         * @param stepper                stepper to configure
+         * @return same instance for method-chaining
+         * @throws IllegalArgumentException if the stepper is not part of the module configuration
+         */
+        public Builder manipulating(InterfaceConfiguration interfaceConfiguration, StepperConfiguration stepper) {
+            return manipulatingStepper(interfaceConfiguration.getIndexWithinType(stepper));
+        }
+
+        /**
+         * Sets the maximum speed.
+         *
+         * @param maximumSpeed maximum speed in steps per second; must be positive
+         * @return same instance for method-chaining
+         */
+        public Builder withMaximumSpeed(int maximumSpeed) {
+            if (maximumSpeed < 1) {
+                throw new IllegalArgumentException("maximum speed must be positive, got " + maximumSpeed);
+            }
+
+            this.maximumSpeed = maximumSpeed;
+            return this;
+        }
+
+        /**
+         * Sets the acceleration.
+         *
+         * @param acceleration acceleration in steps per second squared; must be positive
+         * @return same instance for method-chaining
+         */
+        public Builder withAcceleration(int acceleration) {
+            if (acceleration < 1) {
+                throw new IllegalArgumentException("acceleration must be positive, got " + acceleration);
+            }
+
+            this.acceleration = acceleration;
+            return this;
+        }
+
+        /**
+         * Builds the {@link SetStepperSpeedAccelMessage}.
+         *
+         * @return {@link SetStepperSpeedAccelMessage}
+         */
+        public SetStepperSpeedAccelMessage build() {
+            if (stepperIndex == null) {
+                throw new IllegalArgumentException("stepper must be defined");
+            }
+
+            if (maximumSpeed == null) {
+                throw new IllegalArgumentException("maximum speed must be defined");
+            }
+
+            if (acceleration == null) {
+                throw new IllegalArgumentException("acceleration must be defined");
+            }
+
+            return new SetStepperSpeedAccelMessage(stepperIndex, maximumSpeed, acceleration);
+        }
+    }
+}
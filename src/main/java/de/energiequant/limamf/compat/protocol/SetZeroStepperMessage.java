@@ -0,0 +1,121 @@
+package de.energiequant.limamf.compat.protocol;
+
+import static de.energiequant.limamf.compat.utils.Numbers.requireUint8;
+
+import java.util.Collections;
+
+import de.energiequant.limamf.compat.config.devices.DeviceType;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.StepperConfiguration;
+
+/**
+ * Defines the current position of a stepper motor ({@link StepperConfiguration}) as its new zero position.
+ */
+public class SetZeroStepperMessage extends CommandMessage {
+    private final int stepperIndex;
+
+    private SetZeroStepperMessage(int stepperIndex) {
+        super(CommandType.SET_ZERO_STEPPER, Collections.singletonList(Integer.toString(stepperIndex)));
+
+        this.stepperIndex = stepperIndex;
+    }
+
+    /**
+     * Returns the index of the manipulated stepper among all {@link StepperConfiguration}s of the module.
+     *
+     * @return index of stepper
+     */
+    public int getStepperIndex() {
+        return stepperIndex;
+    }
+
+    @Override
+    public int getOutputTargetId() {
+        return stepperIndex;
+    }
+
+    @Override
+    public DeviceType getOutputDeviceType() {
+        return DeviceType.STEPPER;
+    }
+
+    @Override
+    public boolean isSupersedingSameTarget() {
+        // changes how all further positions are interpreted, so it must not be skipped
+        return false;
+    }
+
+    @Override
+    public boolean isOutputUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean isCriticalOperation() {
+        // command alters how all further positions are interpreted
+        return true;
+    }
+
+    @Override
+    public MessageDirection getMessageDirection() {
+        return MessageDirection.SENT_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return "SetZeroStepperMessage(stepper=" + stepperIndex + ")";
+    }
+
+    /**
+     * Creates a new {@link Builder} for {@link SetZeroStepperMessage}s.
+     *
+     * @return {@link Builder} for {@link SetZeroStepperMessage}s
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder creating {@link SetZeroStepperMessage}s.
+     */
+    public static class Builder {
+        private Integer stepperIndex;
+
+        /**
+         * Sets the index of the stepper to manipulate among all {@link StepperConfiguration}s of the module. Consider
+         * using {@link #manipulating(InterfaceConfiguration, StepperConfiguration)} instead to avoid mistakes.
+         *
+         * @param stepperIndex index of stepper
+         * @return same instance for method-chaining
+         */
+        public Builder manipulatingStepper(int stepperIndex) {
+            this.stepperIndex = requireUint8(stepperIndex);
+            return this;
+        }
+
+        /**
+         * Sets the stepper to manipulate.
+         *
+         * @param interfaceConfiguration configuration of the module holding the stepper
+         * @param stepper                stepper to manipulate
+         * @return same instance for method-chaining
+         * @throws IllegalArgumentException if the stepper is not part of the module configuration
+         */
+        public Builder manipulating(InterfaceConfiguration interfaceConfiguration, StepperConfiguration stepper) {
+            return manipulatingStepper(interfaceConfiguration.getIndexWithinType(stepper));
+        }
+
+        /**
+         * Builds the {@link SetZeroStepperMessage}.
+         *
+         * @return {@link SetZeroStepperMessage}
+         */
+        public SetZeroStepperMessage build() {
+            if (stepperIndex == null) {
+                throw new IllegalArgumentException("stepper must be defined");
+            }
+
+            return new SetZeroStepperMessage(stepperIndex);
+        }
+    }
+}
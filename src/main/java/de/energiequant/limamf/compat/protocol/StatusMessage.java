@@ -0,0 +1,70 @@
+package de.energiequant.limamf.compat.protocol;
+
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Generic status reply sent by a module, for example to acknowledge a {@link ResetConfigMessage} ({@code OK}) or a
+ * {@link SetConfigMessage} (total length of the buffered configuration, -1 if it did not fit into memory).
+ */
+public class StatusMessage extends CommandMessage {
+    private final String value;
+
+    /**
+     * Parses the given {@link CommandMessage} to a {@link StatusMessage}.
+     *
+     * @param msg message to parse
+     */
+    public StatusMessage(CommandMessage msg) {
+        super(msg);
+
+        List<String> fields = msg.getFields();
+        if (fields.size() != 1) {
+            throw new IllegalArgumentException("Unexpected number of fields, got " + fields.size());
+        }
+
+        this.value = fields.get(0);
+    }
+
+    /**
+     * Checks if the message held by the given view can be decoded to a {@link StatusMessage} without causing an
+     * exception.
+     *
+     * @param view successfully parsed message to check
+     * @return {@link DecodeResult#SUCCESS} if valid, otherwise the category of error
+     */
+    static DecodeResult validate(CommandMessageView view) {
+        if (view.getFieldCount() != 1) {
+            return DecodeResult.UNEXPECTED_FIELD_COUNT;
+        }
+
+        return DecodeResult.SUCCESS;
+    }
+
+    /**
+     * Returns the raw status value.
+     *
+     * @return status value
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the status value as an integer, if numeric.
+     *
+     * @return numeric status value; empty if not numeric
+     */
+    public OptionalInt getIntValue() {
+        try {
+            return OptionalInt.of(Integer.parseInt(value));
+        } catch (NumberFormatException ex) {
+            return OptionalInt.empty();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StatusMessage(\"" + value + "\")";
+    }
+}
@@ -15,10 +15,20 @@
  * All messages can be decoded using
  * {@link de.energiequant.limamf.compat.protocol.CommandMessageDecoder#deserialize(java.lang.String)}. Supported
  * messages will decode to specialized classes while unsupported messages will still decode numeric type information
- * and field values, just lacking any further interpretation.
+ * and field values, just lacking any further interpretation. Further specialized decoders can be added through a
+ * {@link de.energiequant.limamf.compat.protocol.CommandDecoderRegistry}. Raw byte streams (e.g. as read from a serial
+ * port) can be split into messages and decoded by a
+ * {@link de.energiequant.limamf.compat.protocol.CommandMessageStreamDecoder}.
  * </p>
  * <p>
- * Outbound messages can be serialized after instantiating/building one of the specialized classes.
+ * Hot paths, such as handling input events, can use a
+ * {@link de.energiequant.limamf.compat.protocol.FlyweightCommandMessageDecoder} instead which dispatches messages to a
+ * {@link de.energiequant.limamf.compat.protocol.CommandMessageVisitor} without allocating any objects in steady state.
+ * </p>
+ * <p>
+ * Outbound messages can be serialized after instantiating/building one of the specialized classes. They can also be
+ * written directly as bytes, including the command separator; a
+ * {@link de.energiequant.limamf.compat.protocol.CommandMessageBatchWriter} packs many messages into a single buffer.
  * </p>
  * <p>
  * Note that this library does not implement (platform-dependent) device communication but only provides protocol
@@ -0,0 +1,425 @@
+package de.energiequant.limamf.compat.provisioning;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.protocol.ActivateConfigMessage;
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.ConfigActivatedMessage;
+import de.energiequant.limamf.compat.protocol.ConfigSavedMessage;
+import de.energiequant.limamf.compat.protocol.ResetConfigMessage;
+import de.energiequant.limamf.compat.protocol.SaveConfigMessage;
+import de.energiequant.limamf.compat.protocol.SetConfigMessage;
+import de.energiequant.limamf.compat.protocol.StatusMessage;
+
+/**
+ * Uploads an {@link InterfaceConfiguration} to a single module, driven by the replies received from the module instead
+ * of fixed delays.
+ * <p>
+ * The upload clears the configuration buffer ({@link ResetConfigMessage}), sends the configuration split into
+ * firmware-sized {@link SetConfigMessage} chunks, saves it ({@link SaveConfigMessage}) and finally activates it
+ * ({@link ActivateConfigMessage}). Reset and chunks are pipelined: up to
+ * {@link #setMaximumInFlight(int) a bounded number} of them are sent ahead without waiting for their acknowledging
+ * {@link StatusMessage}s, each of which is verified against the expected buffered length. Saving only starts once all
+ * chunks have been acknowledged, activation only once {@link ConfigSavedMessage} has been received.
+ * </p>
+ * <p>
+ * This class does not perform any communication on its own. Messages to be sent are passed to the sender given to
+ * {@link #start(Consumer)}; all messages received from the module need to be fed to {@link #onMessage(CommandMessage)}
+ * and {@link #checkTimeout()} needs to be called periodically. No other messages causing {@link StatusMessage} replies
+ * should be sent to the module while an upload is in progress. Uploads to different modules are independent of each
+ * other and can run concurrently.
+ * </p>
+ * <p>
+ * All methods are thread-safe. Methods taking the current time expect values of {@link System#nanoTime()}.
+ * </p>
+ */
+public class ConfigurationUpload {
+    /**
+     * Default maximum number of unacknowledged messages, see {@link #setMaximumInFlight(int)}.
+     */
+    public static final int DEFAULT_MAXIMUM_IN_FLIGHT = 2;
+
+    /**
+     * Default maximum time to wait for the next reply, see {@link #setReplyTimeout(Duration)}.
+     */
+    public static final Duration DEFAULT_REPLY_TIMEOUT = Duration.ofSeconds(2);
+
+    // reset is acknowledged by a non-numeric status
+    private static final int ANY_STATUS = Integer.MIN_VALUE;
+
+    private static final int STATUS_OUT_OF_MEMORY = -1;
+
+    /**
+     * Progress of a {@link ConfigurationUpload}.
+     */
+    public enum State {
+        /**
+         * Upload has not been started yet.
+         */
+        IDLE,
+        /**
+         * Configuration buffer is being reset and filled with chunks.
+         */
+        UPLOADING,
+        /**
+         * All chunks have been acknowledged, waiting for {@link ConfigSavedMessage}.
+         */
+        SAVING,
+        /**
+         * Configuration has been saved, waiting for {@link ConfigActivatedMessage}.
+         */
+        ACTIVATING,
+        /**
+         * Upload completed successfully.
+         */
+        DONE,
+        /**
+         * Upload failed or has been cancelled.
+         */
+        FAILED
+    }
+
+    private final String firmwareFormat;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private int maximumInFlight = DEFAULT_MAXIMUM_IN_FLIGHT;
+    private int maximumEncodedLength = SetConfigMessage.DEFAULT_MAXIMUM_ENCODED_LENGTH;
+    private long replyTimeoutNanos = DEFAULT_REPLY_TIMEOUT.toNanos();
+    private boolean activate = true;
+
+    private State state = State.IDLE;
+    private Consumer<? super CommandMessage> sender;
+    private final Deque<CommandMessage> unsent = new ArrayDeque<>();
+    private final Deque<Integer> expectedStatus = new ArrayDeque<>();
+    private long lastProgressNanos;
+    private Throwable failure;
+
+    /**
+     * Creates a new upload of the given configuration.
+     *
+     * @param configuration configuration to upload
+     */
+    public ConfigurationUpload(InterfaceConfiguration configuration) {
+        this.firmwareFormat = configuration.toFirmwareFormat();
+    }
+
+    /**
+     * Sets the maximum number of messages which may be sent ahead while their acknowledgement is still pending.
+     * Defaults to {@value #DEFAULT_MAXIMUM_IN_FLIGHT}; 1 disables pipelining. Larger values may overflow the serial
+     * receive buffer of slow modules.
+     *
+     * @param maximumInFlight maximum number of unacknowledged messages; must be positive
+     * @return same instance for method-chaining
+     */
+    public synchronized ConfigurationUpload setMaximumInFlight(int maximumInFlight) {
+        if (maximumInFlight < 1) {
+            throw new IllegalArgumentException("maximum in-flight messages must be positive, got " + maximumInFlight);
+        }
+
+        this.maximumInFlight = maximumInFlight;
+        return this;
+    }
+
+    /**
+     * Sets the maximum length of each encoded {@link SetConfigMessage} (including the command separator). Defaults to
+     * {@value SetConfigMessage#DEFAULT_MAXIMUM_ENCODED_LENGTH}. Only effective before the upload is started.
+     *
+     * @param maximumEncodedLength maximum length of each message
+     * @return same instance for method-chaining
+     */
+    public synchronized ConfigurationUpload limitEncodedLength(int maximumEncodedLength) {
+        this.maximumEncodedLength = maximumEncodedLength;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to wait for the next expected reply before the upload fails. Defaults to
+     * {@link #DEFAULT_REPLY_TIMEOUT}.
+     *
+     * @param replyTimeout maximum time to wait for each reply; must be positive
+     * @return same instance for method-chaining
+     */
+    public synchronized ConfigurationUpload setReplyTimeout(Duration replyTimeout) {
+        if (replyTimeout.isNegative() || replyTimeout.isZero()) {
+            throw new IllegalArgumentException("reply timeout must be positive, got " + replyTimeout);
+        }
+
+        this.replyTimeoutNanos = replyTimeout.toNanos();
+        return this;
+    }
+
+    /**
+     * Sets whether the configuration should be activated after it has been saved. Defaults to {@code true}; if
+     * disabled, the module continues to use its previous configuration until reset.
+     *
+     * @param activate {@code true} to activate the configuration, {@code false} to only save it
+     * @return same instance for method-chaining
+     */
+    public synchronized ConfigurationUpload setActivate(boolean activate) {
+        this.activate = activate;
+        return this;
+    }
+
+    /**
+     * Starts the upload by sending the first messages.
+     *
+     * @param sender receives all messages that need to be sent to the module, in order
+     * @return future completing when the upload has finished; completes exceptionally with {@link TimeoutException} if
+     *     the module stopped responding or {@link IllegalStateException} if the module rejected the configuration
+     * @see #getFuture()
+     */
+    public CompletableFuture<Void> start(Consumer<? super CommandMessage> sender) {
+        return start(sender, System.nanoTime());
+    }
+
+    /**
+     * Starts the upload by sending the first messages.
+     *
+     * @param sender   receives all messages that need to be sent to the module, in order
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     * @return future completing when the upload has finished
+     * @see #start(Consumer)
+     */
+    public CompletableFuture<Void> start(Consumer<? super CommandMessage> sender, long nowNanos) {
+        synchronized (this) {
+            if (state != State.IDLE) {
+                throw new IllegalStateException("upload has already been started");
+            }
+
+            List<SetConfigMessage> chunks = SetConfigMessage.split(firmwareFormat, maximumEncodedLength);
+
+            this.sender = sender;
+            state = State.UPLOADING;
+            lastProgressNanos = nowNanos;
+
+            unsent.add(ResetConfigMessage.getInstance());
+            expectedStatus.add(ANY_STATUS);
+
+            int bufferedLength = 0;
+            for (SetConfigMessage chunk : chunks) {
+                bufferedLength += chunk.getChunk().length();
+                unsent.add(chunk);
+                expectedStatus.add(bufferedLength);
+            }
+
+            sendAhead();
+        }
+
+        completeFuture();
+
+        return future;
+    }
+
+    /**
+     * Returns the future completing when the upload has finished.
+     *
+     * @return future completing when the upload has finished
+     * @see #start(Consumer)
+     */
+    public CompletableFuture<Void> getFuture() {
+        return future;
+    }
+
+    /**
+     * Returns the current progress of the upload.
+     *
+     * @return current progress
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the number of messages which still need to be acknowledged or replied to until the upload is done.
+     *
+     * @return number of outstanding replies
+     */
+    public synchronized int getOutstandingReplies() {
+        switch (state) {
+            case IDLE:
+                return 0;
+            case UPLOADING:
+                return expectedStatus.size() + (activate ? 2 : 1);
+            case SAVING:
+                return activate ? 2 : 1;
+            case ACTIVATING:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Processes a message received from the module. Messages unrelated to the upload are ignored.
+     *
+     * @param msg message received from the module
+     * @return {@code true} if the message was consumed by the upload, {@code false} if it is unrelated
+     */
+    public boolean onMessage(CommandMessage msg) {
+        return onMessage(msg, System.nanoTime());
+    }
+
+    /**
+     * Processes a message received from the module. Messages unrelated to the upload are ignored.
+     *
+     * @param msg      message received from the module
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     * @return {@code true} if the message was consumed by the upload, {@code false} if it is unrelated
+     */
+    public boolean onMessage(CommandMessage msg, long nowNanos) {
+        boolean consumed;
+
+        synchronized (this) {
+            consumed = handle(msg, nowNanos);
+        }
+
+        completeFuture();
+
+        return consumed;
+    }
+
+    private boolean handle(CommandMessage msg, long nowNanos) {
+        if ((state == State.UPLOADING) && (msg instanceof StatusMessage)) {
+            int expected = expectedStatus.remove();
+            if (expected != ANY_STATUS) {
+                OptionalInt actual = ((StatusMessage) msg).getIntValue();
+                if (actual.isPresent() && (actual.getAsInt() == STATUS_OUT_OF_MEMORY)) {
+                    fail(new IllegalStateException("configuration exceeds memory available on module"));
+                    return true;
+                }
+
+                if (!actual.isPresent() || (actual.getAsInt() != expected)) {
+                    fail(new IllegalStateException("module reported unexpected status " + msg + ", expected buffered length " + expected));
+                    return true;
+                }
+            }
+
+            lastProgressNanos = nowNanos;
+
+            if (!expectedStatus.isEmpty()) {
+                sendAhead();
+            } else {
+                state = State.SAVING;
+                sender.accept(SaveConfigMessage.getInstance());
+            }
+
+            return true;
+        }
+
+        if ((state == State.SAVING) && (msg instanceof ConfigSavedMessage)) {
+            lastProgressNanos = nowNanos;
+
+            if (activate) {
+                state = State.ACTIVATING;
+                sender.accept(ActivateConfigMessage.getInstance());
+            } else {
+                state = State.DONE;
+            }
+
+            return true;
+        }
+
+        if ((state == State.ACTIVATING) && (msg instanceof ConfigActivatedMessage)) {
+            state = State.DONE;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void sendAhead() {
+        int inFlight = expectedStatus.size() - unsent.size();
+        while ((inFlight < maximumInFlight) && !unsent.isEmpty()) {
+            sender.accept(unsent.remove());
+            inFlight++;
+        }
+    }
+
+    /**
+     * Fails the upload if the module did not reply in time.
+     *
+     * @return {@code true} if the upload timed out, {@code false} if not
+     */
+    public boolean checkTimeout() {
+        return checkTimeout(System.nanoTime());
+    }
+
+    /**
+     * Fails the upload if the module did not reply in time.
+     *
+     * @param nowNanos current time as per {@link System#nanoTime()}
+     * @return {@code true} if the upload timed out, {@code false} if not
+     */
+    public boolean checkTimeout(long nowNanos) {
+        boolean timedOut = false;
+
+        synchronized (this) {
+            if (isWaiting() && (nowNanos - lastProgressNanos >= replyTimeoutNanos)) {
+                fail(new TimeoutException("module did not reply while " + state + " within " + Duration.ofNanos(replyTimeoutNanos)));
+                timedOut = true;
+            }
+        }
+
+        completeFuture();
+
+        return timedOut;
+    }
+
+    /**
+     * Cancels the upload. Note that the module may have been left with a partial configuration buffer, which should
+     * be reset before the module is used further.
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (state != State.DONE) {
+                fail(new IllegalStateException("upload has been cancelled"));
+            }
+        }
+
+        completeFuture();
+    }
+
+    private boolean isWaiting() {
+        return (state == State.UPLOADING) || (state == State.SAVING) || (state == State.ACTIVATING);
+    }
+
+    private void fail(Throwable cause) {
+        if (state == State.FAILED) {
+            return;
+        }
+
+        state = State.FAILED;
+        failure = cause;
+        unsent.clear();
+        expectedStatus.clear();
+    }
+
+    private void completeFuture() {
+        // dependent actions are run outside of the lock
+        State currentState;
+        Throwable currentFailure;
+        synchronized (this) {
+            currentState = state;
+            currentFailure = failure;
+        }
+
+        if (currentState == State.DONE) {
+            future.complete(null);
+        } else if (currentState == State.FAILED) {
+            future.completeExceptionally(currentFailure);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ConfigurationUpload(state=" + state + ", length=" + firmwareFormat.length() + ")";
+    }
+}
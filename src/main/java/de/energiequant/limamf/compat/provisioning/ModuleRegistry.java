@@ -0,0 +1,586 @@
+package de.energiequant.limamf.compat.provisioning;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.config.devices.InterfaceConfigurationCache;
+import de.energiequant.limamf.compat.config.devices.LazyInterfaceConfiguration;
+import de.energiequant.limamf.compat.protocol.ConfigurationInfoMessage;
+import de.energiequant.limamf.compat.protocol.IdentificationInfoMessage;
+
+/**
+ * Persistent registry of previously seen modules, keyed by their serial.
+ * <p>
+ * Identifying a module and retrieving its configuration requires a full handshake on every application start although
+ * both rarely change. The registry remembers identification, raw configuration and a fingerprint of the configuration
+ * for each module, so an application can start routing inputs based on the cached {@link InterfaceConfiguration}
+ * immediately and confirm or invalidate the entry using {@link #validate(ModuleRequestTracker, Object, String)} in the
+ * background.
+ * </p>
+ * <p>
+ * Modules can optionally be associated with a location, such as the name of the serial port they were last seen on.
+ * Looking up entries by location allows using cached configurations even before the module has been identified.
+ * </p>
+ * <p>
+ * The registry is only kept in memory until {@link #save()} is called, which replaces the file atomically (where
+ * supported by the file system) so an interrupted write cannot corrupt previously saved entries. Entries whose stored
+ * fingerprint does not match their configuration are dropped when loading.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class ModuleRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModuleRegistry.class);
+
+    private static final String FORMAT_VERSION = "1";
+
+    private static final String KEY_FORMAT = "format";
+    private static final String KEY_PREFIX_MODULE = "module.";
+    private static final String KEY_SUFFIX_SERIAL = ".serial";
+    private static final String KEY_SUFFIX_TYPE = ".type";
+    private static final String KEY_SUFFIX_NAME = ".name";
+    private static final String KEY_SUFFIX_VERSION = ".version";
+    private static final String KEY_SUFFIX_CORE_VERSION = ".coreVersion";
+    private static final String KEY_SUFFIX_LOCATION = ".location";
+    private static final String KEY_SUFFIX_CONFIGURATION = ".configuration";
+    private static final String KEY_SUFFIX_FINGERPRINT = ".fingerprint";
+
+    private final File file;
+    private final Object saveLock = new Object();
+    private final Map<String, Entry> entriesBySerial = new LinkedHashMap<>();
+    private boolean modified = false;
+
+    /**
+     * Outcome of validating a registry entry against the actual module.
+     */
+    public enum Status {
+        /**
+         * Module matched the registered entry; cached configuration is still valid.
+         */
+        CONFIRMED,
+
+        /**
+         * Module was registered before but identification or configuration changed; cached configuration is outdated.
+         */
+        CHANGED,
+
+        /**
+         * Module was not registered before.
+         */
+        ADDED
+    }
+
+    private ModuleRegistry(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the registry from the given file. A missing file results in an empty registry; the file will be created
+     * on {@link #save()}.
+     *
+     * @param file file to load from and save to
+     * @return registry holding all valid entries stored in the file
+     * @throws UncheckedIOException if the file exists but cannot be read
+     */
+    public static ModuleRegistry load(File file) {
+        ModuleRegistry registry = new ModuleRegistry(file);
+
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            properties.load(is);
+        } catch (NoSuchFileException ex) {
+            LOGGER.debug("registry file {} does not exist yet", file);
+            return registry;
+        } catch (IOException ex) {
+            LOGGER.warn("failed to read {}", file, ex);
+            throw new UncheckedIOException(ex);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.warn("malformed registry file {}, ignoring all entries", file, ex);
+            return registry;
+        }
+
+        String format = properties.getProperty(KEY_FORMAT);
+        if (!FORMAT_VERSION.equals(format)) {
+            LOGGER.warn("unsupported registry format {} in {}, ignoring all entries", format, file);
+            return registry;
+        }
+
+        for (int i = 0; ; i++) {
+            String prefix = KEY_PREFIX_MODULE + i;
+            String serial = properties.getProperty(prefix + KEY_SUFFIX_SERIAL);
+            if (serial == null) {
+                break;
+            }
+
+            Entry entry;
+            try {
+                entry = new Entry(
+                    serial,
+                    require(properties, prefix + KEY_SUFFIX_TYPE),
+                    require(properties, prefix + KEY_SUFFIX_NAME),
+                    require(properties, prefix + KEY_SUFFIX_VERSION),
+                    require(properties, prefix + KEY_SUFFIX_CORE_VERSION),
+                    properties.getProperty(prefix + KEY_SUFFIX_LOCATION),
+                    require(properties, prefix + KEY_SUFFIX_CONFIGURATION)
+                );
+
+                long storedFingerprint = Long.parseUnsignedLong(require(properties, prefix + KEY_SUFFIX_FINGERPRINT), 16);
+                if (storedFingerprint != entry.getFingerprint()) {
+                    throw new IllegalArgumentException("fingerprint mismatch");
+                }
+            } catch (IllegalArgumentException ex) {
+                LOGGER.warn("dropping invalid registry entry #{} for serial {} in {}", i, serial, file, ex);
+                continue;
+            }
+
+            registry.entriesBySerial.put(serial, entry);
+        }
+
+        return registry;
+    }
+
+    private static String require(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException(key + " must be defined");
+        }
+        return value;
+    }
+
+    /**
+     * Writes all entries to the file, replacing it atomically if supported by the file system. Does nothing if there
+     * are no modifications since loading or last saving.
+     *
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public void save() {
+        // serialized so an older snapshot can never replace a newer one
+        synchronized (saveLock) {
+            Properties properties = new Properties();
+            synchronized (this) {
+                if (!modified) {
+                    return;
+                }
+
+                properties.setProperty(KEY_FORMAT, FORMAT_VERSION);
+
+                int i = 0;
+                for (Entry entry : entriesBySerial.values()) {
+                    String prefix = KEY_PREFIX_MODULE + i;
+                    properties.setProperty(prefix + KEY_SUFFIX_SERIAL, entry.serial);
+                    properties.setProperty(prefix + KEY_SUFFIX_TYPE, entry.mobiflightType);
+                    properties.setProperty(prefix + KEY_SUFFIX_NAME, entry.name);
+                    properties.setProperty(prefix + KEY_SUFFIX_VERSION, entry.version);
+                    properties.setProperty(prefix + KEY_SUFFIX_CORE_VERSION, entry.coreVersion);
+                    if (entry.location != null) {
+                        properties.setProperty(prefix + KEY_SUFFIX_LOCATION, entry.location);
+                    }
+                    properties.setProperty(prefix + KEY_SUFFIX_CONFIGURATION, entry.rawConfiguration);
+                    properties.setProperty(prefix + KEY_SUFFIX_FINGERPRINT, Long.toHexString(entry.fingerprint));
+                    i++;
+                }
+
+                // cleared before writing so concurrent modifications while writing are not lost
+                modified = false;
+            }
+
+            Path target = file.getAbsoluteFile().toPath();
+            Path temporary = null;
+            try {
+                temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+                try (OutputStream os = Files.newOutputStream(temporary)) {
+                    properties.store(os, "MobiFlight module registry");
+                }
+
+                try {
+                    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                temporary = null;
+            } catch (IOException ex) {
+                LOGGER.warn("failed to write {}", file, ex);
+                synchronized (this) {
+                    modified = true;
+                }
+                throw new UncheckedIOException(ex);
+            } finally {
+                if (temporary != null) {
+                    try {
+                        Files.deleteIfExists(temporary);
+                    } catch (IOException ex) {
+                        LOGGER.warn("failed to delete temporary file {}", temporary, ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether entries have been modified since loading or last saving.
+     *
+     * @return {@code true} if there are unsaved modifications, {@code false} if not
+     */
+    public synchronized boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Returns the entry registered for the given serial.
+     *
+     * @param serial module serial
+     * @return registered entry; empty if unknown
+     */
+    public synchronized Optional<Entry> getEntry(String serial) {
+        return Optional.ofNullable(entriesBySerial.get(serial));
+    }
+
+    /**
+     * Returns the entry of the module most recently validated at the given location.
+     *
+     * @param location location of module, e.g. serial port name
+     * @return registered entry; empty if unknown
+     */
+    public synchronized Optional<Entry> findByLocation(String location) {
+        for (Entry entry : entriesBySerial.values()) {
+            if (location.equals(entry.location)) {
+                return Optional.of(entry);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns all registered entries.
+     *
+     * @return all registered entries
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entriesBySerial.values());
+    }
+
+    /**
+     * Registers the given module, replacing any previous entry for the same serial.
+     *
+     * @param identification    identification received from the module
+     * @param configurationInfo configuration received from the module
+     * @param location          location of module, e.g. serial port name; null to keep the previous location
+     * @return outcome compared to the previously registered entry
+     */
+    public Validation register(IdentificationInfoMessage identification, ConfigurationInfoMessage configurationInfo, String location) {
+        Entry entry = new Entry(
+            identification.getSerial(),
+            identification.getMobiflightType(),
+            identification.getName(),
+            identification.getVersion(),
+            identification.getCoreVersion(),
+            location,
+            configurationInfo.getRawConfiguration()
+        );
+
+        synchronized (this) {
+            Entry previous = entriesBySerial.get(entry.serial);
+            if ((location == null) && (previous != null)) {
+                entry = entry.withLocation(previous.location);
+            }
+
+            Status status;
+            if (previous == null) {
+                status = Status.ADDED;
+            } else if (previous.matches(entry)) {
+                status = Status.CONFIRMED;
+            } else {
+                status = Status.CHANGED;
+            }
+
+            if ((status != Status.CONFIRMED) || !Objects.equals(previous.location, entry.location)) {
+                if (entry.location != null) {
+                    releaseLocation(entry.location);
+                }
+                entriesBySerial.put(entry.serial, entry);
+                modified = true;
+            } else {
+                entry = previous;
+            }
+
+            return new Validation(status, entry, previous);
+        }
+    }
+
+    private void releaseLocation(String location) {
+        for (Map.Entry<String, Entry> mapEntry : entriesBySerial.entrySet()) {
+            Entry other = mapEntry.getValue();
+            if (location.equals(other.location)) {
+                mapEntry.setValue(other.withLocation(null));
+            }
+        }
+    }
+
+    /**
+     * Queries identification and configuration from the given module and {@link #register registers} the result. Both
+     * requests are issued at once. The caller should switch to the validated configuration unless the outcome is
+     * {@link Status#CONFIRMED}, and {@link #save()} the registry if it has been {@link #isModified() modified}.
+     *
+     * @param tracker  tracker to issue requests through
+     * @param module   key of module to query
+     * @param location location of module, e.g. serial port name; null to keep the previous location
+     * @param <K>      type of module keys
+     * @return future completing with the outcome; fails if requests fail
+     */
+    public <K> CompletableFuture<Validation> validate(ModuleRequestTracker<K> tracker, K module, String location) {
+        CompletableFuture<IdentificationInfoMessage> identification = tracker.requestIdentification(module);
+        CompletableFuture<ConfigurationInfoMessage> configurationInfo = tracker.requestConfigurationInfo(module);
+
+        return identification.thenCombine(
+            configurationInfo,
+            (identificationReply, configurationReply) -> register(identificationReply, configurationReply, location)
+        );
+    }
+
+    /**
+     * Removes the entry registered for the given serial, e.g. because the module is known to have been reconfigured.
+     *
+     * @param serial module serial
+     * @return removed entry; empty if unknown
+     */
+    public synchronized Optional<Entry> remove(String serial) {
+        Entry removed = entriesBySerial.remove(serial);
+        if (removed != null) {
+            modified = true;
+        }
+        return Optional.ofNullable(removed);
+    }
+
+    /**
+     * Outcome of {@link #validate(ModuleRequestTracker, Object, String)} or
+     * {@link #register(IdentificationInfoMessage, ConfigurationInfoMessage, String)}.
+     */
+    public static class Validation {
+        private final Status status;
+        private final Entry entry;
+        private final Entry previousEntry;
+
+        private Validation(Status status, Entry entry, Entry previousEntry) {
+            this.status = status;
+            this.entry = entry;
+            this.previousEntry = previousEntry;
+        }
+
+        /**
+         * Returns the outcome compared to the previously registered entry.
+         *
+         * @return outcome
+         */
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the entry now registered for the module.
+         *
+         * @return current entry
+         */
+        public Entry getEntry() {
+            return entry;
+        }
+
+        /**
+         * Returns the entry which was registered for the module before.
+         *
+         * @return previous entry; empty if the module was not registered before
+         */
+        public Optional<Entry> getPreviousEntry() {
+            return Optional.ofNullable(previousEntry);
+        }
+
+        @Override
+        public String toString() {
+            return "ModuleRegistry.Validation(" + status + ", " + entry + ")";
+        }
+    }
+
+    /**
+     * Registered information about a single module. Instances are immutable.
+     */
+    public static class Entry {
+        private final String serial;
+        private final String mobiflightType;
+        private final String name;
+        private final String version;
+        private final String coreVersion;
+        private final String location;
+        private final String rawConfiguration;
+        private final long fingerprint;
+
+        private LazyInterfaceConfiguration lazyConfiguration;
+
+        private Entry(String serial, String mobiflightType, String name, String version, String coreVersion, String location, String rawConfiguration) {
+            this.serial = serial;
+            this.mobiflightType = mobiflightType;
+            this.name = name;
+            this.version = version;
+            this.coreVersion = coreVersion;
+            this.location = location;
+            this.rawConfiguration = rawConfiguration;
+            this.fingerprint = LazyInterfaceConfiguration.fingerprint(rawConfiguration);
+        }
+
+        private Entry withLocation(String location) {
+            return new Entry(serial, mobiflightType, name, version, coreVersion, location, rawConfiguration);
+        }
+
+        private boolean matches(Entry other) {
+            return (fingerprint == other.fingerprint)
+                && serial.equals(other.serial)
+                && mobiflightType.equals(other.mobiflightType)
+                && name.equals(other.name)
+                && version.equals(other.version)
+                && coreVersion.equals(other.coreVersion)
+                && rawConfiguration.equals(other.rawConfiguration);
+        }
+
+        /**
+         * Returns the module serial this entry is registered for.
+         *
+         * @return module serial
+         * @see IdentificationInfoMessage#getSerial()
+         */
+        public String getSerial() {
+            return serial;
+        }
+
+        /**
+         * Returns the MobiFlight firmware/hardware interface type indicated by the module.
+         *
+         * @return MobiFlight firmware/hardware interface type
+         * @see IdentificationInfoMessage#getMobiflightType()
+         */
+        public String getMobiflightType() {
+            return mobiflightType;
+        }
+
+        /**
+         * Returns the module name indicated by the module.
+         *
+         * @return MobiFlight module name
+         * @see IdentificationInfoMessage#getName()
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the "version" indicated by the module.
+         *
+         * @return MobiFlight module "version"
+         * @see IdentificationInfoMessage#getVersion()
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the "core version" indicated by the module.
+         *
+         * @return MobiFlight module "core version"
+         * @see IdentificationInfoMessage#getCoreVersion()
+         */
+        public String getCoreVersion() {
+            return coreVersion;
+        }
+
+        /**
+         * Returns the location the module was last validated at.
+         *
+         * @return location of module, e.g. serial port name; empty if unknown
+         */
+        public Optional<String> getLocation() {
+            return Optional.ofNullable(location);
+        }
+
+        /**
+         * Returns the raw configuration as received from the module.
+         *
+         * @return raw configuration in protocol encoding used by MobiFlight firmware
+         * @see ConfigurationInfoMessage#getRawConfiguration()
+         */
+        public String getRawConfiguration() {
+            return rawConfiguration;
+        }
+
+        /**
+         * Returns the fingerprint of the raw configuration.
+         *
+         * @return fingerprint of the raw configuration
+         * @see LazyInterfaceConfiguration#fingerprint(CharSequence)
+         */
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Returns a lazily decoded view of the cached configuration, which only decodes devices as they are accessed.
+         * Unlike {@link #getConfiguration()}, this also provides access to the supported devices of configurations
+         * containing devices of unknown or unsupported types. Indexed on first call.
+         *
+         * @return lazily decoded configuration
+         * @throws IllegalArgumentException if entry boundaries are malformed
+         */
+        public synchronized LazyInterfaceConfiguration getLazyConfiguration() {
+            if (lazyConfiguration == null) {
+                lazyConfiguration = LazyInterfaceConfiguration.index(rawConfiguration);
+            }
+
+            return lazyConfiguration;
+        }
+
+        /**
+         * Returns the cached configuration, decoded through the {@link InterfaceConfigurationCache#getDefault() default
+         * cache}.
+         * <p>
+         * Entries are registered regardless of whether their configuration can be decoded completely; use
+         * {@link #getLazyConfiguration()} to access configurations containing devices of unknown or unsupported types.
+         * </p>
+         *
+         * @return cached configuration
+         * @throws IllegalArgumentException if the configuration is malformed or contains devices of unknown or
+         *                                  unsupported types
+         */
+        public InterfaceConfiguration getConfiguration() {
+            return InterfaceConfigurationCache.getDefault().get(rawConfiguration);
+        }
+
+        @Override
+        public String toString() {
+            return "ModuleRegistry.Entry(serial=" + serial
+                + ", type=" + mobiflightType
+                + ", name=" + name
+                + ", version=" + version
+                + ", coreVersion=" + coreVersion
+                + ", location=" + location
+                + ", fingerprint=" + Long.toHexString(fingerprint)
+                + ")";
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package de.energiequant.limamf.compat.provisioning;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import de.energiequant.limamf.compat.config.devices.InterfaceConfiguration;
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.ConfigurationInfoMessage;
+import de.energiequant.limamf.compat.protocol.GetConfigMessage;
+import de.energiequant.limamf.compat.protocol.GetInfoMessage;
+import de.energiequant.limamf.compat.protocol.IdentificationInfoMessage;
+
+/**
+ * Correlates {@link GetInfoMessage} and {@link GetConfigMessage} requests with their replies, so modules can be queried
+ * asynchronously instead of blocking on each handshake.
+ * <p>
+ * Requests return {@link CompletableFuture}s which complete once the corresponding {@link IdentificationInfoMessage}
+ * or {@link ConfigurationInfoMessage} has been fed to {@link #onMessage(Object, CommandMessage)}, or fail with a
+ * {@link TimeoutException} if no reply has been received in time. At most one request of each kind is in flight per
+ * module: concurrent callers requesting the same information from the same module share a single request and receive
+ * the same future, so cancelling it affects all callers.
+ * </p>
+ * <p>
+ * Timeouts are scheduled on a single {@link ScheduledExecutorService} which can be shared with other components, so
+ * tracking requests of many modules does not require any additional threads. Like all classes in this package, the
+ * tracker does not perform any communication on its own; requests are passed to a sender which is responsible for
+ * delivering them to the module.
+ * </p>
+ * <p>
+ * Modules are identified by an arbitrary key which needs to implement {@link Object#equals(Object)} and
+ * {@link Object#hashCode()}. All methods are thread-safe.
+ * </p>
+ *
+ * @param <K> type of module keys
+ */
+public class ModuleRequestTracker<K> implements AutoCloseable {
+    /**
+     * Default time to wait for a reply, see {@link #setTimeout(Duration)}.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(2);
+
+    private final BiConsumer<? super K, ? super CommandMessage> sender;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final Map<K, ModuleRequests> requestsByModule = new ConcurrentHashMap<>();
+
+    private volatile long timeoutNanos = DEFAULT_TIMEOUT.toNanos();
+
+    private enum RequestKind {
+        IDENTIFICATION,
+        CONFIGURATION
+    }
+
+    /**
+     * Creates a new tracker scheduling timeouts on its own thread.
+     *
+     * @param sender sends requests to the specified module
+     */
+    public ModuleRequestTracker(BiConsumer<? super K, ? super CommandMessage> sender) {
+        this(sender, createExecutor(), true);
+    }
+
+    /**
+     * Creates a new tracker scheduling timeouts on a shared executor. The executor is not shut down when the tracker
+     * gets closed.
+     *
+     * @param sender   sends requests to the specified module
+     * @param executor executor to schedule timeouts on
+     */
+    public ModuleRequestTracker(BiConsumer<? super K, ? super CommandMessage> sender, ScheduledExecutorService executor) {
+        this(sender, executor, false);
+    }
+
+    private ModuleRequestTracker(BiConsumer<? super K, ? super CommandMessage> sender, ScheduledExecutorService executor, boolean ownsExecutor) {
+        this.sender = sender;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, ModuleRequestTracker.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the time to wait for a reply before a request fails. Only affects requests issued afterwards. Defaults to
+     * {@link #DEFAULT_TIMEOUT}.
+     *
+     * @param timeout time to wait for a reply; must be positive
+     * @return same instance for method-chaining
+     */
+    public ModuleRequestTracker<K> setTimeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive, got " + timeout);
+        }
+
+        this.timeoutNanos = timeout.toNanos();
+        return this;
+    }
+
+    /**
+     * Requests identification of the given module, unless such a request is already in flight.
+     *
+     * @param module key of module to query
+     * @return future completing with the module's identification
+     */
+    public CompletableFuture<IdentificationInfoMessage> requestIdentification(K module) {
+        return request(module, RequestKind.IDENTIFICATION, GetInfoMessage.getInstance());
+    }
+
+    /**
+     * Requests the configuration active on the given module, unless such a request is already in flight.
+     * <p>
+     * The returned future is derived from the shared {@link #requestConfigurationInfo(Object)} request; cancelling it
+     * cancels the shared request as well.
+     * </p>
+     *
+     * @param module key of module to query
+     * @return future completing with the module's configuration; fails with {@link IllegalArgumentException} if the
+     *     configuration could not be parsed
+     */
+    public CompletableFuture<InterfaceConfiguration> requestConfiguration(K module) {
+        CompletableFuture<ConfigurationInfoMessage> info = requestConfigurationInfo(module);
+
+        CompletableFuture<InterfaceConfiguration> out = info.thenApply(configurationInfo -> {
+            InterfaceConfiguration configuration = configurationInfo.getConfiguration();
+            if (configuration == null) {
+                throw new IllegalArgumentException(
+                    "unparseable configuration received from module " + module + ": \"" + configurationInfo.getRawConfiguration() + "\""
+                );
+            }
+            return configuration;
+        });
+
+        out.whenComplete((result, ex) -> {
+            if (out.isCancelled()) {
+                info.cancel(false);
+            }
+        });
+
+        return out;
+    }
+
+    /**
+     * Requests the configuration active on the given module as received, unless such a request is already in flight.
+     * Unlike {@link #requestConfiguration(Object)}, the configuration is not decoded, so this also completes for
+     * configurations which cannot be parsed and gives access to the raw configuration, e.g. to fingerprint it.
+     *
+     * @param module key of module to query
+     * @return future completing with the module's configuration reply
+     */
+    public CompletableFuture<ConfigurationInfoMessage> requestConfigurationInfo(K module) {
+        return request(module, RequestKind.CONFIGURATION, GetConfigMessage.getInstance());
+    }
+
+    private <T> CompletableFuture<T> request(K module, RequestKind kind, CommandMessage request) {
+        ModuleRequests requests = requestsByModule.computeIfAbsent(module, x -> new ModuleRequests());
+
+        PendingRequest<T> pending;
+        synchronized (requests) {
+            @SuppressWarnings("unchecked")
+            PendingRequest<T> existing = (PendingRequest<T>) requests.pending[kind.ordinal()];
+            if (existing != null) {
+                return existing.future;
+            }
+
+            pending = new PendingRequest<>();
+            requests.pending[kind.ordinal()] = pending;
+        }
+
+        // the in-flight slot is released whenever the future completes, no matter how (reply, timeout, cancellation)
+        PendingRequest<T> registered = pending;
+        pending.future.whenComplete((result, ex) -> {
+            registered.cancelTimeout();
+            synchronized (requests) {
+                if (requests.pending[kind.ordinal()] == registered) {
+                    requests.pending[kind.ordinal()] = null;
+                }
+            }
+        });
+
+        long timeout = timeoutNanos;
+        pending.setTimeout(executor.schedule(
+            () -> registered.future.completeExceptionally(new TimeoutException(
+                "no reply to " + kind + " request within " + Duration.ofNanos(timeout) + " from module " + module
+            )),
+            timeout,
+            TimeUnit.NANOSECONDS
+        ));
+
+        try {
+            sender.accept(module, request);
+        } catch (RuntimeException ex) {
+            pending.future.completeExceptionally(ex);
+        }
+
+        return pending.future;
+    }
+
+    /**
+     * Processes a message received from the given module. Replies complete the corresponding pending request; all
+     * other messages are ignored.
+     *
+     * @param module key of module the message was received from
+     * @param msg    message received from the module
+     * @return {@code true} if the message completed a pending request, {@code false} if not
+     */
+    public boolean onMessage(K module, CommandMessage msg) {
+        if (msg instanceof IdentificationInfoMessage) {
+            PendingRequest<IdentificationInfoMessage> pending = take(module, RequestKind.IDENTIFICATION);
+            return (pending != null) && pending.future.complete((IdentificationInfoMessage) msg);
+        } else if (msg instanceof ConfigurationInfoMessage) {
+            PendingRequest<ConfigurationInfoMessage> pending = take(module, RequestKind.CONFIGURATION);
+            return (pending != null) && pending.future.complete((ConfigurationInfoMessage) msg);
+        }
+
+        return false;
+    }
+
+    private <T> PendingRequest<T> take(K module, RequestKind kind) {
+        ModuleRequests requests = requestsByModule.get(module);
+        if (requests == null) {
+            return null;
+        }
+
+        synchronized (requests) {
+            @SuppressWarnings("unchecked")
+            PendingRequest<T> pending = (PendingRequest<T>) requests.pending[kind.ordinal()];
+            requests.pending[kind.ordinal()] = null;
+            return pending;
+        }
+    }
+
+    /**
+     * Indicates whether any request to the given module is still awaiting its reply.
+     *
+     * @param module key of module
+     * @return {@code true} if a request is pending, {@code false} if not
+     */
+    public boolean hasPendingRequests(K module) {
+        ModuleRequests requests = requestsByModule.get(module);
+        if (requests == null) {
+            return false;
+        }
+
+        synchronized (requests) {
+            for (PendingRequest<?> pending : requests.pending) {
+                if (pending != null) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Fails all pending requests to the given module, for example because the module has been disconnected.
+     *
+     * @param module key of module to discard
+     */
+    public void discard(K module) {
+        ModuleRequests requests = requestsByModule.remove(module);
+        if (requests != null) {
+            requests.failAll(new IllegalStateException("module " + module + " has been discarded"));
+        }
+    }
+
+    /**
+     * Fails all pending requests and shuts down the executor if it was created by this tracker.
+     */
+    @Override
+    public void close() {
+        for (K module : requestsByModule.keySet()) {
+            discard(module);
+        }
+
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private static class PendingRequest<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private ScheduledFuture<?> timeout;
+        private boolean completed;
+
+        synchronized void setTimeout(ScheduledFuture<?> timeout) {
+            if (completed) {
+                // already completed while scheduling
+                timeout.cancel(false);
+            } else {
+                this.timeout = timeout;
+            }
+        }
+
+        synchronized void cancelTimeout() {
+            completed = true;
+            if (timeout != null) {
+                timeout.cancel(false);
+                timeout = null;
+            }
+        }
+    }
+
+    private static class ModuleRequests {
+        private final PendingRequest<?>[] pending = new PendingRequest<?>[RequestKind.values().length];
+
+        void failAll(Throwable cause) {
+            PendingRequest<?>[] failed;
+            synchronized (this) {
+                failed = pending.clone();
+                Arrays.fill(pending, null);
+            }
+
+            for (PendingRequest<?> request : failed) {
+                if (request != null) {
+                    request.future.completeExceptionally(cause);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * This package contains host-side helpers to provision MobiFlight modules, such as uploading device configurations.
+ * <p>
+ * Similar to {@link de.energiequant.limamf.compat.protocol}, classes in this package do not implement any actual
+ * device communication. They emit {@link de.energiequant.limamf.compat.protocol.CommandMessage}s to be sent and need to
+ * be fed with all messages received from the module.
+ * </p>
+ */
+package de.energiequant.limamf.compat.provisioning;
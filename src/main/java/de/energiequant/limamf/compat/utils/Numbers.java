@@ -24,6 +24,39 @@ public class Numbers {
         return requireUint8(Integer.parseInt(s));
     }
 
+    /**
+     * Parses the given range of a {@link CharSequence} as an unsigned decimal integer without allocating any objects.
+     * Unlike {@link Integer#parseInt(String)}, no sign is accepted. Instead of throwing an exception, a negative value
+     * is returned if the range cannot be parsed.
+     *
+     * @param s        characters to parse
+     * @param fromIncl start index of range to parse (inclusive)
+     * @param toExcl   end index of range to parse (exclusive)
+     * @return parsed integer; -1 if the range is empty, contains anything other than digits or exceeds integer range
+     */
+    public static int tryParseUnsignedInt(CharSequence s, int fromIncl, int toExcl) {
+        if (fromIncl >= toExcl) {
+            return -1;
+        }
+
+        int value = 0;
+        for (int i = fromIncl; i < toExcl; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+
+            int digit = ch - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+
+            value = (value * 10) + digit;
+        }
+
+        return value;
+    }
+
     /**
      * Checks if the given value is in range for an unsigned 8-bit integer (0..255) and throws an
      * {@link IllegalArgumentException} if not. The same value is returned, if it is valid.
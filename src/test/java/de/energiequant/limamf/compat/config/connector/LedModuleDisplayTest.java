@@ -0,0 +1,74 @@
+package de.energiequant.limamf.compat.config.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class LedModuleDisplayTest {
+    private static final String FIXTURE = "led-module.mcc";
+
+    private static final UUID FLAT_GUID = UUID.fromString("0f4cbf47-7b4a-4c8e-9a7e-3d0f1a6f2a11");
+    private static final UUID GROUPED_GUID = UUID.fromString("5b1d7e21-8c44-4f0b-b1a3-2e9c6d4f7a22");
+
+    @Test
+    void testFromXML_flatElements_readsMasks() throws URISyntaxException {
+        // arrange
+        File file = new File(LedModuleDisplayTest.class.getResource(FIXTURE).toURI());
+
+        // act
+        LedModuleDisplay display = getDisplays(ConnectorConfiguration.fromXML(file)).get(FLAT_GUID);
+
+        // assert
+        assertThat(display.getDigitMask()).isEqualTo(0b11111);
+        assertThat(display.getDecimalPointMask()).isEqualTo(0b01000);
+        assertThat(display.isReversingDigits()).isTrue();
+    }
+
+    @Test
+    void testFromXML_groupedElements_readsMasks() throws URISyntaxException {
+        // arrange
+        File file = new File(LedModuleDisplayTest.class.getResource(FIXTURE).toURI());
+
+        // act
+        LedModuleDisplay display = getDisplays(ConnectorConfiguration.fromXML(file)).get(GROUPED_GUID);
+
+        // assert
+        assertThat(display.getDigitMask()).isEqualTo(0b11);
+        assertThat(display.getDecimalPointMask()).isEqualTo(0b10);
+        assertThat(display.isReversingDigits()).isFalse();
+    }
+
+    @Test
+    void testStreamXML_flatElements_readsMasks() throws IOException {
+        // arrange
+        ConnectorConfiguration configuration;
+        try (InputStream is = LedModuleDisplayTest.class.getResourceAsStream(FIXTURE)) {
+            configuration = ConnectorConfiguration.streamXML(is);
+        }
+
+        // act
+        LedModuleDisplay display = getDisplays(configuration).get(FLAT_GUID);
+
+        // assert
+        assertThat(display.getDigitMask()).isEqualTo(0b11111);
+        assertThat(display.getDecimalPointMask()).isEqualTo(0b01000);
+    }
+
+    private static Map<UUID, LedModuleDisplay> getDisplays(ConnectorConfiguration configuration) {
+        return configuration.getItems(ConfigItem.Direction.OUTPUT)
+                            .stream()
+                            .collect(Collectors.toMap(
+                                ConfigItem::getGUID,
+                                item -> (LedModuleDisplay) item.getSettings().getDisplay().get()
+                            ));
+    }
+}